@@ -0,0 +1,177 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import com.ibm.reactive.jpa.Database;
+import com.ibm.reactive.jpa.Priority;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Value;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Builder
+@Getter
+public class BulkLoader<T> {
+
+  public static final int DEFAULT_CHUNK_SIZE = 500;
+  public static final int DEFAULT_INSERT_CONCURRENCY = 2;
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkLoader.class);
+
+  @NonNull
+  private final Database database;
+
+  @NonNull
+  private final RecordParser parser;
+
+  @NonNull
+  private final Function<Map<String, Object>, T> mapper;
+
+  @Builder.Default
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+  @Builder.Default
+  private int insertConcurrency = DEFAULT_INSERT_CONCURRENCY;
+
+  @Builder.Default
+  private int bufferSize = ByteBufferPool.DEFAULT_BUFFER_SIZE;
+
+  private boolean gzip;
+
+  @Builder.Default
+  private Scheduler parseScheduler = Schedulers.elastic();
+
+  public Flux<LoadProgress> load(@NonNull Path path) {
+    // inserts are batch work, they leave workers to the interactive calls of the database
+    Scheduler insertScheduler = Schedulers.fromExecutorService(
+        database.getPriorityLane(Priority.BATCH));
+    Flux<ParsedRecord<T>> records = Flux.using(
+        () -> LineReader.open(path, gzip, ByteBuffer.allocateDirect(bufferSize)),
+        reader -> Flux.<ParsedRecord<T>>generate(sink -> readRecord(reader, sink)),
+        this::closeReader)
+        .subscribeOn(parseScheduler);
+
+    return Flux.defer(() -> {
+      AtomicLong chunks = new AtomicLong();
+      AtomicLong totalInserted = new AtomicLong();
+      AtomicLong totalFailed = new AtomicLong();
+      return records
+          .buffer(chunkSize)
+          .flatMapSequential(chunk -> Mono.fromCallable(() -> insert(chunk))
+              .subscribeOn(insertScheduler), insertConcurrency, 1)
+          .map(result -> new LoadProgress(chunks.incrementAndGet(), result.getInserted(),
+              result.getErrors(), totalInserted.addAndGet(result.getInserted()),
+              totalFailed.addAndGet(result.getErrors().size())));
+    });
+  }
+
+  private void readRecord(LineReader reader, SynchronousSink<ParsedRecord<T>> sink) {
+    long line = reader.getLineNumber() + 1;
+    try {
+      Map<String, Object> record = parser.next(reader);
+      if (record == null) {
+        sink.complete();
+        return;
+      }
+      T entity = mapper.apply(record);
+      if (entity == null) {
+        throw new RecordException("Record mapped to null");
+      }
+      sink.next(new ParsedRecord<>(line, entity, null));
+    } catch (IOException e) {
+      sink.error(e);
+    } catch (RuntimeException e) {
+      sink.next(new ParsedRecord<>(line, null, new RecordError(line, e)));
+    }
+  }
+
+  private ChunkResult insert(List<ParsedRecord<T>> chunk) {
+    List<RecordError> errors = new ArrayList<>();
+    List<ParsedRecord<T>> valid = new ArrayList<>(chunk.size());
+    for (ParsedRecord<T> record : chunk) {
+      if (record.getError() == null) {
+        valid.add(record);
+      } else {
+        errors.add(record.getError());
+      }
+    }
+    if (valid.isEmpty()) {
+      return new ChunkResult(0, errors);
+    }
+
+    StatelessSession session = database.getSessionFactory().openStatelessSession();
+    Transaction transaction = null;
+    try {
+      session.setJdbcBatchSize(chunkSize);
+      transaction = session.beginTransaction();
+      for (ParsedRecord<T> record : valid) {
+        session.insert(record.getEntity());
+      }
+      ((SharedSessionContractImplementor) session).getJdbcCoordinator().executeBatch();
+      transaction.commit();
+      return new ChunkResult(valid.size(), errors);
+    } catch (RuntimeException e) {
+      rollback(transaction);
+      valid.forEach(record -> errors.add(new RecordError(record.getLine(), e)));
+      return new ChunkResult(0, errors);
+    } finally {
+      session.close();
+    }
+  }
+
+  private void rollback(Transaction transaction) {
+    try {
+      if (transaction != null && transaction.isActive()) {
+        transaction.rollback();
+      }
+    } catch (RuntimeException ex) {
+      // ignore
+      logger.warn("Exception thrown while rollback was called", ex);
+    }
+  }
+
+  private void closeReader(LineReader reader) {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      logger.warn("Exception thrown while the input file was closed", e);
+    }
+  }
+
+  @Value
+  private static class ParsedRecord<T> {
+
+    private long line;
+    private T entity;
+    private RecordError error;
+  }
+
+  @Value
+  private static class ChunkResult {
+
+    private int inserted;
+    private List<RecordError> errors;
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.NonNull;
+
+public class ByteBufferPool {
+
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  public static final int DEFAULT_MAX_POOLED = 16;
+
+  private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooled = new AtomicInteger();
+  @Getter
+  private final int bufferSize;
+  @Getter
+  private final int maxPooled;
+
+  public ByteBufferPool() {
+    this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+  }
+
+  public ByteBufferPool(int bufferSize, int maxPooled) {
+    if (bufferSize <= 0 || maxPooled < 0) {
+      throw new IllegalArgumentException("bufferSize must be positive and maxPooled not negative");
+    }
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+  }
+
+  public ByteBuffer acquire() {
+    ByteBuffer buffer = buffers.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocateDirect(bufferSize);
+    }
+    pooled.decrementAndGet();
+    return buffer;
+  }
+
+  public void release(@NonNull ByteBuffer buffer) {
+    if (buffer.capacity() != bufferSize || !buffer.isDirect()) {
+      return;
+    }
+    buffer.clear();
+    if (pooled.incrementAndGet() <= maxPooled) {
+      buffers.offer(buffer);
+    } else {
+      pooled.decrementAndGet();
+    }
+  }
+
+  public int available() {
+    return pooled.get();
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import lombok.Getter;
+import lombok.NonNull;
+
+public class ChannelOutput {
+
+  private static final byte[] MIN_LONG = "-9223372036854775808".getBytes();
+  private static final int MAX_LONG_DIGITS = 20;
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+  private final byte[] digits = new byte[MAX_LONG_DIGITS];
+  @Getter
+  private long bytesWritten;
+
+  public ChannelOutput(@NonNull WritableByteChannel channel, @NonNull ByteBuffer buffer) {
+    this.channel = channel;
+    this.buffer = buffer;
+  }
+
+  public void put(byte value) throws IOException {
+    if (!buffer.hasRemaining()) {
+      flush();
+    }
+    buffer.put(value);
+  }
+
+  public void put(byte[] values) throws IOException {
+    for (byte value : values) {
+      put(value);
+    }
+  }
+
+  public void putAscii(@NonNull String value) throws IOException {
+    for (int index = 0; index < value.length(); index++) {
+      put((byte) value.charAt(index));
+    }
+  }
+
+  public void putDecimal(long value) throws IOException {
+    if (value == Long.MIN_VALUE) {
+      put(MIN_LONG);
+      return;
+    }
+    if (value < 0) {
+      put((byte) '-');
+      value = -value;
+    }
+    int position = digits.length;
+    do {
+      digits[--position] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    while (position < digits.length) {
+      put(digits[position++]);
+    }
+  }
+
+  public void putLong(long value) throws IOException {
+    for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+      put((byte) (value >>> shift));
+    }
+  }
+
+  public void putDouble(double value) throws IOException {
+    putLong(Double.doubleToRawLongBits(value));
+  }
+
+  public void putVarLong(long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    put((byte) value);
+  }
+
+  public void putUtf8(@NonNull CharSequence value) throws IOException {
+    putUtf8(value, 0, value.length());
+  }
+
+  public void putUtf8(@NonNull CharSequence value, int start, int end) throws IOException {
+    for (int index = start; index < end; index++) {
+      char character = value.charAt(index);
+      if (character < 0x80) {
+        put((byte) character);
+      } else if (character < 0x800) {
+        put((byte) (0xC0 | (character >> 6)));
+        put((byte) (0x80 | (character & 0x3F)));
+      } else if (Character.isHighSurrogate(character) && index + 1 < end
+          && Character.isLowSurrogate(value.charAt(index + 1))) {
+        int codePoint = Character.toCodePoint(character, value.charAt(++index));
+        put((byte) (0xF0 | (codePoint >> 18)));
+        put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        put((byte) (0x80 | (codePoint & 0x3F)));
+      } else {
+        put((byte) (0xE0 | (character >> 12)));
+        put((byte) (0x80 | ((character >> 6) & 0x3F)));
+        put((byte) (0x80 | (character & 0x3F)));
+      }
+    }
+  }
+
+  public static int utf8Length(@NonNull CharSequence value) {
+    int length = 0;
+    for (int index = 0; index < value.length(); index++) {
+      char character = value.charAt(index);
+      if (character < 0x80) {
+        length++;
+      } else if (character < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(character) && index + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(index + 1))) {
+        length += 4;
+        index++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  public void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      bytesWritten += channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
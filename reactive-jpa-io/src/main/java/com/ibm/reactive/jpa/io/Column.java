@@ -0,0 +1,28 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.util.function.Function;
+import lombok.NonNull;
+import lombok.Value;
+
+@Value
+public class Column<T> {
+
+  @NonNull
+  private String name;
+  @NonNull
+  private Function<T, Object> extractor;
+
+  public static <T> Column<T> of(String name, Function<T, Object> extractor) {
+    return new Column<>(name, extractor);
+  }
+
+  public Object extract(T row) {
+    return extractor.apply(row);
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.io.IOException;
+import java.util.List;
+import lombok.NonNull;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Compact binary columnar format, every batch is written as a row group.
+ *
+ * <p>Layout: magic, version, column count and names, then row groups made of the row count and,
+ * per column, a type tag, a null bitmap and the non null values. A row group with zero rows marks
+ * the end of the file. Longs are zig-zag varints, doubles are 8 bytes big endian and strings are
+ * length prefixed UTF-8.
+ */
+public class ColumnarExportSink<T> extends ExportSink<T> {
+
+  static final byte[] MAGIC = {'R', 'J', 'C', 'F'};
+  static final byte VERSION = 1;
+  static final byte TYPE_NULL = 0;
+  static final byte TYPE_LONG = 1;
+  static final byte TYPE_DOUBLE = 2;
+  static final byte TYPE_BOOLEAN = 3;
+  static final byte TYPE_STRING = 4;
+
+  public ColumnarExportSink(List<Column<T>> columns) {
+    this(columns, ExportOptions.defaultOptions());
+  }
+
+  public ColumnarExportSink(List<Column<T>> columns, ExportOptions options) {
+    super(columns, options);
+  }
+
+  public ColumnarExportSink(List<Column<T>> columns, ExportOptions options,
+      @NonNull Scheduler scheduler) {
+    super(columns, options, scheduler);
+  }
+
+  @Override
+  protected void writeHeader(ChannelOutput output) throws IOException {
+    output.put(MAGIC);
+    output.put(VERSION);
+    output.putVarLong(getColumns().size());
+    for (Column<T> column : getColumns()) {
+      String name = column.getName();
+      output.putVarLong(ChannelOutput.utf8Length(name));
+      output.putUtf8(name);
+    }
+  }
+
+  @Override
+  protected void writeBatch(ChannelOutput output, List<T> rows) throws IOException {
+    if (rows.isEmpty()) {
+      return;
+    }
+    output.putVarLong(rows.size());
+    Object[] values = new Object[rows.size()];
+    for (Column<T> column : getColumns()) {
+      for (int index = 0; index < values.length; index++) {
+        values[index] = column.extract(rows.get(index));
+      }
+      writeColumn(output, values);
+    }
+  }
+
+  @Override
+  protected void writeFooter(ChannelOutput output) throws IOException {
+    output.putVarLong(0);
+  }
+
+  private void writeColumn(ChannelOutput output, Object[] values) throws IOException {
+    byte type = columnType(values);
+    output.put(type);
+    writeNullBitmap(output, values);
+    for (Object value : values) {
+      if (value != null) {
+        writeValue(output, type, value);
+      }
+    }
+  }
+
+  private void writeNullBitmap(ChannelOutput output, Object[] values) throws IOException {
+    int bits = 0;
+    for (int index = 0; index < values.length; index++) {
+      if (values[index] == null) {
+        bits |= 1 << (index % Byte.SIZE);
+      }
+      if (index % Byte.SIZE == Byte.SIZE - 1 || index == values.length - 1) {
+        output.put((byte) bits);
+        bits = 0;
+      }
+    }
+  }
+
+  private void writeValue(ChannelOutput output, byte type, Object value) throws IOException {
+    switch (type) {
+      case TYPE_LONG:
+        long number = ((Number) value).longValue();
+        output.putVarLong((number << 1) ^ (number >> (Long.SIZE - 1)));
+        break;
+      case TYPE_DOUBLE:
+        output.putDouble(((Number) value).doubleValue());
+        break;
+      case TYPE_BOOLEAN:
+        output.put((byte) (((Boolean) value) ? 1 : 0));
+        break;
+      default:
+        CharSequence text = value instanceof CharSequence ? (CharSequence) value
+            : value.toString();
+        output.putVarLong(ChannelOutput.utf8Length(text));
+        output.putUtf8(text);
+    }
+  }
+
+  private static byte columnType(Object[] values) {
+    byte type = TYPE_NULL;
+    for (Object value : values) {
+      if (value == null) {
+        continue;
+      }
+      byte valueType = valueType(value);
+      if (type == TYPE_NULL) {
+        type = valueType;
+      } else if (type != valueType) {
+        return TYPE_STRING;
+      }
+    }
+    return type;
+  }
+
+  private static byte valueType(Object value) {
+    if (value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte) {
+      return TYPE_LONG;
+    } else if (value instanceof Double || value instanceof Float) {
+      return TYPE_DOUBLE;
+    } else if (value instanceof Boolean) {
+      return TYPE_BOOLEAN;
+    }
+    return TYPE_STRING;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import lombok.Getter;
+import lombok.NonNull;
+
+public class ColumnarReader implements Closeable {
+
+  private final DataInputStream input;
+  @Getter
+  private final List<String> columns;
+  private boolean finished;
+
+  public ColumnarReader(@NonNull InputStream stream) throws IOException {
+    this.input = new DataInputStream(new BufferedInputStream(stream));
+    this.columns = readHeader();
+  }
+
+  public static ColumnarReader open(@NonNull Path path, boolean gzip) throws IOException {
+    InputStream stream = Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ));
+    return new ColumnarReader(gzip ? new GZIPInputStream(stream) : stream);
+  }
+
+  public List<Object[]> nextRowGroup() throws IOException {
+    if (finished) {
+      return null;
+    }
+    int rowCount = (int) readVarLong();
+    if (rowCount == 0) {
+      finished = true;
+      return null;
+    }
+    Object[][] rows = new Object[rowCount][columns.size()];
+    for (int column = 0; column < columns.size(); column++) {
+      byte type = input.readByte();
+      boolean[] nulls = readNullBitmap(rowCount);
+      for (int row = 0; row < rowCount; row++) {
+        rows[row][column] = nulls[row] ? null : readValue(type);
+      }
+    }
+    return Arrays.asList(rows);
+  }
+
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+
+  private List<String> readHeader() throws IOException {
+    byte[] magic = new byte[ColumnarExportSink.MAGIC.length];
+    input.readFully(magic);
+    if (!Arrays.equals(magic, ColumnarExportSink.MAGIC)
+        || input.readByte() != ColumnarExportSink.VERSION) {
+      throw new IOException("Unsupported columnar file");
+    }
+    int count = (int) readVarLong();
+    List<String> names = new ArrayList<>(count);
+    for (int index = 0; index < count; index++) {
+      names.add(readString());
+    }
+    return Collections.unmodifiableList(names);
+  }
+
+  private boolean[] readNullBitmap(int rowCount) throws IOException {
+    boolean[] nulls = new boolean[rowCount];
+    int bits = 0;
+    for (int index = 0; index < rowCount; index++) {
+      if (index % Byte.SIZE == 0) {
+        bits = input.readUnsignedByte();
+      }
+      nulls[index] = (bits & (1 << (index % Byte.SIZE))) != 0;
+    }
+    return nulls;
+  }
+
+  private Object readValue(byte type) throws IOException {
+    switch (type) {
+      case ColumnarExportSink.TYPE_LONG:
+        long zigZag = readVarLong();
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+      case ColumnarExportSink.TYPE_DOUBLE:
+        return input.readDouble();
+      case ColumnarExportSink.TYPE_BOOLEAN:
+        return input.readByte() != 0;
+      case ColumnarExportSink.TYPE_STRING:
+        return readString();
+      default:
+        throw new IOException("Unknown column type " + type);
+    }
+  }
+
+  private String readString() throws IOException {
+    byte[] bytes = new byte[(int) readVarLong()];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private long readVarLong() throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      byte current = input.readByte();
+      value |= (long) (current & 0x7F) << shift;
+      if ((current & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new EOFException("Malformed variable length number");
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.io.IOException;
+import java.util.List;
+import lombok.Getter;
+import lombok.NonNull;
+import reactor.core.scheduler.Scheduler;
+
+@Getter
+public class CsvExportSink<T> extends ExportSink<T> {
+
+  public static final char DEFAULT_SEPARATOR = ',';
+  private static final char QUOTE = '"';
+  private static final String LINE_SEPARATOR = "\r\n";
+
+  private final char separator;
+  private final boolean header;
+
+  public CsvExportSink(List<Column<T>> columns) {
+    this(columns, ExportOptions.defaultOptions(), DEFAULT_SEPARATOR, true);
+  }
+
+  public CsvExportSink(List<Column<T>> columns, ExportOptions options, char separator,
+      boolean header) {
+    super(columns, options);
+    this.separator = separator;
+    this.header = header;
+  }
+
+  public CsvExportSink(List<Column<T>> columns, ExportOptions options, char separator,
+      boolean header, @NonNull Scheduler scheduler) {
+    super(columns, options, scheduler);
+    this.separator = separator;
+    this.header = header;
+  }
+
+  @Override
+  protected void writeHeader(ChannelOutput output) throws IOException {
+    if (!header) {
+      return;
+    }
+    List<Column<T>> columns = getColumns();
+    for (int index = 0; index < columns.size(); index++) {
+      if (index > 0) {
+        output.put((byte) separator);
+      }
+      writeText(output, columns.get(index).getName());
+    }
+    output.putAscii(LINE_SEPARATOR);
+  }
+
+  @Override
+  protected void writeBatch(ChannelOutput output, List<T> rows) throws IOException {
+    List<Column<T>> columns = getColumns();
+    for (T row : rows) {
+      for (int index = 0; index < columns.size(); index++) {
+        if (index > 0) {
+          output.put((byte) separator);
+        }
+        writeValue(output, columns.get(index).extract(row));
+      }
+      output.putAscii(LINE_SEPARATOR);
+    }
+  }
+
+  @Override
+  protected void writeFooter(ChannelOutput output) {
+  }
+
+  private void writeValue(ChannelOutput output, Object value) throws IOException {
+    if (value == null) {
+      return;
+    }
+    if (value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte) {
+      output.putDecimal(((Number) value).longValue());
+    } else if (value instanceof CharSequence) {
+      writeText(output, (CharSequence) value);
+    } else {
+      writeText(output, value.toString());
+    }
+  }
+
+  private void writeText(ChannelOutput output, CharSequence text) throws IOException {
+    if (!needsQuotes(text)) {
+      output.putUtf8(text);
+      return;
+    }
+    output.put((byte) QUOTE);
+    int start = 0;
+    for (int index = 0; index < text.length(); index++) {
+      if (text.charAt(index) == QUOTE) {
+        output.putUtf8(text, start, index + 1);
+        output.put((byte) QUOTE);
+        start = index + 1;
+      }
+    }
+    output.putUtf8(text, start, text.length());
+    output.put((byte) QUOTE);
+  }
+
+  private boolean needsQuotes(CharSequence text) {
+    for (int index = 0; index < text.length(); index++) {
+      char character = text.charAt(index);
+      if (character == separator || character == QUOTE || character == '\n'
+          || character == '\r') {
+        return true;
+      }
+    }
+    return false;
+  }
+}
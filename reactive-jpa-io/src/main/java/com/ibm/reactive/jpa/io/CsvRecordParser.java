@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+
+public class CsvRecordParser implements RecordParser {
+
+  private static final char QUOTE = '"';
+
+  @Getter
+  private final char separator;
+  private List<String> header;
+
+  public CsvRecordParser() {
+    this(',');
+  }
+
+  public CsvRecordParser(char separator) {
+    this.separator = separator;
+  }
+
+  @Override
+  public Map<String, Object> next(LineReader reader) throws IOException {
+    if (header == null) {
+      header = readFields(reader);
+      if (header == null) {
+        return null;
+      }
+    }
+    List<String> fields = readFields(reader);
+    if (fields == null) {
+      return null;
+    }
+    if (fields.size() != header.size()) {
+      throw new RecordException("Expected " + header.size() + " fields but found "
+          + fields.size());
+    }
+    Map<String, Object> record = new HashMap<>(header.size() * 2);
+    for (int index = 0; index < header.size(); index++) {
+      String value = fields.get(index);
+      record.put(header.get(index), value.isEmpty() ? null : value);
+    }
+    return record;
+  }
+
+  private List<String> readFields(LineReader reader) throws IOException {
+    String line = reader.readLine();
+    if (line == null) {
+      return null;
+    }
+    List<String> fields = new ArrayList<>(header == null ? 8 : header.size());
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    int index = 0;
+    while (true) {
+      if (index == line.length()) {
+        if (!quoted) {
+          break;
+        }
+        // quoted values may contain line breaks
+        line = reader.readLine();
+        if (line == null) {
+          throw new RecordException("Unterminated quoted value");
+        }
+        field.append('\n');
+        index = 0;
+        continue;
+      }
+      char character = line.charAt(index++);
+      if (quoted) {
+        if (character != QUOTE) {
+          field.append(character);
+        } else if (index < line.length() && line.charAt(index) == QUOTE) {
+          field.append(QUOTE);
+          index++;
+        } else {
+          quoted = false;
+        }
+      } else if (character == QUOTE) {
+        quoted = true;
+      } else if (character == separator) {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(character);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class ExportOptions {
+
+  public static final int DEFAULT_BATCH_SIZE = 256;
+  public static final int DEFAULT_PREFETCH = 2;
+
+  private static final ExportOptions DEFAULT_OPTIONS = ExportOptions.builder().build();
+
+  @Builder.Default
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  @Builder.Default
+  private int prefetch = DEFAULT_PREFETCH;
+  @Builder.Default
+  private int bufferSize = ByteBufferPool.DEFAULT_BUFFER_SIZE;
+  private boolean gzip;
+
+  public static ExportOptions defaultOptions() {
+    return DEFAULT_OPTIONS;
+  }
+}
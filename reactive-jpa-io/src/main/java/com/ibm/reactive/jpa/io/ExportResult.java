@@ -0,0 +1,18 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.nio.file.Path;
+import lombok.Value;
+
+@Value
+public class ExportResult {
+
+  private Path path;
+  private long rows;
+  private long bytes;
+}
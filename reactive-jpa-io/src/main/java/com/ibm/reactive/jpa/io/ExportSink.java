@@ -0,0 +1,186 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import lombok.Getter;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Getter
+public abstract class ExportSink<T> {
+
+  private static final Logger logger = LoggerFactory.getLogger(ExportSink.class);
+
+  private final List<Column<T>> columns;
+  private final ExportOptions options;
+  private final ByteBufferPool pool;
+  private final Scheduler scheduler;
+
+  protected ExportSink(@NonNull List<Column<T>> columns, @NonNull ExportOptions options,
+      @NonNull Scheduler scheduler) {
+    if (columns.isEmpty()) {
+      throw new IllegalArgumentException("at least one column is required");
+    }
+    this.columns = Collections.unmodifiableList(columns);
+    this.options = options;
+    this.scheduler = scheduler;
+    this.pool = new ByteBufferPool(options.getBufferSize(), ByteBufferPool.DEFAULT_MAX_POOLED);
+  }
+
+  protected ExportSink(List<Column<T>> columns, ExportOptions options) {
+    this(columns, options, Schedulers.elastic());
+  }
+
+  public Mono<ExportResult> write(@NonNull Flux<T> rows, @NonNull Path path) {
+    return Mono.using(
+        () -> new ExportWriter(path),
+        writer -> rows
+            .buffer(options.getBatchSize())
+            .publishOn(scheduler, options.getPrefetch())
+            .doOnNext(writer::write)
+            .then(Mono.fromCallable(writer::finish)),
+        ExportWriter::close);
+  }
+
+  protected abstract void writeHeader(ChannelOutput output) throws IOException;
+
+  protected abstract void writeBatch(ChannelOutput output, List<T> rows) throws IOException;
+
+  protected abstract void writeFooter(ChannelOutput output) throws IOException;
+
+  private class ExportWriter {
+
+    // the writer thread owns the channels while it writes, a cancel in the meantime only asks
+    // it to close them once it is done
+    private static final int IDLE = 0;
+    private static final int WRITING = 1;
+    private static final int CLOSE_REQUESTED = 2;
+    private static final int CLOSED = 3;
+
+    private final Path path;
+    private final FileChannel fileChannel;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final ChannelOutput output;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+    private long rows;
+
+    ExportWriter(Path path) throws IOException {
+      this.path = path;
+      this.fileChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      try {
+        this.channel = options.isGzip()
+            ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(fileChannel),
+            options.getBufferSize()))
+            : fileChannel;
+      } catch (IOException | RuntimeException e) {
+        fileChannel.close();
+        throw e;
+      }
+      this.buffer = pool.acquire();
+      this.output = new ChannelOutput(channel, buffer);
+      try {
+        writeHeader(output);
+      } catch (IOException | RuntimeException e) {
+        close();
+        throw e;
+      }
+    }
+
+    void write(List<T> batch) {
+      enter();
+      try {
+        writeBatch(output, batch);
+        rows += batch.size();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        leave();
+      }
+    }
+
+    ExportResult finish() throws IOException {
+      enter();
+      try {
+        writeFooter(output);
+        output.flush();
+      } catch (IOException | RuntimeException e) {
+        leave();
+        throw e;
+      }
+      state.set(CLOSED);
+      closeChannels();
+      return new ExportResult(path, rows, Files.size(path));
+    }
+
+    void close() {
+      while (true) {
+        int current = state.get();
+        if (current == IDLE && state.compareAndSet(IDLE, CLOSED)) {
+          closeQuietly();
+          return;
+        }
+        if (current == WRITING && state.compareAndSet(WRITING, CLOSE_REQUESTED)) {
+          return;
+        }
+        if (current == CLOSE_REQUESTED || current == CLOSED) {
+          return;
+        }
+      }
+    }
+
+    private void enter() {
+      if (!state.compareAndSet(IDLE, WRITING)) {
+        throw new IllegalStateException("export of " + path + " is closed");
+      }
+    }
+
+    private void leave() {
+      if (!state.compareAndSet(WRITING, IDLE)) {
+        // closed while the batch was written
+        state.set(CLOSED);
+        closeQuietly();
+      }
+    }
+
+    private void closeQuietly() {
+      try {
+        closeChannels();
+      } catch (IOException e) {
+        logger.warn("Exception thrown while the export file was closed", e);
+      }
+    }
+
+    private void closeChannels() throws IOException {
+      try {
+        channel.close();
+        fileChannel.close();
+      } finally {
+        pool.release(buffer);
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.io.IOException;
+import java.util.List;
+import lombok.NonNull;
+import reactor.core.scheduler.Scheduler;
+
+public class JsonLinesExportSink<T> extends ExportSink<T> {
+
+  private static final byte[] HEX = "0123456789abcdef".getBytes();
+  private static final int MAX_CONTROL_CHARACTER = 0x1F;
+
+  public JsonLinesExportSink(List<Column<T>> columns) {
+    this(columns, ExportOptions.defaultOptions());
+  }
+
+  public JsonLinesExportSink(List<Column<T>> columns, ExportOptions options) {
+    super(columns, options);
+  }
+
+  public JsonLinesExportSink(List<Column<T>> columns, ExportOptions options,
+      @NonNull Scheduler scheduler) {
+    super(columns, options, scheduler);
+  }
+
+  @Override
+  protected void writeHeader(ChannelOutput output) {
+  }
+
+  @Override
+  protected void writeBatch(ChannelOutput output, List<T> rows) throws IOException {
+    List<Column<T>> columns = getColumns();
+    for (T row : rows) {
+      output.put((byte) '{');
+      for (int index = 0; index < columns.size(); index++) {
+        if (index > 0) {
+          output.put((byte) ',');
+        }
+        Column<T> column = columns.get(index);
+        writeString(output, column.getName());
+        output.put((byte) ':');
+        writeValue(output, column.extract(row));
+      }
+      output.put((byte) '}');
+      output.put((byte) '\n');
+    }
+  }
+
+  @Override
+  protected void writeFooter(ChannelOutput output) {
+  }
+
+  private void writeValue(ChannelOutput output, Object value) throws IOException {
+    if (value == null) {
+      output.putAscii("null");
+    } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte) {
+      output.putDecimal(((Number) value).longValue());
+    } else if (value instanceof Boolean) {
+      output.putAscii(value.toString());
+    } else if (value instanceof Number && isFinite((Number) value)) {
+      output.putAscii(value.toString());
+    } else if (value instanceof CharSequence) {
+      writeString(output, (CharSequence) value);
+    } else {
+      writeString(output, value.toString());
+    }
+  }
+
+  private boolean isFinite(Number value) {
+    double number = value.doubleValue();
+    return !Double.isNaN(number) && !Double.isInfinite(number);
+  }
+
+  private void writeString(ChannelOutput output, CharSequence text) throws IOException {
+    output.put((byte) '"');
+    int start = 0;
+    for (int index = 0; index < text.length(); index++) {
+      char character = text.charAt(index);
+      if (character == '"' || character == '\\' || character <= MAX_CONTROL_CHARACTER) {
+        output.putUtf8(text, start, index);
+        writeEscaped(output, character);
+        start = index + 1;
+      }
+    }
+    output.putUtf8(text, start, text.length());
+    output.put((byte) '"');
+  }
+
+  private void writeEscaped(ChannelOutput output, char character) throws IOException {
+    output.put((byte) '\\');
+    switch (character) {
+      case '"':
+      case '\\':
+        output.put((byte) character);
+        break;
+      case '\n':
+        output.put((byte) 'n');
+        break;
+      case '\r':
+        output.put((byte) 'r');
+        break;
+      case '\t':
+        output.put((byte) 't');
+        break;
+      default:
+        output.putAscii("u00");
+        output.put(HEX[character >> 4]);
+        output.put(HEX[character & 0xF]);
+    }
+  }
+}
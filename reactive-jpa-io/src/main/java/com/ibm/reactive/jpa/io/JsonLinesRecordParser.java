@@ -0,0 +1,176 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses JSON Lines made of flat objects, values are strings, numbers, booleans or null.
+ */
+public class JsonLinesRecordParser implements RecordParser {
+
+  private static final int HEX_RADIX = 16;
+
+  @Override
+  public Map<String, Object> next(LineReader reader) throws IOException {
+    String line;
+    do {
+      line = reader.readLine();
+      if (line == null) {
+        return null;
+      }
+    } while (line.trim().isEmpty());
+    return new Parser(line).parseObject();
+  }
+
+  private static class Parser {
+
+    private final String text;
+    private int position;
+
+    Parser(String text) {
+      this.text = text;
+    }
+
+    Map<String, Object> parseObject() {
+      Map<String, Object> record = new HashMap<>();
+      expect('{');
+      if (peek() == '}') {
+        position++;
+        return endOfRecord(record);
+      }
+      do {
+        String name = parseString();
+        expect(':');
+        record.put(name, parseValue());
+      } while (consume(','));
+      expect('}');
+      return endOfRecord(record);
+    }
+
+    private Map<String, Object> endOfRecord(Map<String, Object> record) {
+      if (peek() != 0) {
+        throw error("Unexpected content after the object");
+      }
+      return record;
+    }
+
+    private Object parseValue() {
+      char current = peek();
+      if (current == '"') {
+        return parseString();
+      } else if (current == '-' || Character.isDigit(current)) {
+        return parseNumber();
+      } else if (text.startsWith("true", position)) {
+        position += 4;
+        return Boolean.TRUE;
+      } else if (text.startsWith("false", position)) {
+        position += 5;
+        return Boolean.FALSE;
+      } else if (text.startsWith("null", position)) {
+        position += 4;
+        return null;
+      }
+      throw error("Unsupported value");
+    }
+
+    private Object parseNumber() {
+      int start = position;
+      boolean decimal = false;
+      while (position < text.length()) {
+        char current = text.charAt(position);
+        if (current == '.' || current == 'e' || current == 'E') {
+          decimal = true;
+        } else if (!Character.isDigit(current) && current != '-' && current != '+') {
+          break;
+        }
+        position++;
+      }
+      String number = text.substring(start, position);
+      try {
+        return decimal ? (Object) Double.valueOf(number) : (Object) Long.valueOf(number);
+      } catch (NumberFormatException e) {
+        throw error("Invalid number " + number);
+      }
+    }
+
+    private String parseString() {
+      expect('"');
+      StringBuilder value = new StringBuilder();
+      while (position < text.length()) {
+        char current = text.charAt(position++);
+        if (current == '"') {
+          return value.toString();
+        }
+        if (current != '\\') {
+          value.append(current);
+          continue;
+        }
+        if (position >= text.length()) {
+          break;
+        }
+        char escaped = text.charAt(position++);
+        switch (escaped) {
+          case 'n':
+            value.append('\n');
+            break;
+          case 'r':
+            value.append('\r');
+            break;
+          case 't':
+            value.append('\t');
+            break;
+          case 'b':
+            value.append('\b');
+            break;
+          case 'f':
+            value.append('\f');
+            break;
+          case 'u':
+            if (position + 4 > text.length()) {
+              throw error("Invalid unicode escape");
+            }
+            value.append((char) Integer.parseInt(text.substring(position, position + 4),
+                HEX_RADIX));
+            position += 4;
+            break;
+          default:
+            value.append(escaped);
+        }
+      }
+      throw error("Unterminated string");
+    }
+
+    private void expect(char expected) {
+      if (peek() != expected) {
+        throw error("Expected '" + expected + "'");
+      }
+      position++;
+    }
+
+    private boolean consume(char expected) {
+      if (peek() == expected) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    private char peek() {
+      while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+      return position < text.length() ? text.charAt(position) : 0;
+    }
+
+    private RecordException error(String message) {
+      return new RecordException(message + " at position " + position);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import lombok.Getter;
+import lombok.NonNull;
+
+public class LineReader implements Closeable {
+
+  private static final int INITIAL_LINE_SIZE = 256;
+
+  private final ReadableByteChannel channel;
+  private final ByteBuffer buffer;
+  private byte[] line = new byte[INITIAL_LINE_SIZE];
+  @Getter
+  private long lineNumber;
+  private boolean endOfInput;
+
+  public LineReader(@NonNull ReadableByteChannel channel, @NonNull ByteBuffer buffer) {
+    this.channel = channel;
+    this.buffer = buffer;
+    this.buffer.flip();
+  }
+
+  public static LineReader open(@NonNull Path path, boolean gzip, @NonNull ByteBuffer buffer)
+      throws IOException {
+    FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+    ReadableByteChannel channel = gzip
+        ? Channels.newChannel(new GZIPInputStream(Channels.newInputStream(fileChannel)))
+        : fileChannel;
+    return new LineReader(channel, buffer);
+  }
+
+  public String readLine() throws IOException {
+    int length = 0;
+    while (true) {
+      if (!buffer.hasRemaining() && !fill()) {
+        return length == 0 ? null : decode(length);
+      }
+      byte current = buffer.get();
+      if (current == '\n') {
+        return decode(length);
+      }
+      if (length == line.length) {
+        line = Arrays.copyOf(line, line.length * 2);
+      }
+      line[length++] = current;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private boolean fill() throws IOException {
+    if (endOfInput) {
+      return false;
+    }
+    buffer.clear();
+    int read = 0;
+    while (read == 0) {
+      read = channel.read(buffer);
+    }
+    buffer.flip();
+    if (read < 0) {
+      endOfInput = true;
+      return false;
+    }
+    return true;
+  }
+
+  private String decode(int length) {
+    lineNumber++;
+    int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+    return new String(line, 0, end, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,20 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.util.List;
+import lombok.Value;
+
+@Value
+public class LoadProgress {
+
+  private long chunk;
+  private int inserted;
+  private List<RecordError> errors;
+  private long totalInserted;
+  private long totalFailed;
+}
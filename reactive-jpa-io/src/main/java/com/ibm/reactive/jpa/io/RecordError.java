@@ -0,0 +1,16 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import lombok.Value;
+
+@Value
+public class RecordError {
+
+  private long line;
+  private Throwable error;
+}
@@ -0,0 +1,21 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import java.io.IOException;
+import java.util.Map;
+
+@FunctionalInterface
+public interface RecordParser {
+
+  /**
+   * Reads the next record, {@code null} at the end of the input.
+   *
+   * @throws RecordException if the record is malformed, the reader is left at the next record
+   */
+  Map<String, Object> next(LineReader reader) throws IOException;
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.ibm.reactive.jpa.TransactionDefinition;
+import com.ibm.reactive.jpa.io.annotation.Benchmark;
+import com.ibm.reactive.jpa.io.resources.Measurement;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@Benchmark
+public class BulkLoaderBenchmark {
+
+  private static final int ROWS = 200_000;
+  private static Path path;
+
+  @BeforeAll
+  public static void createFile() throws IOException {
+    path = Files.createTempFile("benchmark", ".csv");
+    try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      writer.write("sensor,value\n");
+      for (int row = 0; row < ROWS; row++) {
+        writer.write("sensor-" + (row % 100) + "," + row + "\n");
+      }
+    }
+  }
+
+  @AfterAll
+  public static void deleteFile() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  @BeforeEach
+  public void setUp() {
+    TestUtil.deleteAll(Measurement.class);
+  }
+
+  @Test
+  public void bulkLoader() {
+    BulkLoader<Measurement> loader = BulkLoader.<Measurement>builder()
+        .database(TestUtil.getDatabase())
+        .parser(new CsvRecordParser())
+        .mapper(record -> new Measurement((String) record.get("sensor"),
+            Double.parseDouble((String) record.get("value"))))
+        .chunkSize(1000)
+        .build();
+
+    long start = System.nanoTime();
+    LoadProgress last = loader.load(path).blockLast();
+    report("BulkLoader", start);
+    assertEquals(ROWS, last.getTotalInserted());
+  }
+
+  @Test
+  public void persistLoop() throws IOException {
+    long start = System.nanoTime();
+    List<Measurement> measurements;
+    try (Stream<String> lines = Files.lines(path)) {
+      measurements = lines
+          .skip(1)
+          .map(line -> line.split(","))
+          .map(fields -> new Measurement(fields[0], Double.parseDouble(fields[1])))
+          .collect(Collectors.toList());
+    }
+    TestUtil.getDatabase()
+        .execute(entityManager -> {
+          measurements.forEach(entityManager::persist);
+          return measurements.size();
+        })
+        .transaction(TransactionDefinition.builder().build())
+        .mono()
+        .block();
+    report("Read in memory and persist loop", start);
+    assertEquals(ROWS, TestUtil.count(Measurement.class));
+  }
+
+  private static void report(String name, long start) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    System.out.println(name + ": " + ROWS + " rows in " + millis + " ms, "
+        + (ROWS * 1000L / Math.max(1, millis)) + " rows/s");
+  }
+}
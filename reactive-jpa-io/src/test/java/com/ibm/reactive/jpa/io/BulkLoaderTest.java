@@ -0,0 +1,100 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.ibm.reactive.jpa.io.resources.Measurement;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BulkLoaderTest {
+
+  private Path path;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    path = Files.createTempFile("load", ".in");
+    TestUtil.deleteAll(Measurement.class);
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  @Test
+  public void testCsvLoad() throws IOException {
+    Files.write(path, ("sensor,value\n"
+        + "a,1\n"
+        + "b,2\n"
+        + "c,not a number\n"
+        + "d\n"
+        + "e,5\n").getBytes(StandardCharsets.UTF_8));
+
+    BulkLoader<Measurement> loader = BulkLoader.<Measurement>builder()
+        .database(TestUtil.getDatabase())
+        .parser(new CsvRecordParser())
+        .mapper(record -> new Measurement((String) record.get("sensor"),
+            Double.parseDouble((String) record.get("value"))))
+        .chunkSize(2)
+        .build();
+
+    List<LoadProgress> progress = loader.load(path).collectList().block();
+
+    assertEquals(3, progress.size());
+    LoadProgress last = progress.get(progress.size() - 1);
+    assertEquals(3, last.getTotalInserted());
+    assertEquals(2, last.getTotalFailed());
+    assertEquals(4, progress.get(1).getErrors().get(0).getLine());
+    assertEquals(5, progress.get(1).getErrors().get(1).getLine());
+    assertEquals(3, TestUtil.count(Measurement.class));
+  }
+
+  @Test
+  public void testJsonLinesLoad() throws IOException {
+    Files.write(path, ("{\"sensor\":\"a\",\"value\":1}\n"
+        + "{\"sensor\":\"b\",\"value\":2.5}\n").getBytes(StandardCharsets.UTF_8));
+
+    BulkLoader<Measurement> loader = BulkLoader.<Measurement>builder()
+        .database(TestUtil.getDatabase())
+        .parser(new JsonLinesRecordParser())
+        .mapper(record -> new Measurement((String) record.get("sensor"),
+            ((Number) record.get("value")).doubleValue()))
+        .build();
+
+    List<LoadProgress> progress = loader.load(path).collectList().block();
+
+    assertEquals(1, progress.size());
+    assertEquals(2, progress.get(0).getInserted());
+    assertEquals(2, TestUtil.count(Measurement.class));
+  }
+
+  @Test
+  public void testInsertFailureReportsChunk() throws IOException {
+    Files.write(path, ("sensor,value\n"
+        + "a,1\n").getBytes(StandardCharsets.UTF_8));
+
+    BulkLoader<Object> loader = BulkLoader.builder()
+        .database(TestUtil.getDatabase())
+        .parser(new CsvRecordParser())
+        .mapper(record -> "not an entity")
+        .build();
+
+    List<LoadProgress> progress = loader.load(path).collectList().block();
+
+    assertEquals(1, progress.size());
+    assertEquals(0, progress.get(0).getTotalInserted());
+    assertEquals(1, progress.get(0).getTotalFailed());
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+public class ByteBufferPoolTest {
+
+  @Test
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new ByteBufferPool(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> new ByteBufferPool(1, -1));
+  }
+
+  @Test
+  public void testReuse() {
+    ByteBufferPool pool = new ByteBufferPool(16, 1);
+    ByteBuffer first = pool.acquire();
+    ByteBuffer second = pool.acquire();
+    assertTrue(first.isDirect());
+    first.put((byte) 1);
+    pool.release(first);
+    pool.release(second);
+    pool.release(ByteBuffer.allocate(16));
+    assertEquals(1, pool.available());
+    ByteBuffer reused = pool.acquire();
+    assertSame(first, reused);
+    assertEquals(0, reused.position());
+    assertEquals(0, pool.available());
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class ChannelOutputTest {
+
+  private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+  private final ChannelOutput output = new ChannelOutput(Channels.newChannel(stream),
+      ByteBuffer.allocate(3));
+
+  @Test
+  public void testDecimal() throws IOException {
+    output.putDecimal(0);
+    output.put((byte) ' ');
+    output.putDecimal(-42);
+    output.put((byte) ' ');
+    output.putDecimal(Long.MAX_VALUE);
+    output.put((byte) ' ');
+    output.putDecimal(Long.MIN_VALUE);
+    output.flush();
+    assertEquals("0 -42 9223372036854775807 -9223372036854775808", stream.toString());
+    assertEquals(stream.size(), output.getBytesWritten());
+  }
+
+  @Test
+  public void testUtf8() throws IOException {
+    String text = "a\u00e1\u4e2d\ud83d\ude00"; // non ascii and surrogate pair
+    output.putUtf8(text);
+    output.flush();
+    byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+    assertArrayEquals(expected, stream.toByteArray());
+    assertEquals(expected.length, ChannelOutput.utf8Length(text));
+  }
+
+  @Test
+  public void testBinary() throws IOException {
+    output.putVarLong(300);
+    output.putLong(1);
+    output.flush();
+    assertArrayEquals(new byte[]{(byte) 0xAC, 0x02, 0, 0, 0, 0, 0, 0, 0, 1},
+        stream.toByteArray());
+  }
+}
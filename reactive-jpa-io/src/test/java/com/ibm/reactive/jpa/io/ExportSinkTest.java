@@ -0,0 +1,187 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPInputStream;
+import lombok.Value;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+public class ExportSinkTest {
+
+  private static final List<Column<Row>> COLUMNS = Arrays.asList(
+      Column.of("id", Row::getId),
+      Column.of("name", Row::getName),
+      Column.of("score", Row::getScore),
+      Column.of("active", Row::getActive));
+
+  private static final List<Row> ROWS = Arrays.asList(
+      new Row(1L, "Javier", 1.5, true),
+      new Row(-2L, "Quote \" and, comma", null, false),
+      new Row(Long.MIN_VALUE, "Line\nbreak \u00e1\u4e2d", 3.0, null), // non ascii
+      new Row(4L, null, null, true));
+
+  private Path path;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    path = Files.createTempFile("export", ".out");
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  @Test
+  public void testInvalidColumns() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new CsvExportSink<Row>(Collections.emptyList()));
+  }
+
+  @Test
+  public void testCsv() throws IOException {
+    CsvExportSink<Row> sink = new CsvExportSink<>(COLUMNS);
+    StepVerifier.create(sink.write(Flux.fromIterable(ROWS), path))
+        .expectNextMatches(result -> result.getRows() == ROWS.size())
+        .verifyComplete();
+
+    String expected = "id,name,score,active\r\n"
+        + "1,Javier,1.5,true\r\n"
+        + "-2,\"Quote \"\" and, comma\",,false\r\n"
+        + "-9223372036854775808,\"Line\nbreak \u00e1\u4e2d\",3.0,\r\n" // non ascii
+        + "4,,,true\r\n";
+    assertEquals(expected, new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testJsonLines() throws IOException {
+    JsonLinesExportSink<Row> sink = new JsonLinesExportSink<>(COLUMNS,
+        ExportOptions.builder().batchSize(1).build());
+    StepVerifier.create(sink.write(Flux.fromIterable(ROWS), path))
+        .expectNextMatches(result -> result.getRows() == ROWS.size())
+        .verifyComplete();
+
+    String expected = "{\"id\":1,\"name\":\"Javier\",\"score\":1.5,\"active\":true}\n"
+        + "{\"id\":-2,\"name\":\"Quote \\\" and, comma\",\"score\":null,\"active\":false}\n"
+        + "{\"id\":-9223372036854775808,"
+        + "\"name\":\"Line\\nbreak \u00e1\u4e2d\",\"score\":3.0,\"active\":null}\n" // non ascii
+        + "{\"id\":4,\"name\":null,\"score\":null,\"active\":true}\n";
+    assertEquals(expected, new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testGzip() throws IOException {
+    CsvExportSink<Row> sink = new CsvExportSink<>(COLUMNS,
+        ExportOptions.builder().gzip(true).bufferSize(16).build(), ';', false);
+    StepVerifier.create(sink.write(Flux.fromIterable(ROWS).take(1), path))
+        .expectNextMatches(result -> result.getBytes() == result.getPath().toFile().length())
+        .verifyComplete();
+
+    try (InputStream input = new GZIPInputStream(Files.newInputStream(path))) {
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      byte[] buffer = new byte[64];
+      int read;
+      while ((read = input.read(buffer)) > 0) {
+        content.write(buffer, 0, read);
+      }
+      assertEquals("1;Javier;1.5;true\r\n", new String(content.toByteArray(),
+          StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testColumnar() throws IOException {
+    ColumnarExportSink<Row> sink = new ColumnarExportSink<>(COLUMNS,
+        ExportOptions.builder().batchSize(3).build());
+    StepVerifier.create(sink.write(Flux.fromIterable(ROWS), path))
+        .expectNextMatches(result -> result.getRows() == ROWS.size())
+        .verifyComplete();
+
+    List<Object[]> rows = new ArrayList<>();
+    try (ColumnarReader reader = ColumnarReader.open(path, false)) {
+      assertEquals(Arrays.asList("id", "name", "score", "active"), reader.getColumns());
+      List<Object[]> group;
+      while ((group = reader.nextRowGroup()) != null) {
+        rows.addAll(group);
+      }
+      assertNull(reader.nextRowGroup());
+    }
+    assertEquals(ROWS.size(), rows.size());
+    for (int index = 0; index < ROWS.size(); index++) {
+      Row row = ROWS.get(index);
+      assertArrayEquals(new Object[]{row.getId(), row.getName(), row.getScore(), row.getActive()},
+          rows.get(index));
+    }
+  }
+
+  @Test
+  public void testErrorClosesFile() throws IOException {
+    CsvExportSink<Row> sink = new CsvExportSink<>(COLUMNS);
+    StepVerifier.create(sink.write(Flux.error(new IllegalStateException()), path))
+        .verifyError(IllegalStateException.class);
+    Files.delete(path);
+  }
+
+  @Test
+  public void testCancelWhileWriting() throws InterruptedException {
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch written = new CountDownLatch(1);
+    CsvExportSink<Row> sink = new CsvExportSink<Row>(COLUMNS) {
+      @Override
+      protected void writeBatch(ChannelOutput output, List<Row> rows) throws IOException {
+        writing.countDown();
+        try {
+          written.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.writeBatch(output, rows);
+      }
+    };
+    Disposable export = sink.write(Flux.fromIterable(ROWS), path).subscribe();
+    writing.await();
+    export.dispose();
+    // the writer still uses the buffer, it is released when the batch is written
+    assertEquals(0, sink.getPool().available());
+    written.countDown();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (sink.getPool().available() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, sink.getPool().available());
+  }
+
+  @Value
+  public static class Row {
+
+    private Long id;
+    private String name;
+    private Double score;
+    private Boolean active;
+  }
+}
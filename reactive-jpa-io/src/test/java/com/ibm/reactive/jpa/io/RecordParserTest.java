@@ -0,0 +1,87 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class RecordParserTest {
+
+  private static LineReader reader(String content) {
+    return new LineReader(Channels.newChannel(
+        new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))),
+        ByteBuffer.allocate(4));
+  }
+
+  private static Map<String, Object> record(Object... keyValues) {
+    Map<String, Object> record = new HashMap<>();
+    for (int index = 0; index < keyValues.length; index += 2) {
+      record.put((String) keyValues[index], keyValues[index + 1]);
+    }
+    return record;
+  }
+
+  @Test
+  public void testLineReader() throws IOException {
+    LineReader reader = reader("first\r\nsecond line\n\nlast");
+    assertEquals("first", reader.readLine());
+    assertEquals("second line", reader.readLine());
+    assertEquals("", reader.readLine());
+    assertEquals("last", reader.readLine());
+    assertEquals(4, reader.getLineNumber());
+    assertNull(reader.readLine());
+    reader.close();
+  }
+
+  @Test
+  public void testCsv() throws IOException {
+    LineReader reader = reader("sensor,value\r\na,1.5\n\"b,\"\"quoted\"\"\nline\",\nc\nd,2\n");
+    CsvRecordParser parser = new CsvRecordParser();
+    assertEquals(record("sensor", "a", "value", "1.5"), parser.next(reader));
+    assertEquals(record("sensor", "b,\"quoted\"\nline", "value", null), parser.next(reader));
+    assertThrows(RecordException.class, () -> parser.next(reader));
+    assertEquals(record("sensor", "d", "value", "2"), parser.next(reader));
+    assertNull(parser.next(reader));
+  }
+
+  @Test
+  public void testCsvUnterminatedQuote() throws IOException {
+    CsvRecordParser parser = new CsvRecordParser(';');
+    LineReader reader = reader("sensor;value\n\"a;1\n");
+    assertThrows(RecordException.class, () -> parser.next(reader));
+    assertNull(new CsvRecordParser().next(reader("")));
+  }
+
+  @Test
+  public void testJsonLines() throws IOException {
+    LineReader reader = reader("{\"sensor\":\"a\\\"\\n\\u0041\", \"value\": -1.5e2, \"count\": 3}\n"
+        + "\n"
+        + "{\"flag\":true,\"other\":false,\"missing\":null}\n"
+        + "{}\n"
+        + "{\"nested\":{}}\n"
+        + "{\"sensor\":\"a\"} trailing\n"
+        + "{\"sensor\":\"a\n");
+    JsonLinesRecordParser parser = new JsonLinesRecordParser();
+    assertEquals(record("sensor", "a\"\nA", "value", -150.0, "count", 3L), parser.next(reader));
+    assertEquals(record("flag", true, "other", false, "missing", null), parser.next(reader));
+    assertEquals(record(), parser.next(reader));
+    assertThrows(RecordException.class, () -> parser.next(reader));
+    assertThrows(RecordException.class, () -> parser.next(reader));
+    assertThrows(RecordException.class, () -> parser.next(reader));
+    assertNull(parser.next(reader));
+  }
+}
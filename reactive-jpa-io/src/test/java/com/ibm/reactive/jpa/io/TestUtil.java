@@ -0,0 +1,56 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io;
+
+import com.ibm.reactive.jpa.Database;
+import com.ibm.reactive.jpa.TransactionDefinition;
+import com.ibm.reactive.jpa.io.resources.Measurement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TestUtil {
+
+  private static Database database;
+
+  private TestUtil() {
+  }
+
+  public static synchronized Database getDatabase() {
+    if (database == null) {
+      Map<String, String> settings = new HashMap<>();
+      settings.put("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
+      settings.put("hibernate.connection.url", "jdbc:hsqldb:mem:io");
+      settings.put("hibernate.connection.username", "sa");
+      settings.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+      settings.put("hibernate.hbm2ddl.auto", "create");
+      database = new Database(settings,
+          Collections.singletonList(Measurement.class.getPackage().getName()));
+    }
+    return database;
+  }
+
+  public static long count(Class<?> type) {
+    return getDatabase()
+        .execute(entityManager -> entityManager
+            .createQuery("select count(e) from " + type.getSimpleName().toUpperCase() + " e",
+                Long.class)
+            .getSingleResult())
+        .mono()
+        .block();
+  }
+
+  public static void deleteAll(Class<?> type) {
+    getDatabase()
+        .execute(entityManager -> entityManager
+            .createQuery("delete from " + type.getSimpleName().toUpperCase())
+            .executeUpdate())
+        .transaction(TransactionDefinition.builder().build())
+        .mono()
+        .block();
+  }
+}
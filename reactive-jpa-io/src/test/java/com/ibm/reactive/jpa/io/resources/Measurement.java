@@ -0,0 +1,33 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.io.resources;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Entity(name = "MEASUREMENT")
+@NoArgsConstructor
+public class Measurement {
+
+  @Id
+  @GeneratedValue(
+      strategy = GenerationType.SEQUENCE
+  )
+  private long id;
+  private String sensor;
+  private double value;
+
+  public Measurement(String sensor, double value) {
+    this.sensor = sensor;
+    this.value = value;
+  }
+}
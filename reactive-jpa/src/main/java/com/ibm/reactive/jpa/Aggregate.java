@@ -0,0 +1,48 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Aggregate function of the rows of a stream over an attribute path of the streamed entity, such
+ * as {@code price} or {@code address.city}. Results have the types of the JPQL aggregates:
+ * {@code Long} counts, {@code Double} averages, sums of integral attributes are {@code Long} and
+ * of floating point ones {@code Double}. The attributes of the aggregates other than counts must be
+ * numeric.
+ */
+@Value
+public class Aggregate {
+
+  public enum Function {
+    COUNT, SUM, AVG, MIN, MAX
+  }
+
+  private Function function;
+  private String path;
+
+  public static Aggregate count() {
+    return new Aggregate(Function.COUNT, null);
+  }
+
+  public static Aggregate sum(@NonNull String path) {
+    return new Aggregate(Function.SUM, path);
+  }
+
+  public static Aggregate avg(@NonNull String path) {
+    return new Aggregate(Function.AVG, path);
+  }
+
+  public static Aggregate min(@NonNull String path) {
+    return new Aggregate(Function.MIN, path);
+  }
+
+  public static Aggregate max(@NonNull String path) {
+    return new Aggregate(Function.MAX, path);
+  }
+}
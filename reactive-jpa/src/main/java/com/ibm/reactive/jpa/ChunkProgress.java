@@ -0,0 +1,23 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import lombok.Value;
+
+/**
+ * Progress of a chunked mutation after a committed chunk. A mutation stopped by an error is
+ * resumed from the last key of the last progress it emitted.
+ */
+@Value
+public class ChunkProgress {
+
+  private long chunk;
+  private int rows;
+  private long totalRows;
+  private Object lastKey;
+  private boolean last;
+}
@@ -0,0 +1,63 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Version conflicts met by the executions retried on conflict, a growing ratio of retries to
+ * recovered executions tells the contention on hot rows.
+ */
+public class ConflictMetrics {
+
+  private final LongAdder conflicts = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder recovered = new LongAdder();
+  private final LongAdder exhausted = new LongAdder();
+
+  public long getConflicts() {
+    return conflicts.sum();
+  }
+
+  public long getRetries() {
+    return retries.sum();
+  }
+
+  /**
+   * Executions that succeeded after at least one retry.
+   */
+  public long getRecovered() {
+    return recovered.sum();
+  }
+
+  /**
+   * Executions that failed on a conflict after their last retry.
+   */
+  public long getExhausted() {
+    return exhausted.sum();
+  }
+
+  public void reset() {
+    conflicts.reset();
+    retries.reset();
+    recovered.reset();
+    exhausted.reset();
+  }
+
+  public void recordConflict(boolean retried) {
+    conflicts.increment();
+    if (retried) {
+      retries.increment();
+    } else {
+      exhausted.increment();
+    }
+  }
+
+  public void recordRecovery() {
+    recovered.increment();
+  }
+}
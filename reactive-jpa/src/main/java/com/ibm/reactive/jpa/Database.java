@@ -7,69 +7,447 @@
 package com.ibm.reactive.jpa;
 
 import com.github.fluent.hibernate.cfg.scanner.EntityScanner;
+import com.ibm.reactive.jpa.implementation.Accumulator;
+import com.ibm.reactive.jpa.implementation.AdaptiveFetchSize;
+import com.ibm.reactive.jpa.implementation.AdaptivePollInterval;
+import com.ibm.reactive.jpa.implementation.Aggregation;
+import com.ibm.reactive.jpa.implementation.ChunkedMutation;
+import com.ibm.reactive.jpa.implementation.ChunkedMutation.Chunk;
+import com.ibm.reactive.jpa.implementation.ConflictRetry;
 import com.ibm.reactive.jpa.implementation.DefaultExecution;
+import com.ibm.reactive.jpa.implementation.DefaultStreamExecution;
 import com.ibm.reactive.jpa.implementation.DefaultStreamer;
+import com.ibm.reactive.jpa.implementation.DefaultTail;
+import com.ibm.reactive.jpa.implementation.DefaultUpsert;
+import com.ibm.reactive.jpa.implementation.NativeStreamer;
+import com.ibm.reactive.jpa.implementation.NearCacheListener;
+import com.ibm.reactive.jpa.implementation.RowEncoder;
+import com.ibm.reactive.jpa.implementation.SessionPool;
+import com.ibm.reactive.jpa.implementation.SpillBuffer;
+import com.ibm.reactive.jpa.util.CapacityMonitor;
+import com.ibm.reactive.jpa.util.FairExecutor;
+import com.ibm.reactive.jpa.util.FairExecutor.Lane;
 import com.ibm.reactive.jpa.util.HibernateUtils;
+import com.ibm.reactive.jpa.util.JdbcUtils;
+import com.ibm.reactive.jpa.util.PartitionedExecutor;
+import com.ibm.reactive.jpa.util.PoolCapacity;
 import com.ibm.reactive.jpa.util.ReactiveUtils;
+import com.ibm.reactive.jpa.util.SerialExecutor;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.sql.DataSource;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.service.ServiceRegistry;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Getter
-public class Database {
+public class Database implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(Database.class);
 
   private SessionFactory sessionFactory;
   private ExecutorService service;
-
+  private int maxPoolSize;
+  private PartitionedExecutor affinityExecutor;
+  // every call runs in a priority lane, the lanes share the workers of the service
+  @Getter(AccessLevel.NONE)
+  private FairExecutor scheduler;
+  @Getter(AccessLevel.NONE)
+  private Map<Priority, Lane> priorityLanes;
+  @Getter(AccessLevel.NONE)
+  private PoolCapacity capacity;
+  @Getter(AccessLevel.NONE)
+  private ScheduledFuture<?> capacityWatch;
+  // slow calls and streams are only reported when a detector is set
+  @Setter
+  private volatile SlowQueryDetector slowQueryDetector;
+  // the MDC of the caller follows every call and stream, spans are only opened by other tracers
+  @NonNull
+  @Setter
+  private volatile Tracer tracer = new MdcTracer();
+  @Getter(AccessLevel.NONE)
+  private volatile NearCacheListener nearCacheListener;
+  @Getter(AccessLevel.NONE)
+  private final Map<Class<?>, EntityCodec<?>> codecs = new ConcurrentHashMap<>();
+  private final ConflictMetrics conflictMetrics = new ConflictMetrics();
+  // null unless sessions are reused
+  @Getter(AccessLevel.NONE)
+  private volatile SessionPool sessionPool;
+  // the session factory and the executor given by the caller are not closed with the database
+  @Getter(AccessLevel.NONE)
+  private boolean sharedSessionFactory;
+  @Getter(AccessLevel.NONE)
+  private boolean sharedService;
 
   public Database(Map<String, String> settings, List<String> resourcePackages) {
-    initSessionFactory(settings, resourcePackages, PoolConfiguration.defaultConfiguration());
+    this(settings, resourcePackages, PoolConfiguration.defaultConfiguration());
   }
 
   public Database(Map<String, String> settings, List<String> resourcePackages,
       PoolConfiguration configuration) {
     initSessionFactory(settings, resourcePackages, configuration);
+    DataSource dataSource = HibernateUtils.getDataSource(sessionFactory);
+    if (dataSource != null) {
+      watchCapacity(JdbcUtils.getCapacity(dataSource, configuration.getMaxPoolSize()));
+    }
+  }
+
+  /**
+   * Creates a database on a data source configured by the caller, the worker pool follows the
+   * capacity of the data source, see {@link #adjustToCapacity()}.
+   */
+  public Database(@NonNull DataSource dataSource, @NonNull Map<String, String> settings,
+      @NonNull List<String> resourcePackages) {
+    this(dataSource, settings, resourcePackages, JdbcUtils.getCapacity(dataSource,
+        PoolConfiguration.defaultConfiguration().getMaxPoolSize()));
+  }
+
+  public Database(@NonNull DataSource dataSource, @NonNull Map<String, String> settings,
+      @NonNull List<String> resourcePackages, @NonNull PoolCapacity capacity) {
+    addAnnotatedClasses(HibernateUtils.createServiceRegistry(settings, dataSource),
+        resourcePackages);
+    initializeExecutorService(Math.max(1, capacity.getMaxConnections()));
+    watchCapacity(capacity);
   }
 
   public Database(SessionFactory sessionFactory, int maxPoolSize) {
     this.sessionFactory = sessionFactory;
+    this.sharedSessionFactory = true;
     initializeExecutorService(maxPoolSize);
   }
 
+  /**
+   * Creates a database running its calls on the given executor, which may be shared with other
+   * databases, instead of its own thread pool.
+   */
+  public Database(@NonNull Map<String, String> settings, @NonNull List<String> resourcePackages,
+      @NonNull PoolConfiguration configuration, @NonNull ExecutorService service) {
+    createSessionFactory(settings, resourcePackages, configuration);
+    this.maxPoolSize = configuration.getMaxPoolSize();
+    this.service = service;
+    this.sharedService = true;
+    initializeScheduler();
+  }
+
   private void initSessionFactory(Map<String, String> settings, List<String> resourcePackages,
       PoolConfiguration configuration) {
-    ServiceRegistry registry = HibernateUtils.createServiceRegistry(settings, configuration);
+    createSessionFactory(settings, resourcePackages, configuration);
+    initializeExecutorService(configuration.getMaxPoolSize());
+  }
+
+  private void createSessionFactory(Map<String, String> settings, List<String> resourcePackages,
+      PoolConfiguration configuration) {
+    addAnnotatedClasses(HibernateUtils.createServiceRegistry(settings, configuration),
+        resourcePackages);
+  }
+
+  private void addAnnotatedClasses(ServiceRegistry registry, List<String> resourcePackages) {
     MetadataSources sources = new MetadataSources(registry);
     List<Class<?>> classes = EntityScanner
         .scanPackages(resourcePackages.toArray(new String[resourcePackages.size()]))
         .result();
     classes.forEach(sources::addAnnotatedClass);
     sessionFactory = HibernateUtils.getSessionFactory(sources);
-    initializeExecutorService(configuration.getMaxPoolSize());
   }
 
   private void initializeExecutorService(int maxPoolSize) {
+    this.maxPoolSize = maxPoolSize;
     service = Executors.newFixedThreadPool(maxPoolSize);
+    initializeScheduler();
+  }
+
+  private void initializeScheduler() {
+    scheduler = new FairExecutor(service, maxPoolSize);
+    priorityLanes = new EnumMap<>(Priority.class);
+    for (Priority value : Priority.values()) {
+      priorityLanes.put(value, scheduler.lane(value.name(), value.getWeight(),
+          value.quota(maxPoolSize)));
+    }
+  }
+
+  private void watchCapacity(PoolCapacity capacity) {
+    this.capacity = capacity;
+    adjustToCapacity();
+    // the monitor only holds the database weakly, a database never closed is still collected
+    capacityWatch = CapacityMonitor.watch(this, Database::adjustToCapacity,
+        CapacityMonitor.DEFAULT_INTERVAL);
+  }
+
+  /**
+   * Resizes the workers, and the quotas of the priority lanes, to the current capacity of the
+   * connection pool, so that no worker waits for a connection and no connection is left idle.
+   * It is also checked periodically until the database is closed.
+   */
+  public synchronized int adjustToCapacity() {
+    if (capacity == null) {
+      return maxPoolSize;
+    }
+    int target = Math.max(1, capacity.getMaxConnections());
+    if (target == maxPoolSize) {
+      return maxPoolSize;
+    }
+    if (service instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor pool = (ThreadPoolExecutor) service;
+      // the core size can never be above the maximum size
+      if (target > pool.getMaximumPoolSize()) {
+        pool.setMaximumPoolSize(target);
+        pool.setCorePoolSize(target);
+      } else {
+        pool.setCorePoolSize(target);
+        pool.setMaximumPoolSize(target);
+      }
+    }
+    scheduler.setSlots(target);
+    priorityLanes.forEach((priority, lane) -> lane.setQuota(priority.quota(target)));
+    logger.info("Worker pool resized from {} to {} threads", maxPoolSize, target);
+    maxPoolSize = target;
+    return maxPoolSize;
+  }
+
+  /**
+   * Partitions of the calls with an affinity key, they run on the workers of the database.
+   */
+  public synchronized PartitionedExecutor getAffinityExecutor() {
+    // only created by the first call with an affinity key
+    if (affinityExecutor == null) {
+      affinityExecutor = new PartitionedExecutor(maxPoolSize, defaultLane());
+    }
+    return affinityExecutor;
+  }
+
+  /**
+   * Lane of the calls with the priority, the lanes share the workers of the database and a
+   * paged stream counts against the quota of its lane until it is closed. Calls without a
+   * priority are interactive.
+   */
+  public Lane getPriorityLane(@NonNull Priority priority) {
+    return priorityLanes.get(priority);
+  }
+
+  private Lane defaultLane() {
+    return priorityLanes.get(Priority.INTERACTIVE);
+  }
+
+  /**
+   * Stops the workers of the database and closes the session factory it built, the session
+   * factory or executor given by the caller are left open.
+   */
+  @Override
+  public synchronized void close() {
+    if (capacityWatch != null) {
+      capacityWatch.cancel(false);
+    }
+    if (affinityExecutor != null) {
+      affinityExecutor.close();
+    }
+    scheduler.close();
+    if (!sharedService) {
+      service.shutdown();
+    }
+    if (sessionPool != null) {
+      sessionPool.close();
+    }
+    if (!sharedSessionFactory) {
+      sessionFactory.close();
+    }
+  }
+
+  public void enableStatistics() {
+    sessionFactory.getStatistics().setStatisticsEnabled(true);
+  }
+
+  public void disableStatistics() {
+    sessionFactory.getStatistics().setStatisticsEnabled(false);
+  }
+
+  public void clearStatistics() {
+    sessionFactory.getStatistics().clear();
+  }
+
+  public StatsSnapshot statistics() {
+    return StatsSnapshot.of(sessionFactory.getStatistics());
+  }
+
+  /**
+   * Enables the statistics and emits a snapshot of them every interval, the counters keep
+   * growing from one snapshot to the next.
+   */
+  public Flux<StatsSnapshot> statistics(@NonNull Duration interval) {
+    return Flux.defer(() -> {
+      enableStatistics();
+      return Flux.interval(interval).map(tick -> statistics());
+    });
+  }
+
+  /**
+   * Reuses the session of a successful call for the next call of the same worker thread instead
+   * of building a new one, see {@link SessionPool}. Calls joining {@link #inTransaction} and
+   * streams are not affected.
+   */
+  public synchronized void setSessionReuse(boolean reuse) {
+    SessionPool previous = sessionPool;
+    if (reuse != (previous != null)) {
+      sessionPool = reuse ? new SessionPool(sessionFactory) : null;
+      if (previous != null) {
+        // the sessions kept by the worker threads are closed, the ones in use when released
+        previous.close();
+      }
+    }
+  }
+
+  public boolean isSessionReuse() {
+    return sessionPool != null;
+  }
+
+  /**
+   * Keeps the entities committed through this database in the cache, {@code null} stops it.
+   */
+  public synchronized void setNearCache(NearCache nearCache) {
+    if (nearCacheListener == null) {
+      if (nearCache == null) {
+        return;
+      }
+      NearCacheListener listener = new NearCacheListener();
+      HibernateUtils.appendPostCommitListener(sessionFactory, listener);
+      nearCacheListener = listener;
+    }
+    nearCacheListener.setCache(nearCache);
+  }
+
+  public NearCache getNearCache() {
+    NearCacheListener listener = nearCacheListener;
+    return listener == null ? null : listener.getCache();
+  }
+
+  /**
+   * Finds the entity in the near cache, or loads it. The cache is skipped inside
+   * {@link #inTransaction} since the transaction may have changed the entity.
+   */
+  public <T> Mono<T> find(@NonNull Class<T> type, @NonNull Object id) {
+    return Mono.subscriberContext().flatMap(context -> {
+      NearCache cache = getNearCache();
+      if (cache != null && ReactiveTransaction.current(context, this) == null) {
+        T cached = cache.get(type, id);
+        if (cached != null) {
+          return Mono.just(cached);
+        }
+      }
+      return execute(entityManager -> entityManager.find(type, id)).mono();
+    });
+  }
+
+  /**
+   * Codec of the entity class, generated once from the metamodel.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> EntityCodec<T> codec(@NonNull Class<T> type) {
+    return (EntityCodec<T>) codecs.computeIfAbsent(type,
+        entity -> EntityCodec.of(sessionFactory, entity));
+  }
+
+  /**
+   * Inserts the rows whose natural key is not found and updates the others, see
+   * {@link UpsertStrategy}. The natural identifier of the entity is used when no attribute is
+   * given.
+   */
+  public <T> UpsertBuilder<T> upsert(@NonNull Flux<T> rows, @NonNull Class<T> type,
+      String... naturalKey) {
+    return new UpsertBuilder<>(this, rows, type, Arrays.asList(naturalKey));
+  }
+
+  /**
+   * Runs a JPQL delete or update, with an alias on its entity, in chunks of rows ordered by
+   * identifier, each chunk in its own transaction.
+   */
+  public ChunkedMutationBuilder mutateInChunks(@NonNull Class<?> type,
+      @NonNull String statement) {
+    return new ChunkedMutationBuilder(this, type, statement);
   }
 
   public <T> ReactiveExecutionBuilder<T> execute(Function<EntityManager, T> function) {
     return new ReactiveExecutionBuilder<>(function, this);
   }
 
+  public <T> TailBuilder<T> tail(@NonNull String query, @NonNull Class<T> type,
+      @NonNull String cursorColumn) {
+    return new TailBuilder<>(this, query, type, cursorColumn);
+  }
+
+  public <T> NativeStreamerBuilder<T> streamNative(@NonNull String sql,
+      @NonNull RowMapper<T> mapper) {
+    return new NativeStreamerBuilder<>(this, sql, mapper);
+  }
+
+  public <T> StreamExecutionBuilder<T> executeStream(
+      @NonNull Function<EntityManager, Stream<T>> function) {
+    return new StreamExecutionBuilder<>(function, this);
+  }
+
+  public <T> StreamExecutionBuilder<T> executeScroll(
+      @NonNull Function<EntityManager, ScrollableResults> function, @NonNull Class<T> type) {
+    return new StreamExecutionBuilder<>(
+        entityManager -> HibernateUtils.stream(function.apply(entityManager), type), this);
+  }
+
   public <T> StreamerBuilder<T> stream(String query, Class<T> type) {
-    return new StreamerBuilder<>(this, query, type);
+    return new StreamerBuilder<>(this, query, null, type);
+  }
+
+  public <T> StreamerBuilder<T> stream(@NonNull CriteriaQuery<T> criteria) {
+    return new StreamerBuilder<>(this, null, criteria, criteria.getResultType());
+  }
+
+  public <T> StreamerBuilder<T> stream(
+      @NonNull Function<CriteriaBuilder, CriteriaQuery<T>> criteria) {
+    return stream(criteria.apply(sessionFactory.getCriteriaBuilder()));
+  }
+
+  public <T> Flux<T> inTransaction(Function<ReactiveTransaction, ? extends Publisher<T>> body) {
+    return inTransaction(TransactionDefinition.builder().build(), body);
+  }
+
+  public <T> Flux<T> inTransaction(@NonNull TransactionDefinition definition,
+      @NonNull Function<ReactiveTransaction, ? extends Publisher<T>> body) {
+    return ReactiveTransaction.begin(this, definition)
+        .flatMapMany(transaction -> Flux.<T>defer(() -> body.apply(transaction))
+            .subscriberContext(context -> context.put(ReactiveTransaction.class, transaction))
+            .concatWith(transaction.commit().then(Mono.<T>empty()))
+            .onErrorResume(error -> transaction.rollback().then(Mono.<T>error(error)))
+            .doOnCancel(() -> transaction.rollback().subscribe()));
   }
 
 
@@ -77,33 +455,211 @@ public class Database {
 
     private final Database database;
     private final String query;
+    private final CriteriaQuery<T> criteria;
+    private boolean bindLiterals = true;
     private IsolationLevel isolationLevel;
     private final Class<T> type;
     private int maxResults = -1;
     private int firstResult = -1;
     private int fetchSize = DefaultStreamer.DEFAULT_FETCH_SIZE;
+    private long fetchMemoryBudget;
+    private Priority priority;
     private final HashMap<String, Object> parameters = new HashMap<>();
     private List<Object> parameterList;
+    private String fetchGraph;
+    private final List<String> fetchAttributes = new ArrayList<>();
+    private int fetchBatchSize = DefaultStreamer.DEFAULT_FETCH_BATCH_SIZE;
+    private RowCodec<T> spillCodec;
+    private SpillOptions spillOptions;
 
-    private StreamerBuilder(Database database, String query, Class<T> type) {
+    private StreamerBuilder(Database database, String query, CriteriaQuery<T> criteria,
+        Class<T> type) {
       this.database = database;
       this.query = query;
+      this.criteria = criteria;
       this.type = type;
     }
 
     public Flux<T> flux() {
-      DefaultStreamer<T> streamer = DefaultStreamer.<T>builder()
+      Flux<T> flux = Mono.subscriberContext()
+          .flatMapMany(context -> stream(ReactiveTransaction.current(context, database)));
+      return spillCodec == null ? flux : SpillBuffer.spill(flux, spillCodec, spillOptions);
+    }
+
+    /**
+     * Emits the rows encoded by the codec of the entity, see {@link Database#codec(Class)}.
+     */
+    public Flux<ByteBuffer> encoded() {
+      return encoded(database.codec(type));
+    }
+
+    public Flux<ByteBuffer> encoded(@NonNull RowCodec<T> codec) {
+      return RowEncoder.encode(flux(), codec);
+    }
+
+    public StreamerBuilder<T> spill() {
+      return spill(database.codec(type));
+    }
+
+    /**
+     * Drains the rows into a temporary file so the connection is released before a slow
+     * subscriber has consumed them.
+     */
+    public StreamerBuilder<T> spill(@NonNull RowCodec<T> codec) {
+      return spill(codec, SpillOptions.defaultOptions());
+    }
+
+    public StreamerBuilder<T> spill(@NonNull RowCodec<T> codec, @NonNull SpillOptions options) {
+      this.spillCodec = codec;
+      this.spillOptions = options;
+      return this;
+    }
+
+    /**
+     * Counts the rows, in the database when the query can be rewritten, see
+     * {@link #aggregate(Aggregate...)}.
+     */
+    public Mono<Long> count() {
+      return aggregate(Aggregate.count()).map(values -> values.get(0).longValue());
+    }
+
+    /**
+     * Sums the attribute of the rows, empty when no row has a value.
+     */
+    public Mono<Number> sum(@NonNull String path) {
+      return aggregate(Aggregate.sum(path)).flatMap(values -> Mono.justOrEmpty(values.get(0)));
+    }
+
+    /**
+     * Sums the streamed rows in a primitive accumulator, the rows are always streamed.
+     */
+    public Mono<Long> sumLong(@NonNull ToLongFunction<? super T> value) {
+      return flux()
+          .collect(Accumulator.Sum::new, (sum, row) -> sum.addLong(value.applyAsLong(row)))
+          .map(Accumulator.Sum::getLongSum);
+    }
+
+    public Mono<Double> sumDouble(@NonNull ToDoubleFunction<? super T> value) {
+      return flux()
+          .collect(Accumulator.Sum::new, (sum, row) -> sum.addDouble(value.applyAsDouble(row)))
+          .map(Accumulator.Sum::getDoubleSum);
+    }
+
+    /**
+     * Computes the aggregates, in their order, with one JPQL query when the query is a string on
+     * one entity without fetch joins, grouping nor result window. Otherwise the rows are
+     * streamed and aggregated as they come.
+     */
+    public Mono<List<Number>> aggregate(@NonNull Aggregate... aggregates) {
+      return aggregate(new Aggregation(Arrays.asList(aggregates), null))
+          .map(groups -> groups.values().iterator().next());
+    }
+
+    public GroupBuilder<T> groupBy(@NonNull String path) {
+      return new GroupBuilder<>(this, path);
+    }
+
+    private Mono<Map<Object, List<Number>>> aggregate(Aggregation aggregation) {
+      aggregation.validate(database.sessionFactory, type);
+      String compiled = fetchGraph == null && fetchAttributes.isEmpty() && maxResults < 0
+          && firstResult < 0 ? aggregation.compile(query) : null;
+      if (compiled == null) {
+        return Mono.defer(() -> {
+          Aggregation.Accumulation accumulation = aggregation.accumulation(
+              database.sessionFactory, type);
+          return flux().doOnNext(accumulation::add).then(Mono.fromSupplier(accumulation::results));
+        });
+      }
+      TransactionDefinition.TransactionDefinitionBuilder transaction = TransactionDefinition
+          .builder()
+          .isReadonly(true);
+      if (isolationLevel != null) {
+        transaction.isolation(isolationLevel);
+      }
+      ReactiveExecutionBuilder<List<?>> execution = database
+          .execute(entityManager -> {
+            Query aggregateQuery = entityManager.createQuery(compiled);
+            if (parameterList != null) {
+              for (int position = 0; position < parameterList.size(); position++) {
+                aggregateQuery.setParameter(position + 1, parameterList.get(position));
+              }
+            } else {
+              parameters.forEach(aggregateQuery::setParameter);
+            }
+            return (List<?>) aggregateQuery.getResultList();
+          })
+          .transaction(transaction.build());
+      if (priority != null) {
+        execution.priority(priority);
+      }
+      return execution.mono().map(aggregation::fromResults);
+    }
+
+    private Flux<T> stream(ReactiveTransaction transaction) {
+      Executor executor = transaction == null
+          ? database.getPriorityLane(priority == null ? Priority.INTERACTIVE : priority)
+          : transaction.getExecutor();
+      return ReactiveUtils.stream(DefaultStreamer.describe(query, type), database.tracer,
+          restore -> ReactiveUtils.stream(restore.apply(executor),
+              streamer(transaction, restore)));
+    }
+
+    private DefaultStreamer<T> streamer(ReactiveTransaction transaction,
+        UnaryOperator<Executor> restore) {
+      Executor pageExecutor = null;
+      if (transaction == null && priority != null) {
+        // the next page keeps the slot of the stream in its lane
+        pageExecutor = restore.apply(database.getPriorityLane(priority)::resume);
+      }
+      return DefaultStreamer.<T>builder()
           .type(type)
           .query(query)
+          .criteria(criteria)
+          .bindLiterals(bindLiterals)
           .sessionFactory(database.sessionFactory)
           .parameters(parameters)
           .parameterList(parameterList)
           .fetchSize(fetchSize)
+          .fetchMemoryBudget(fetchMemoryBudget)
           .maxResults(maxResults)
           .firstResult(firstResult)
           .isolationLevel(isolationLevel)
+          .sharedSession(transaction == null ? null : transaction.getSession())
+          .pageExecutor(pageExecutor)
+          .slowQueryDetector(database.slowQueryDetector)
+          .fetchGraph(fetchGraph)
+          .fetchAttributes(fetchAttributes)
+          .fetchBatchSize(fetchBatchSize)
           .build();
-      return ReactiveUtils.stream(database.service, streamer);
+    }
+
+    /**
+     * Binds the literals of the criteria query as parameters, the default, or renders them as the
+     * literal handling mode of the session factory says.
+     */
+    public StreamerBuilder<T> bindLiterals(boolean bindLiterals) {
+      this.bindLiterals = bindLiterals;
+      return this;
+    }
+
+    public StreamerBuilder<T> fetchGraph(@NonNull String graphName) {
+      this.fetchGraph = graphName;
+      return this;
+    }
+
+    public StreamerBuilder<T> fetchJoin(@NonNull String... attributes) {
+      Collections.addAll(fetchAttributes, attributes);
+      return this;
+    }
+
+    public StreamerBuilder<T> fetchBatchSize(int fetchBatchSize) {
+      this.fetchBatchSize = fetchBatchSize;
+      return this;
+    }
+
+    public StreamerBuilder<T> priority(@NonNull Priority priority) {
+      this.priority = priority;
+      return this;
     }
 
     public StreamerBuilder<T> isolationLevel(IsolationLevel level) {
@@ -140,6 +696,399 @@ public class Database {
       this.fetchSize = fetchSize;
       return this;
     }
+
+    public StreamerBuilder<T> adaptiveFetchSize() {
+      return adaptiveFetchSize(AdaptiveFetchSize.DEFAULT_MEMORY_BUDGET);
+    }
+
+    public StreamerBuilder<T> adaptiveFetchSize(long memoryBudget) {
+      this.fetchMemoryBudget = memoryBudget;
+      return this;
+    }
+  }
+
+  public static class TailBuilder<T> {
+
+    private final Database database;
+    private final String query;
+    private final Class<T> type;
+    private final String cursorColumn;
+    private final HashMap<String, Object> parameters = new HashMap<>();
+    private TransactionDefinition transaction;
+    private Object startAfter;
+    private int batchSize = DefaultTail.DEFAULT_BATCH_SIZE;
+    private long minInterval = AdaptivePollInterval.DEFAULT_MIN_INTERVAL;
+    private long maxInterval = AdaptivePollInterval.DEFAULT_MAX_INTERVAL;
+    private long lookback;
+
+    private TailBuilder(Database database, String query, Class<T> type, String cursorColumn) {
+      this.database = database;
+      this.query = query;
+      this.type = type;
+      this.cursorColumn = cursorColumn;
+    }
+
+    public TailBuilder<T> addParameter(@NonNull String name, Object value) {
+      parameters.put(name, value);
+      return this;
+    }
+
+    public TailBuilder<T> transaction(TransactionDefinition transaction) {
+      this.transaction = transaction;
+      return this;
+    }
+
+    public TailBuilder<T> startAfter(Object cursor) {
+      this.startAfter = cursor;
+      return this;
+    }
+
+    public TailBuilder<T> batchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    public TailBuilder<T> pollInterval(@NonNull Duration min, @NonNull Duration max) {
+      this.minInterval = min.toMillis();
+      this.maxInterval = max.toMillis();
+      return this;
+    }
+
+    /**
+     * Reads the rows behind the last cursor again during the window and skips the delivered
+     * ones, so a row committed after a higher cursor was read is still delivered when it commits
+     * within the window. Without it the cursors must be assigned in commit order.
+     */
+    public TailBuilder<T> lookback(@NonNull Duration window) {
+      this.lookback = window.toMillis();
+      return this;
+    }
+
+    public Flux<TailRecord<T>> records() {
+      return DefaultTail.<T>builder()
+          .query(query)
+          .type(type)
+          .cursorColumn(cursorColumn)
+          .sessionFactory(database.sessionFactory)
+          .executor(database.defaultLane())
+          .tracer(database.tracer)
+          .parameters(parameters)
+          .transactionDefinition(transaction)
+          .startAfter(startAfter)
+          .batchSize(batchSize)
+          .minInterval(minInterval)
+          .maxInterval(maxInterval)
+          .lookback(lookback)
+          .build()
+          .flux();
+    }
+
+    public Flux<T> flux() {
+      return records().map(TailRecord::getValue);
+    }
+  }
+
+  public static class NativeStreamerBuilder<T> {
+
+    private final Database database;
+    private final String sql;
+    private final RowMapper<T> mapper;
+    private final List<Object> parameterList = new ArrayList<>();
+    private IsolationLevel isolationLevel;
+    private int fetchSize = DefaultStreamer.DEFAULT_FETCH_SIZE;
+    private int maxResults = -1;
+
+    private NativeStreamerBuilder(Database database, String sql, RowMapper<T> mapper) {
+      this.database = database;
+      this.sql = sql;
+      this.mapper = mapper;
+    }
+
+    public Flux<T> flux() {
+      return Mono.subscriberContext()
+          .flatMapMany(context -> stream(ReactiveTransaction.current(context, database)));
+    }
+
+    private Flux<T> stream(ReactiveTransaction transaction) {
+      return ReactiveUtils.stream(sql, database.tracer,
+          restore -> streamer(transaction, restore).flux());
+    }
+
+    private NativeStreamer<T> streamer(ReactiveTransaction transaction,
+        UnaryOperator<Executor> restore) {
+      return NativeStreamer.<T>builder()
+          .sql(sql)
+          .mapper(mapper)
+          .sessionFactory(database.sessionFactory)
+          .parameterList(parameterList)
+          .isolationLevel(isolationLevel)
+          .fetchSize(fetchSize)
+          .maxResults(maxResults)
+          .sharedSession(transaction == null ? null : transaction.getSession())
+          .slowQueryDetector(database.slowQueryDetector)
+          .executor(restore.apply(transaction == null
+              ? new SerialExecutor(database.defaultLane())
+              : transaction.getExecutor()))
+          .build();
+    }
+
+    public NativeStreamerBuilder<T> isolationLevel(IsolationLevel level) {
+      this.isolationLevel = level;
+      return this;
+    }
+
+    public NativeStreamerBuilder<T> addParameter(Object value) {
+      parameterList.add(value);
+      return this;
+    }
+
+    public NativeStreamerBuilder<T> parameterList(@NonNull List<Object> parameters) {
+      parameterList.clear();
+      parameterList.addAll(parameters);
+      return this;
+    }
+
+    public NativeStreamerBuilder<T> fetchSize(int fetchSize) {
+      this.fetchSize = fetchSize;
+      return this;
+    }
+
+    public NativeStreamerBuilder<T> maxResults(int maxResults) {
+      this.maxResults = maxResults;
+      return this;
+    }
+  }
+
+  public static class StreamExecutionBuilder<T> {
+
+    private final Function<EntityManager, Stream<T>> function;
+    private final Database database;
+    private TransactionDefinition transaction;
+    private int clearInterval = DefaultStreamExecution.DEFAULT_CLEAR_INTERVAL;
+
+    private StreamExecutionBuilder(Function<EntityManager, Stream<T>> function,
+        Database database) {
+      this.function = function;
+      this.database = database;
+    }
+
+    public StreamExecutionBuilder<T> transaction(TransactionDefinition transaction) {
+      this.transaction = transaction;
+      return this;
+    }
+
+    public StreamExecutionBuilder<T> clearInterval(int clearInterval) {
+      this.clearInterval = clearInterval;
+      return this;
+    }
+
+    public Flux<T> flux() {
+      return Mono.subscriberContext()
+          .flatMapMany(context -> stream(ReactiveTransaction.current(context, database)));
+    }
+
+    private Flux<T> stream(ReactiveTransaction current) {
+      // the queries of the function are unknown, its class tells where it comes from
+      return ReactiveUtils.stream(function.getClass().getName(), database.tracer,
+          restore -> execution(current, restore).flux());
+    }
+
+    private DefaultStreamExecution<T> execution(ReactiveTransaction current,
+        UnaryOperator<Executor> restore) {
+      return DefaultStreamExecution.<T>builder()
+          .function(function)
+          .sessionFactory(database.sessionFactory)
+          .transactionDefinition(transaction)
+          .clearInterval(clearInterval)
+          .sharedEntityManager(current == null ? null : current.getEntityManager())
+          .slowQueryDetector(database.slowQueryDetector)
+          .executor(restore.apply(current == null
+              ? new SerialExecutor(database.defaultLane())
+              : current.getExecutor()))
+          .build();
+    }
+  }
+
+  public static class GroupBuilder<T> {
+
+    private final StreamerBuilder<T> streamer;
+    private final String path;
+
+    private GroupBuilder(StreamerBuilder<T> streamer, String path) {
+      this.streamer = streamer;
+      this.path = path;
+    }
+
+    /**
+     * Aggregates of each value of the group attribute, ordered by value when they are computed
+     * in the database, by first row otherwise.
+     */
+    public Mono<Map<Object, List<Number>>> aggregate(@NonNull Aggregate... aggregates) {
+      return streamer.aggregate(new Aggregation(Arrays.asList(aggregates), path));
+    }
+
+    public Mono<Map<Object, Long>> count() {
+      return aggregate(Aggregate.count()).map(groups -> {
+        Map<Object, Long> counts = new LinkedHashMap<>();
+        groups.forEach((key, values) -> counts.put(key, values.get(0).longValue()));
+        return counts;
+      });
+    }
+  }
+
+  public static class UpsertBuilder<T> {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final Database database;
+    private final Flux<T> rows;
+    private final Class<T> type;
+    private final List<String> naturalKey;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private UpsertStrategy strategy;
+    private TransactionDefinition transaction = TransactionDefinition.builder().build();
+
+    private UpsertBuilder(Database database, Flux<T> rows, Class<T> type,
+        List<String> naturalKey) {
+      this.database = database;
+      this.rows = rows;
+      this.type = type;
+      this.naturalKey = naturalKey;
+    }
+
+    public UpsertBuilder<T> batchSize(int batchSize) {
+      if (batchSize <= 0) {
+        throw new IllegalArgumentException("batchSize must be positive");
+      }
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Overrides the strategy chosen from the dialect.
+     */
+    public UpsertBuilder<T> strategy(@NonNull UpsertStrategy strategy) {
+      this.strategy = strategy;
+      return this;
+    }
+
+    /**
+     * Definition of the transaction of each batch, batches join the transaction of
+     * {@link Database#inTransaction}.
+     */
+    public UpsertBuilder<T> transaction(@NonNull TransactionDefinition transaction) {
+      this.transaction = transaction;
+      return this;
+    }
+
+    public Mono<UpsertResult> mono() {
+      return Mono.defer(() -> {
+        DefaultUpsert<T> upsert = new DefaultUpsert<>(database.sessionFactory, type, naturalKey,
+            strategy);
+        return rows.buffer(batchSize)
+            .concatMap(batch -> database
+                .execute(entityManager -> upsert.apply(entityManager, batch))
+                .transaction(transaction)
+                .mono()
+                .doOnNext(result -> invalidate(batch)))
+            .reduce(UpsertResult.EMPTY, UpsertResult::plus);
+      });
+    }
+
+    // the near cache listener does not see statements run outside of the session
+    private void invalidate(List<T> batch) {
+      NearCache cache = database.getNearCache();
+      if (cache != null) {
+        PersistenceUnitUtil util = database.sessionFactory.getPersistenceUnitUtil();
+        batch.forEach(row -> cache.invalidate(type, util.getIdentifier(row)));
+      }
+    }
+  }
+
+  public static class ChunkedMutationBuilder {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final Database database;
+    private final Class<?> type;
+    private final String statement;
+    private final HashMap<String, Object> parameters = new HashMap<>();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private Duration pace = Duration.ZERO;
+    private Object resumeAfter;
+    private TransactionDefinition transaction = TransactionDefinition.builder().build();
+
+    private ChunkedMutationBuilder(Database database, Class<?> type, String statement) {
+      this.database = database;
+      this.type = type;
+      this.statement = statement;
+    }
+
+    public ChunkedMutationBuilder addParameter(@NonNull String name, Object value) {
+      parameters.put(name, value);
+      return this;
+    }
+
+    public ChunkedMutationBuilder chunkSize(int chunkSize) {
+      this.chunkSize = chunkSize;
+      return this;
+    }
+
+    /**
+     * Delay between the commit of a chunk and the start of the next one.
+     */
+    public ChunkedMutationBuilder pace(@NonNull Duration pace) {
+      this.pace = pace;
+      return this;
+    }
+
+    /**
+     * Starts after the key, usually the last key of the progress emitted before a failure.
+     */
+    public ChunkedMutationBuilder resumeAfter(Object key) {
+      this.resumeAfter = key;
+      return this;
+    }
+
+    public ChunkedMutationBuilder transaction(@NonNull TransactionDefinition transaction) {
+      this.transaction = transaction;
+      return this;
+    }
+
+    public Flux<ChunkProgress> flux() {
+      return Flux.defer(() -> {
+        ChunkedMutation mutation = new ChunkedMutation(database.sessionFactory, type, statement,
+            chunkSize);
+        Map<String, Object> bound = new HashMap<>(parameters);
+        return chunk(mutation, new ChunkProgress(0, 0, 0, resumeAfter, false), bound)
+            .expand(progress -> {
+              if (progress.isLast()) {
+                return Mono.empty();
+              }
+              Mono<ChunkProgress> next = chunk(mutation, progress, bound);
+              return pace.isZero() ? next : Mono.delay(pace).then(next);
+            });
+      });
+    }
+
+    // chunks never join an outer transaction, they are committed one by one
+    private Mono<ChunkProgress> chunk(ChunkedMutation mutation, ChunkProgress previous,
+        Map<String, Object> bound) {
+      DefaultExecution<Chunk> execution = new DefaultExecution<>(transaction,
+          database.sessionFactory, database.slowQueryDetector, database.sessionPool);
+      return ReactiveUtils.execute(database.defaultLane(), execution,
+          entityManager -> mutation.apply(entityManager, previous, bound), database.tracer)
+          .doOnNext(chunk -> invalidate(chunk.getKeys()))
+          .map(Chunk::getProgress);
+    }
+
+    // bulk statements skip the post-commit listeners, the committed keys leave the cache here
+    private void invalidate(List<?> keys) {
+      NearCache cache = database.getNearCache();
+      if (cache != null) {
+        keys.forEach(key -> cache.invalidate(type, key));
+      }
+    }
   }
 
   public static class ReactiveExecutionBuilder<T> {
@@ -147,6 +1096,10 @@ public class Database {
     private final Function<EntityManager, T> function;
     private final Database database;
     private TransactionDefinition transaction;
+    private Object affinityKey;
+    private Priority priority;
+    private int conflictRetries;
+    private Duration conflictBackoff;
 
     private ReactiveExecutionBuilder(Function<EntityManager, T> function, Database database) {
       this.function = function;
@@ -158,9 +1111,60 @@ public class Database {
       return this;
     }
 
+    public ReactiveExecutionBuilder<T> affinity(@NonNull Object key) {
+      this.affinityKey = key;
+      return this;
+    }
+
+    public ReactiveExecutionBuilder<T> priority(@NonNull Priority priority) {
+      this.priority = priority;
+      return this;
+    }
+
+    /**
+     * Runs the function again, in a new entity manager and transaction, when it fails on a
+     * version conflict, at most {@code retries} times. The delay before a retry is a random
+     * part of the backoff doubled at each retry. Executions joining the transaction of
+     * {@link Database#inTransaction} are not retried.
+     */
+    public ReactiveExecutionBuilder<T> retryOnConflict(int retries, @NonNull Duration backoff) {
+      if (retries < 0) {
+        throw new IllegalArgumentException("retries must not be negative");
+      }
+      this.conflictRetries = retries;
+      this.conflictBackoff = backoff;
+      return this;
+    }
+
     public Mono<T> mono() {
-      DefaultExecution<T> execution = new DefaultExecution<>(transaction, database.sessionFactory);
-      return ReactiveUtils.execute(database.service, execution, function);
+      return Mono.subscriberContext().flatMap(context -> {
+        ReactiveTransaction current = ReactiveTransaction.current(context, database);
+        Mono<T> execution = execute(current);
+        if (current != null || conflictRetries == 0) {
+          return execution;
+        }
+        return ConflictRetry.retry(execution, conflictRetries, conflictBackoff,
+            database.conflictMetrics);
+      });
+    }
+
+    private Mono<T> execute(ReactiveTransaction current) {
+      if (current != null) {
+        // joins the outer transaction, the own transaction definition is ignored
+        DefaultExecution<T> joined = new DefaultExecution<>(null, database.sessionFactory,
+            database.slowQueryDetector);
+        return ReactiveUtils.execute(current.getExecutor(),
+            body -> joined.execute(current.getEntityManager(), body), function, database.tracer);
+      }
+      DefaultExecution<T> execution = new DefaultExecution<>(transaction, database.sessionFactory,
+          database.slowQueryDetector, database.sessionPool);
+      Executor executor = database.defaultLane();
+      if (affinityKey != null) {
+        executor = database.getAffinityExecutor().forKey(affinityKey);
+      } else if (priority != null) {
+        executor = database.getPriorityLane(priority);
+      }
+      return ReactiveUtils.execute(executor, execution, function, database.tracer);
     }
 
     @SuppressWarnings("unchecked")
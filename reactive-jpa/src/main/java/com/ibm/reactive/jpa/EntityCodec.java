@@ -0,0 +1,262 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import com.ibm.reactive.jpa.implementation.ValueCodec;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.EntityType;
+import lombok.Getter;
+import lombok.NonNull;
+import org.hibernate.SessionFactory;
+
+/**
+ * Binary codec of an entity class generated from the Hibernate metamodel. The basic attributes,
+ * the identifier included, are written in the order of their names; associations and embedded
+ * attributes are not encoded and are left to their default value when decoding.
+ *
+ * <p>Public getters, setters and constructors are called through classes generated by
+ * {@link LambdaMetafactory}, other members through method handles, so no reflective call is
+ * made per row. Instances are thread safe.
+ */
+public class EntityCodec<T> implements RowCodec<T> {
+
+  @Getter
+  private final Class<T> type;
+  private final Supplier<T> constructor;
+  private final AttributeCodec[] attributes;
+
+  private EntityCodec(Class<T> type, Supplier<T> constructor, List<AttributeCodec> attributes) {
+    this.type = type;
+    this.constructor = constructor;
+    this.attributes = attributes.toArray(new AttributeCodec[0]);
+  }
+
+  public static <T> EntityCodec<T> of(@NonNull SessionFactory sessionFactory,
+      @NonNull Class<T> type) {
+    EntityType<T> entity = sessionFactory.getMetamodel().entity(type);
+    List<Attribute<? super T, ?>> basics = new ArrayList<>();
+    for (Attribute<? super T, ?> attribute : entity.getAttributes()) {
+      if (attribute.getPersistentAttributeType() == PersistentAttributeType.BASIC) {
+        basics.add(attribute);
+      }
+    }
+    basics.sort(Comparator.comparing(Attribute::getName));
+    List<AttributeCodec> codecs = new ArrayList<>(basics.size());
+    for (Attribute<? super T, ?> attribute : basics) {
+      ValueCodec codec = ValueCodec.forType(attribute.getJavaType());
+      if (codec == null) {
+        throw new IllegalArgumentException("attribute " + attribute.getName() + " of "
+            + type.getName() + " has the unsupported type " + attribute.getJavaType().getName());
+      }
+      Field field = field(type, attribute);
+      codecs.add(new AttributeCodec(attribute.getName(), codec, getter(type, field),
+          setter(type, field)));
+    }
+    return new EntityCodec<>(type, constructor(type), codecs);
+  }
+
+  public List<String> getAttributeNames() {
+    List<String> names = new ArrayList<>(attributes.length);
+    for (AttributeCodec attribute : attributes) {
+      names.add(attribute.name);
+    }
+    return Collections.unmodifiableList(names);
+  }
+
+  @Override
+  public void encode(T value, DataOutput output) throws IOException {
+    for (AttributeCodec attribute : attributes) {
+      attribute.codec.write(output, attribute.getter.apply(value));
+    }
+  }
+
+  @Override
+  public T decode(DataInput input) throws IOException {
+    T value = constructor.get();
+    for (AttributeCodec attribute : attributes) {
+      Object attributeValue = attribute.codec.read(input);
+      // primitive attributes keep their default, setters may not accept null
+      if (attributeValue != null) {
+        attribute.setter.accept(value, attributeValue);
+      }
+    }
+    return value;
+  }
+
+  private static Field field(Class<?> type, Attribute<?, ?> attribute) {
+    Member member = attribute.getJavaMember();
+    if (member instanceof Field) {
+      return (Field) member;
+    }
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      try {
+        return current.getDeclaredField(attribute.getName());
+      } catch (NoSuchFieldException e) {
+        // declared by a super class
+      }
+    }
+    throw new IllegalArgumentException("no field for the attribute " + attribute.getName()
+        + " of " + type.getName());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> getter(Class<?> type, Field field) {
+    String suffix = capitalize(field.getName());
+    Method method = publicMethod(type, "get" + suffix);
+    if (method == null && field.getType() == boolean.class) {
+      method = publicMethod(type, "is" + suffix);
+    }
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      if (method != null && method.getReturnType() == field.getType() && isLinkable(type)) {
+        MethodHandle handle = lookup.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+            MethodType.methodType(Function.class),
+            MethodType.methodType(Object.class, Object.class), handle,
+            MethodType.methodType(wrap(field.getType()), type));
+        return (Function<Object, Object>) site.getTarget().invoke();
+      }
+      field.setAccessible(true);
+      MethodHandle handle = lookup.unreflectGetter(field)
+          .asType(MethodType.methodType(Object.class, Object.class));
+      return value -> {
+        try {
+          return handle.invokeExact(value);
+        } catch (Throwable e) {
+          throw new IllegalStateException("cannot read " + field, e);
+        }
+      };
+    } catch (Throwable e) {
+      throw new IllegalArgumentException("cannot access " + field, e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Object, Object> setter(Class<?> type, Field field) {
+    Method method = publicMethod(type, "set" + capitalize(field.getName()), field.getType());
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      if (method != null && isLinkable(type)) {
+        MethodHandle handle = lookup.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+            MethodType.methodType(BiConsumer.class),
+            MethodType.methodType(void.class, Object.class, Object.class), handle,
+            MethodType.methodType(void.class, type, wrap(field.getType())));
+        return (BiConsumer<Object, Object>) site.getTarget().invoke();
+      }
+      field.setAccessible(true);
+      MethodHandle handle = lookup.unreflectSetter(field)
+          .asType(MethodType.methodType(void.class, Object.class, Object.class));
+      return (target, value) -> {
+        try {
+          handle.invokeExact(target, value);
+        } catch (Throwable e) {
+          throw new IllegalStateException("cannot write " + field, e);
+        }
+      };
+    } catch (Throwable e) {
+      throw new IllegalArgumentException("cannot access " + field, e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Supplier<T> constructor(Class<T> type) {
+    try {
+      Constructor<T> constructor = type.getDeclaredConstructor();
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      if (Modifier.isPublic(constructor.getModifiers()) && isLinkable(type)) {
+        MethodHandle handle = lookup.unreflectConstructor(constructor);
+        CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+            MethodType.methodType(Supplier.class), MethodType.methodType(Object.class), handle,
+            MethodType.methodType(type));
+        return (Supplier<T>) site.getTarget().invoke();
+      }
+      // JPA allows protected constructors
+      constructor.setAccessible(true);
+      MethodHandle handle = lookup.unreflectConstructor(constructor)
+          .asType(MethodType.methodType(Object.class));
+      return () -> {
+        try {
+          return (T) handle.invokeExact();
+        } catch (Throwable e) {
+          throw new IllegalStateException("cannot create " + type.getName(), e);
+        }
+      };
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException(type.getName() + " has no constructor without arguments",
+          e);
+    } catch (Throwable e) {
+      throw new IllegalArgumentException("cannot access the constructor of " + type.getName(),
+          e);
+    }
+  }
+
+  // generated classes are defined next to this one, they must resolve the entity class by name
+  private static boolean isLinkable(Class<?> type) {
+    if (!Modifier.isPublic(type.getModifiers())) {
+      return false;
+    }
+    try {
+      return Class.forName(type.getName(), false, EntityCodec.class.getClassLoader()) == type;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static Method publicMethod(Class<?> type, String name, Class<?>... parameters) {
+    try {
+      return type.getMethod(name, parameters);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static String capitalize(String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  private static Class<?> wrap(Class<?> type) {
+    return MethodType.methodType(type).wrap().returnType();
+  }
+
+  private static class AttributeCodec {
+
+    private final String name;
+    private final ValueCodec codec;
+    private final Function<Object, Object> getter;
+    private final BiConsumer<Object, Object> setter;
+
+    AttributeCodec(String name, ValueCodec codec, Function<Object, Object> getter,
+        BiConsumer<Object, Object> setter) {
+      this.name = name;
+      this.codec = codec;
+      this.getter = getter;
+      this.setter = setter;
+    }
+  }
+}
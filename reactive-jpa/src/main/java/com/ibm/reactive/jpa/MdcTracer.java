@@ -0,0 +1,47 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import java.util.Map;
+import org.slf4j.MDC;
+import reactor.util.context.Context;
+
+/**
+ * Copies the MDC of the subscribing thread, or the one already put in the {@link Context} under
+ * {@link #MDC_KEY}, to the worker thread running the call.
+ */
+public class MdcTracer implements Tracer {
+
+  public static final String MDC_KEY = "reactive-jpa.mdc";
+
+  @Override
+  public Context capture(Context context) {
+    if (context.hasKey(MDC_KEY)) {
+      return context;
+    }
+    Map<String, String> mdc = MDC.getCopyOfContextMap();
+    return mdc == null ? context : context.put(MDC_KEY, mdc);
+  }
+
+  @Override
+  public Scope restore(Context context) {
+    Map<String, String> mdc = context.getOrDefault(MDC_KEY, null);
+    if (mdc == null) {
+      return Scope.NOOP;
+    }
+    Map<String, String> previous = MDC.getCopyOfContextMap();
+    MDC.setContextMap(mdc);
+    return () -> {
+      // workers are pooled, the next call must not see this context
+      if (previous == null) {
+        MDC.clear();
+      } else {
+        MDC.setContextMap(previous);
+      }
+    };
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Bounded cache of the entities recently committed through a {@link Database}, keyed by entity
+ * type and id. Entries are replaced on update, removed on delete and ignored once older than the
+ * staleness window, so writes made outside of this JVM are seen after at most that window.
+ *
+ * <p>The cache keeps the committed state of the entities rather than the written instances, each
+ * {@link #get} returns a new copy, so callers may modify what they write or read. Entities with
+ * associations, collections or a composite identifier are never cached, their state cannot be
+ * copied apart from the session that wrote it.
+ */
+public class NearCache {
+
+  @Getter
+  private final int maxSize;
+  @Getter
+  private final Duration staleness;
+  private final long stalenessNanos;
+  private final Map<EntityKey, Entry> entries;
+
+  public NearCache(int maxSize, @NonNull Duration staleness) {
+    if (maxSize <= 0 || staleness.isNegative()) {
+      throw new IllegalArgumentException("maxSize must be positive and staleness not negative");
+    }
+    this.maxSize = maxSize;
+    this.staleness = staleness;
+    this.stalenessNanos = staleness.toNanos();
+    // access order, the least recently used entry is evicted first
+    this.entries = new LinkedHashMap<EntityKey, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<EntityKey, Entry> eldest) {
+        return size() > NearCache.this.maxSize;
+      }
+    };
+  }
+
+  public <T> T get(@NonNull Class<T> type, @NonNull Object id) {
+    Entry entry = entry(new EntityKey(type, id));
+    // the copy is made out of the lock
+    return entry == null ? null : type.cast(entry.copies.get());
+  }
+
+  /**
+   * Caches the entity, the supplier gives a new copy of its committed state on each call.
+   */
+  public synchronized void put(@NonNull Class<?> type, @NonNull Object id,
+      @NonNull Supplier<?> copies) {
+    entries.put(new EntityKey(type, id), new Entry(copies, System.nanoTime()));
+  }
+
+  public synchronized void invalidate(@NonNull Class<?> type, @NonNull Object id) {
+    entries.remove(new EntityKey(type, id));
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private synchronized Entry entry(EntityKey key) {
+    Entry entry = entries.get(key);
+    if (entry != null && System.nanoTime() - entry.written > stalenessNanos) {
+      entries.remove(key);
+      return null;
+    }
+    return entry;
+  }
+
+  @Value
+  private static class EntityKey {
+
+    private Class<?> type;
+    private Object id;
+  }
+
+  @Value
+  private static class Entry {
+
+    private Supplier<?> copies;
+    private long written;
+  }
+}
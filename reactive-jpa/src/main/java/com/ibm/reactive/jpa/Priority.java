@@ -0,0 +1,43 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum Priority {
+  INTERACTIVE(4),
+  BATCH(2),
+  BACKGROUND(1);
+
+  private static final int RESERVED_RATIO = 4;
+  private static final int BACKGROUND_RATIO = 3;
+
+  // tasks run in a row when several priorities have queued tasks
+  private int weight;
+
+  /**
+   * Maximum workers, and therefore connections, used at the same time by the priority.
+   *
+   * <p>A quarter of the workers is reserved to interactive calls, batch and background calls
+   * share the rest. A priority can use the idle workers of the others up to its quota.
+   */
+  public int quota(int workers) {
+    int shared = Math.max(1, workers - Math.max(1, workers / RESERVED_RATIO));
+    int background = Math.max(1, shared / BACKGROUND_RATIO);
+    switch (this) {
+      case INTERACTIVE:
+        return workers;
+      case BACKGROUND:
+        return background;
+      default:
+        return Math.max(1, shared - background);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import com.ibm.reactive.jpa.implementation.DefaultExecution;
+import com.ibm.reactive.jpa.implementation.DefaultExecution.DefaultTransactionData;
+import com.ibm.reactive.jpa.util.ReactiveUtils;
+import com.ibm.reactive.jpa.util.SerialExecutor;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.persistence.EntityManager;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.hibernate.Session;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Transaction shared by every {@code execute} and {@code stream} subscribed inside
+ * {@link Database#inTransaction}, it is carried in the subscriber {@link Context}.
+ */
+public class ReactiveTransaction {
+
+  private final Database database;
+  private final DefaultExecution<?> execution;
+  private final AtomicBoolean completed = new AtomicBoolean();
+  @Getter(AccessLevel.PACKAGE)
+  private final Executor executor;
+  @Getter(AccessLevel.PACKAGE)
+  private EntityManager entityManager;
+  private DefaultTransactionData data;
+  @Getter
+  private volatile boolean rollbackOnly;
+
+  private ReactiveTransaction(Database database, TransactionDefinition definition) {
+    this.database = database;
+    this.execution = new DefaultExecution<>(definition, database.getSessionFactory());
+    // steps of the transaction share the entity manager, they must never run concurrently
+    this.executor = new SerialExecutor(database.getPriorityLane(Priority.INTERACTIVE));
+  }
+
+  static Mono<ReactiveTransaction> begin(Database database, TransactionDefinition definition) {
+    ReactiveTransaction transaction = new ReactiveTransaction(database, definition);
+    return ReactiveUtils.call(transaction.executor, transaction::start);
+  }
+
+  static ReactiveTransaction current(Context context, Database database) {
+    ReactiveTransaction transaction = context.getOrDefault(ReactiveTransaction.class, null);
+    return transaction != null && transaction.database == database ? transaction : null;
+  }
+
+  public void setRollbackOnly() {
+    rollbackOnly = true;
+  }
+
+  Session getSession() {
+    return entityManager.unwrap(Session.class);
+  }
+
+  Mono<Void> commit() {
+    return complete(false);
+  }
+
+  Mono<Void> rollback() {
+    return complete(true);
+  }
+
+  private ReactiveTransaction start() throws Exception {
+    entityManager = database.getSessionFactory().createEntityManager();
+    try {
+      data = execution.begin(entityManager);
+    } catch (Exception e) {
+      execution.rollback(entityManager, null);
+      if (entityManager.isOpen()) {
+        entityManager.close();
+      }
+      throw e;
+    }
+    return this;
+  }
+
+  private Mono<Void> complete(boolean rollback) {
+    return Mono.defer(() -> {
+      if (!completed.compareAndSet(false, true)) {
+        return Mono.empty();
+      }
+      return ReactiveUtils.call(executor, () -> {
+        if (rollback || rollbackOnly) {
+          execution.rollback(entityManager, data);
+        } else {
+          commitOrRollback();
+        }
+        return null;
+      });
+    });
+  }
+
+  private void commitOrRollback() throws Exception {
+    try {
+      execution.commit(entityManager, data);
+    } catch (Exception e) {
+      execution.rollback(entityManager, data);
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary form of a streamed row, used to spill rows out of the heap and to emit encoded rows,
+ * see {@link EntityCodec} for a codec generated from the entity mapping.
+ */
+public interface RowCodec<T> {
+
+  void encode(T value, DataOutput output) throws IOException;
+
+  T decode(DataInput input) throws IOException;
+
+  default ByteBuffer toByteBuffer(T value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    encode(value, new DataOutputStream(bytes));
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
+
+  /**
+   * Decodes the remaining bytes of the buffer, its position is left unchanged.
+   */
+  default T fromByteBuffer(ByteBuffer buffer) throws IOException {
+    if (buffer.hasArray()) {
+      return decode(new DataInputStream(new ByteArrayInputStream(buffer.array(),
+          buffer.arrayOffset() + buffer.position(), buffer.remaining())));
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+}
@@ -0,0 +1,21 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface RowMapper<T> {
+
+  /**
+   * Maps the current row of the result set, it must not move the cursor.
+   *
+   * @param rowNumber number of the row, starting at 1
+   */
+  T map(ResultSet resultSet, long rowNumber) throws SQLException;
+}
@@ -0,0 +1,23 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+/**
+ * Index of the shard holding a key, between {@code 0} and {@code shards - 1}.
+ */
+@FunctionalInterface
+public interface ShardFunction {
+
+  ShardFunction HASH = (key, shards) -> {
+    int hash = key.hashCode();
+    // spreads the high bits so keys with close hash codes still use every shard
+    hash ^= hash >>> 16;
+    return (hash & Integer.MAX_VALUE) % shards;
+  };
+
+  int shard(Object key, int shards);
+}
@@ -0,0 +1,327 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import com.ibm.reactive.jpa.implementation.SortedMerge;
+import com.ibm.reactive.jpa.util.ConcurrencyLimiter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import lombok.Getter;
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Spreads the data over several {@link Database} instances. Calls for a key are routed to the
+ * shard of the {@link ShardFunction}, scatter calls run on every shard in parallel and merge the
+ * results. Each shard runs at most {@code maxConcurrencyPerShard} routed calls at the same time,
+ * the others wait without holding a thread.
+ */
+public class ShardedDatabase {
+
+  public static final int DEFAULT_PREFETCH = 32;
+
+  @Getter
+  private final List<Database> shards;
+  private final ShardFunction shardFunction;
+  private final List<ConcurrencyLimiter> limiters;
+
+  public ShardedDatabase(@NonNull List<Database> shards) {
+    this(shards, ShardFunction.HASH, Integer.MAX_VALUE);
+  }
+
+  public ShardedDatabase(@NonNull List<Database> shards, @NonNull ShardFunction shardFunction,
+      int maxConcurrencyPerShard) {
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("at least one shard is needed");
+    }
+    this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+    this.shardFunction = shardFunction;
+    List<ConcurrencyLimiter> shardLimiters = new ArrayList<>(shards.size());
+    for (int index = 0; index < shards.size(); index++) {
+      shardLimiters.add(new ConcurrencyLimiter(maxConcurrencyPerShard));
+    }
+    this.limiters = Collections.unmodifiableList(shardLimiters);
+  }
+
+  public int shardIndex(@NonNull Object key) {
+    int index = shardFunction.shard(key, shards.size());
+    if (index < 0 || index >= shards.size()) {
+      throw new IllegalStateException("shard " + index + " of the key " + key
+          + " is not between 0 and " + (shards.size() - 1));
+    }
+    return index;
+  }
+
+  public Database shard(@NonNull Object key) {
+    return shards.get(shardIndex(key));
+  }
+
+  /**
+   * Call on the shard of the key, configured like {@link Database#execute(Function)}: it runs in
+   * a transaction only when one is given.
+   */
+  public <T> ShardedExecutionBuilder<T> execute(@NonNull Object key,
+      @NonNull Function<EntityManager, T> function) {
+    return new ShardedExecutionBuilder<>(this, key, function);
+  }
+
+  /**
+   * Stream of the query on every shard, configured like {@link Database#stream(String, Class)}.
+   */
+  public <T> ShardedStreamerBuilder<T> stream(@NonNull String query, @NonNull Class<T> type) {
+    return new ShardedStreamerBuilder<>(this, shard -> shard.stream(query, type));
+  }
+
+  /**
+   * Stream of the criteria query on every shard, the query is built by each shard.
+   */
+  public <T> ShardedStreamerBuilder<T> stream(
+      @NonNull Function<CriteriaBuilder, CriteriaQuery<T>> criteria) {
+    return new ShardedStreamerBuilder<>(this, shard -> shard.stream(criteria));
+  }
+
+  /**
+   * Runs the call on the shard of the key, the call may use any builder of the database.
+   */
+  public <T> Flux<T> route(@NonNull Object key,
+      @NonNull Function<Database, ? extends Publisher<T>> call) {
+    return limited(shardIndex(key), call);
+  }
+
+  /**
+   * Runs the call on every shard in parallel, the results are emitted as they come.
+   */
+  public <T> Flux<T> scatter(@NonNull Function<Database, ? extends Publisher<T>> call) {
+    return Flux.merge(limitedOnEveryShard(call));
+  }
+
+  /**
+   * Runs the call on every shard in parallel, the results of every shard must be sorted by the
+   * comparator and are merged in its order.
+   */
+  public <T> Flux<T> scatter(@NonNull Function<Database, ? extends Publisher<T>> call,
+      @NonNull Comparator<? super T> comparator) {
+    return scatter(call, comparator, DEFAULT_PREFETCH);
+  }
+
+  public <T> Flux<T> scatter(@NonNull Function<Database, ? extends Publisher<T>> call,
+      @NonNull Comparator<? super T> comparator, int prefetch) {
+    return SortedMerge.merge(limitedOnEveryShard(call), comparator, prefetch);
+  }
+
+  public ConcurrencyLimiter getLimiter(int shard) {
+    return limiters.get(shard);
+  }
+
+  private <T> List<Flux<T>> limitedOnEveryShard(
+      Function<Database, ? extends Publisher<T>> call) {
+    List<Flux<T>> results = new ArrayList<>(shards.size());
+    for (int index = 0; index < shards.size(); index++) {
+      results.add(limited(index, call));
+    }
+    return results;
+  }
+
+  private <T> Flux<T> limited(int index, Function<Database, ? extends Publisher<T>> call) {
+    return limiters.get(index).limit(Flux.defer(() -> call.apply(shards.get(index))));
+  }
+
+  /**
+   * Options of {@link Database.ReactiveExecutionBuilder}, applied to the execution on the shard
+   * of the key.
+   */
+  public static class ShardedExecutionBuilder<T> {
+
+    private final ShardedDatabase database;
+    private final Object key;
+    private final Function<EntityManager, T> function;
+    private final List<Consumer<Database.ReactiveExecutionBuilder<T>>> options =
+        new ArrayList<>();
+
+    private ShardedExecutionBuilder(ShardedDatabase database, Object key,
+        Function<EntityManager, T> function) {
+      this.database = database;
+      this.key = key;
+      this.function = function;
+    }
+
+    public ShardedExecutionBuilder<T> transaction(TransactionDefinition transaction) {
+      options.add(execution -> execution.transaction(transaction));
+      return this;
+    }
+
+    public ShardedExecutionBuilder<T> affinity(@NonNull Object affinityKey) {
+      options.add(execution -> execution.affinity(affinityKey));
+      return this;
+    }
+
+    public ShardedExecutionBuilder<T> priority(@NonNull Priority priority) {
+      options.add(execution -> execution.priority(priority));
+      return this;
+    }
+
+    public ShardedExecutionBuilder<T> retryOnConflict(int retries, @NonNull Duration backoff) {
+      if (retries < 0) {
+        throw new IllegalArgumentException("retries must not be negative");
+      }
+      options.add(execution -> execution.retryOnConflict(retries, backoff));
+      return this;
+    }
+
+    public Mono<T> mono() {
+      return database.route(key, shard -> execution(shard).mono()).next();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Flux flux() {
+      return database.<Object>route(key, shard -> execution(shard).flux());
+    }
+
+    private Database.ReactiveExecutionBuilder<T> execution(Database shard) {
+      Database.ReactiveExecutionBuilder<T> execution = shard.execute(function);
+      options.forEach(option -> option.accept(execution));
+      return execution;
+    }
+  }
+
+  /**
+   * Options of {@link Database.StreamerBuilder}, applied to the stream of every shard. The
+   * maximum number of results bounds the merged stream too; a first result and the aggregates
+   * have no meaning over merged shards and are not offered.
+   */
+  public static class ShardedStreamerBuilder<T> {
+
+    private final ShardedDatabase database;
+    private final Function<Database, Database.StreamerBuilder<T>> stream;
+    private final List<Consumer<Database.StreamerBuilder<T>>> options = new ArrayList<>();
+    private int maxResults = -1;
+
+    private ShardedStreamerBuilder(ShardedDatabase database,
+        Function<Database, Database.StreamerBuilder<T>> stream) {
+      this.database = database;
+      this.stream = stream;
+    }
+
+    /**
+     * Rows of every shard, emitted as they come.
+     */
+    public Flux<T> flux() {
+      return limit(database.scatter(shard -> streamer(shard).flux()));
+    }
+
+    /**
+     * Rows of every shard merged in the order of the comparator, the query must sort the rows of
+     * each shard in that order.
+     */
+    public Flux<T> flux(@NonNull Comparator<? super T> comparator) {
+      return limit(database.scatter(shard -> streamer(shard).flux(), comparator));
+    }
+
+    public ShardedStreamerBuilder<T> spill() {
+      options.add(Database.StreamerBuilder::spill);
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> spill(@NonNull RowCodec<T> codec) {
+      options.add(streamer -> streamer.spill(codec));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> spill(@NonNull RowCodec<T> codec,
+        @NonNull SpillOptions spillOptions) {
+      options.add(streamer -> streamer.spill(codec, spillOptions));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> bindLiterals(boolean bindLiterals) {
+      options.add(streamer -> streamer.bindLiterals(bindLiterals));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> fetchGraph(@NonNull String graphName) {
+      options.add(streamer -> streamer.fetchGraph(graphName));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> fetchJoin(@NonNull String... attributes) {
+      options.add(streamer -> streamer.fetchJoin(attributes));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> fetchBatchSize(int fetchBatchSize) {
+      options.add(streamer -> streamer.fetchBatchSize(fetchBatchSize));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> priority(@NonNull Priority priority) {
+      options.add(streamer -> streamer.priority(priority));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> isolationLevel(IsolationLevel level) {
+      options.add(streamer -> streamer.isolationLevel(level));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> addParameter(@NonNull String name, Object value) {
+      options.add(streamer -> streamer.addParameter(name, value));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> addParameters(@NonNull Map<String, Object> parameters) {
+      options.add(streamer -> streamer.addParameters(parameters));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> parameterList(@NonNull List<Object> parameterList) {
+      options.add(streamer -> streamer.parameterList(parameterList));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> maxResults(int maxResults) {
+      this.maxResults = maxResults;
+      options.add(streamer -> streamer.maxResults(maxResults));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> fetchSize(int fetchSize) {
+      options.add(streamer -> streamer.fetchSize(fetchSize));
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> adaptiveFetchSize() {
+      options.add(Database.StreamerBuilder::adaptiveFetchSize);
+      return this;
+    }
+
+    public ShardedStreamerBuilder<T> adaptiveFetchSize(long memoryBudget) {
+      options.add(streamer -> streamer.adaptiveFetchSize(memoryBudget));
+      return this;
+    }
+
+    private Database.StreamerBuilder<T> streamer(Database shard) {
+      Database.StreamerBuilder<T> streamer = stream.apply(shard);
+      options.forEach(option -> option.accept(streamer));
+      return streamer;
+    }
+
+    private Flux<T> limit(Flux<T> rows) {
+      return maxResults < 0 ? rows : rows.take(maxResults);
+    }
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import java.time.Instant;
+import lombok.Value;
+
+/**
+ * Diagnostics of a call or a stream reported by the {@link SlowQueryDetector}, timings are in
+ * nanoseconds from the start of the call, -1 when the phase was not reached.
+ */
+@Value
+public class SlowQuery {
+
+  public enum Kind {
+    EXECUTION,
+    STREAM
+  }
+
+  private Kind kind;
+  private String query;
+  private String parameters;
+  private IsolationLevel isolationLevel;
+  private int fetchSize;
+  private Instant startedAt;
+  private long acquireNanos;
+  private long executeNanos;
+  private long firstRowNanos;
+  private long totalNanos;
+  private long rows;
+}
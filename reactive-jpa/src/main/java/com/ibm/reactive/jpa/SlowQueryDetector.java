@@ -0,0 +1,198 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import com.ibm.reactive.jpa.SlowQuery.Kind;
+import com.ibm.reactive.jpa.util.CapacityMonitor;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports the calls slower than the execution threshold, and the streams open longer than the
+ * stream threshold or emitting less rows per second than the minimum rate. One offender out of
+ * sampleRate is logged and kept in a ring buffer of the most recent ones. Open streams are checked
+ * every check interval, a stream is reported once, as soon as it turns slow.
+ */
+@Getter
+public class SlowQueryDetector {
+
+  public static final int DEFAULT_CAPACITY = 100;
+  public static final Duration DEFAULT_EXECUTION_THRESHOLD = Duration.ofSeconds(1);
+  public static final Duration DEFAULT_STREAM_THRESHOLD = Duration.ofMinutes(1);
+  public static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(1);
+  // streams shorter than this are too short for a meaningful rate
+  public static final Duration RATE_WINDOW = Duration.ofSeconds(1);
+
+  private static final Logger logger = LoggerFactory.getLogger(SlowQueryDetector.class);
+  private static final String REDACTED = "?";
+
+  private final long executionThresholdNanos;
+  private final long streamThresholdNanos;
+  private final double minRowsPerSecond;
+  private final boolean redactParameters;
+  private final int sampleRate;
+  private final long checkIntervalMillis;
+  @Getter(AccessLevel.NONE)
+  private final AtomicReferenceArray<SlowQuery> recent;
+  @Getter(AccessLevel.NONE)
+  private final AtomicLong offenders = new AtomicLong();
+  @Getter(AccessLevel.NONE)
+  private final AtomicLong recorded = new AtomicLong();
+  // progress of the streams still open, removed when they close or once reported
+  @Getter(AccessLevel.NONE)
+  private final Map<Object, Supplier<SlowQuery>> open = new ConcurrentHashMap<>();
+  @Getter(AccessLevel.NONE)
+  private final AtomicBoolean watched = new AtomicBoolean();
+
+  @Builder
+  private SlowQueryDetector(Duration executionThreshold, Duration streamThreshold,
+      double minRowsPerSecond, Boolean redactParameters, Integer sampleRate, Integer capacity,
+      Duration checkInterval) {
+    this.executionThresholdNanos = (executionThreshold == null
+        ? DEFAULT_EXECUTION_THRESHOLD : executionThreshold).toNanos();
+    this.streamThresholdNanos = (streamThreshold == null
+        ? DEFAULT_STREAM_THRESHOLD : streamThreshold).toNanos();
+    this.minRowsPerSecond = minRowsPerSecond;
+    // bound values may hold personal data, they are only logged when asked for
+    this.redactParameters = redactParameters == null || redactParameters;
+    this.sampleRate = sampleRate == null ? 1 : sampleRate;
+    int size = capacity == null ? DEFAULT_CAPACITY : capacity;
+    this.checkIntervalMillis = (checkInterval == null
+        ? DEFAULT_CHECK_INTERVAL : checkInterval).toMillis();
+    if (this.sampleRate <= 0 || size <= 0 || checkIntervalMillis <= 0) {
+      throw new IllegalArgumentException("sampleRate, capacity and checkInterval must be positive");
+    }
+    this.recent = new AtomicReferenceArray<>(size);
+  }
+
+  public static SlowQueryDetector defaultDetector() {
+    return builder().build();
+  }
+
+  public boolean isSlow(@NonNull Kind kind, long totalNanos, long rows) {
+    if (kind == Kind.EXECUTION) {
+      return totalNanos >= executionThresholdNanos;
+    }
+    if (totalNanos >= streamThresholdNanos) {
+      return true;
+    }
+    return minRowsPerSecond > 0 && totalNanos >= RATE_WINDOW.toNanos()
+        && rows * (double) TimeUnit.SECONDS.toNanos(1) / totalNanos < minRowsPerSecond;
+  }
+
+  public void report(@NonNull SlowQuery query) {
+    long offender = offenders.getAndIncrement();
+    if (offender % sampleRate != 0) {
+      return;
+    }
+    long slot = recorded.getAndIncrement();
+    recent.set((int) (slot % recent.length()), query);
+    logger.warn("Slow {} ({} ms, acquire {} ms, execute {} ms, first row {} ms, {} rows, "
+            + "isolation {}, fetch size {}): {} parameters {}",
+        query.getKind(), millis(query.getTotalNanos()), millis(query.getAcquireNanos()),
+        millis(query.getExecuteNanos()), millis(query.getFirstRowNanos()), query.getRows(),
+        query.getIsolationLevel(), query.getFetchSize(), query.getQuery(),
+        query.getParameters());
+  }
+
+  /**
+   * Registers a stream still open, the progress gives its diagnostics so far. The open streams are
+   * checked periodically from the first registration on.
+   */
+  public void opened(@NonNull Object stream, @NonNull Supplier<SlowQuery> progress) {
+    open.put(stream, progress);
+    if (!watched.get() && watched.compareAndSet(false, true)) {
+      // the monitor only holds the detector weakly, the check stops once it is collected
+      CapacityMonitor.watch(this, SlowQueryDetector::checkOpenStreams, checkIntervalMillis);
+    }
+  }
+
+  /**
+   * Unregisters a stream which closed, false when it was already reported while open.
+   */
+  public boolean closed(@NonNull Object stream) {
+    return open.remove(stream) != null;
+  }
+
+  /**
+   * Reports the open streams which turned slow, each stream is reported at most once.
+   */
+  public void checkOpenStreams() {
+    open.forEach((stream, progress) -> {
+      SlowQuery query = progress.get();
+      if (isSlow(query.getKind(), query.getTotalNanos(), query.getRows())
+          && open.remove(stream, progress)) {
+        report(query);
+      }
+    });
+  }
+
+  public int getOpenStreams() {
+    return open.size();
+  }
+
+  public String describe(Object parameters) {
+    if (parameters == null) {
+      return null;
+    }
+    if (parameters instanceof Map) {
+      return ((Map<?, ?>) parameters).entrySet().stream()
+          .map(entry -> entry.getKey() + "=" + value(entry.getValue()))
+          .collect(Collectors.joining(", ", "{", "}"));
+    }
+    if (parameters instanceof Collection) {
+      return ((Collection<?>) parameters).stream()
+          .map(this::value)
+          .collect(Collectors.joining(", ", "[", "]"));
+    }
+    return value(parameters);
+  }
+
+  /**
+   * Sampled offenders, the most recent first.
+   */
+  public List<SlowQuery> recent() {
+    long last = recorded.get();
+    int size = (int) Math.min(last, recent.length());
+    List<SlowQuery> queries = new ArrayList<>(size);
+    for (long slot = last - 1; slot >= last - size; slot--) {
+      SlowQuery query = recent.get((int) (slot % recent.length()));
+      if (query != null) {
+        queries.add(query);
+      }
+    }
+    return queries;
+  }
+
+  public long getOffenders() {
+    return offenders.get();
+  }
+
+  private String value(Object value) {
+    return redactParameters ? REDACTED : String.valueOf(value);
+  }
+
+  private static long millis(long nanos) {
+    return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import java.nio.file.Path;
+import lombok.Builder;
+import lombok.Value;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Value
+@Builder
+public class SpillOptions {
+
+  public static final long DEFAULT_LIMIT = 1L << 30;
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private static final SpillOptions DEFAULT_OPTIONS = SpillOptions.builder().build();
+
+  // directory of the spill files, the default temporary directory when null
+  private Path directory;
+  // maximum size of a spill file, the stream fails when it is reached
+  @Builder.Default
+  private long limit = DEFAULT_LIMIT;
+  @Builder.Default
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
+  // replays the rows from the file, off the thread of the source which may hold a connection
+  @Builder.Default
+  private Scheduler scheduler = Schedulers.elastic();
+
+  public static SpillOptions defaultOptions() {
+    return DEFAULT_OPTIONS;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import lombok.NonNull;
+import lombok.Value;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Copy of the Hibernate {@link Statistics} of a database, per query string, entity and
+ * collection role. Entities or collections fetched far more often than they are loaded by
+ * queries usually come from an N+1 pattern.
+ */
+@Value
+public class StatsSnapshot {
+
+  private Instant timestamp;
+  private boolean enabled;
+  private long queryExecutions;
+  private long preparedStatements;
+  private long entityLoads;
+  private long entityFetches;
+  private long collectionLoads;
+  private long collectionFetches;
+  private long secondLevelCacheHits;
+  private long secondLevelCacheMisses;
+  // slowest queries first
+  private List<QueryStats> queries;
+  // most fetched entities first
+  private List<FetchStats> entities;
+  // most fetched collections first
+  private List<FetchStats> collections;
+
+  public static StatsSnapshot of(@NonNull Statistics statistics) {
+    List<QueryStats> queries = new ArrayList<>();
+    for (String query : statistics.getQueries()) {
+      QueryStatistics stats = statistics.getQueryStatistics(query);
+      queries.add(new QueryStats(query, stats.getExecutionCount(), stats.getExecutionRowCount(),
+          stats.getExecutionMaxTime(), stats.getExecutionAvgTime(), stats.getCacheHitCount(),
+          stats.getCacheMissCount()));
+    }
+    queries.sort(Comparator.comparingLong(QueryStats::getTotalTime).reversed());
+
+    List<FetchStats> entities = new ArrayList<>();
+    for (String name : statistics.getEntityNames()) {
+      EntityStatistics stats = statistics.getEntityStatistics(name);
+      entities.add(new FetchStats(name, stats.getLoadCount(), stats.getFetchCount()));
+    }
+    entities.sort(Comparator.comparingLong(FetchStats::getFetches).reversed());
+
+    List<FetchStats> collections = new ArrayList<>();
+    for (String role : statistics.getCollectionRoleNames()) {
+      CollectionStatistics stats = statistics.getCollectionStatistics(role);
+      collections.add(new FetchStats(role, stats.getLoadCount(), stats.getFetchCount()));
+    }
+    collections.sort(Comparator.comparingLong(FetchStats::getFetches).reversed());
+
+    return new StatsSnapshot(Instant.now(), statistics.isStatisticsEnabled(),
+        statistics.getQueryExecutionCount(), statistics.getPrepareStatementCount(),
+        statistics.getEntityLoadCount(), statistics.getEntityFetchCount(),
+        statistics.getCollectionLoadCount(), statistics.getCollectionFetchCount(),
+        statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+        Collections.unmodifiableList(queries), Collections.unmodifiableList(entities),
+        Collections.unmodifiableList(collections));
+  }
+
+  @Value
+  public static class QueryStats {
+
+    private String query;
+    private long executions;
+    private long rows;
+    private long maxTime;
+    private long averageTime;
+    private long cacheHits;
+    private long cacheMisses;
+
+    public long getTotalTime() {
+      return executions * averageTime;
+    }
+  }
+
+  @Value
+  public static class FetchStats {
+
+    private String name;
+    private long loads;
+    private long fetches;
+  }
+}
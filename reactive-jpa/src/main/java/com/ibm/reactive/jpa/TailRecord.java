@@ -0,0 +1,17 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import lombok.Value;
+
+@Value
+public class TailRecord<T> {
+
+  private T value;
+  // value of the cursor column, pass it to startAfter to resume after this record
+  private Object cursor;
+}
@@ -0,0 +1,40 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import java.util.Map;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+@Value
+@Builder
+public class TenantConfiguration {
+
+  public static final int MAX_POOL_SIZE = 2;
+  public static final int MIN_POOL_SIZE = 0;
+
+  // Hibernate settings of the tenant, e.g. its connection url or hibernate.default_schema
+  @NonNull
+  private Map<String, String> settings;
+  @Builder.Default
+  private PoolConfiguration pool = PoolConfiguration.builder()
+      .connectionTimeout(PoolConfiguration.CONNECTION_TIMEOUT)
+      .idleTimeout(PoolConfiguration.IDLE_TIMEOUT)
+      .maxPoolSize(MAX_POOL_SIZE)
+      .minPoolSize(MIN_POOL_SIZE)
+      .build();
+  // share of the workers compared to the other tenants
+  @Builder.Default
+  private int weight = 1;
+  // maximum calls running at the same time, the pool size when not positive
+  private int quota;
+
+  public int getEffectiveQuota() {
+    return quota > 0 ? quota : pool.getMaxPoolSize();
+  }
+}
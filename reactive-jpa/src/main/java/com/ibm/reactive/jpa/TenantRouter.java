@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import com.ibm.reactive.jpa.util.FairExecutor;
+import com.ibm.reactive.jpa.util.FairExecutor.Lane;
+import com.ibm.reactive.jpa.util.FairExecutor.LaneMetrics;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import javax.persistence.EntityManager;
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+/**
+ * Routes each call to the {@link Database} of the tenant found in the subscriber
+ * {@link Context}. Every tenant has its own small connection pool, all of them share the workers
+ * of one {@link FairExecutor}.
+ */
+public class TenantRouter implements AutoCloseable {
+
+  public static final String TENANT_KEY = TenantRouter.class.getName() + ".tenant";
+
+  private final FairExecutor executor;
+  private final List<String> resourcePackages;
+  private final Function<String, TenantConfiguration> configurations;
+  private final Map<String, Database> databases = new ConcurrentHashMap<>();
+
+  public TenantRouter(int workers, @NonNull List<String> resourcePackages,
+      @NonNull Function<String, TenantConfiguration> configurations) {
+    this.executor = new FairExecutor(workers, "reactive-jpa-tenant");
+    this.resourcePackages = new ArrayList<>(resourcePackages);
+    this.configurations = configurations;
+  }
+
+  public static Function<Context, Context> tenant(@NonNull String tenant) {
+    return context -> context.put(TENANT_KEY, tenant);
+  }
+
+  public <T> Mono<T> execute(@NonNull Function<EntityManager, T> function) {
+    return route(database -> database.execute(function).mono()).next();
+  }
+
+  public <T> Flux<T> route(@NonNull Function<Database, ? extends Publisher<T>> call) {
+    return Mono.subscriberContext()
+        .flatMap(context -> database(context.getOrEmpty(TENANT_KEY)
+            .map(String.class::cast)
+            .orElseThrow(() -> new IllegalStateException("no tenant in the subscriber context"))))
+        .flatMapMany(call);
+  }
+
+  public Map<String, LaneMetrics> metrics() {
+    Map<String, LaneMetrics> metrics = new HashMap<>();
+    executor.metrics().forEach(lane -> metrics.put(lane.getName(), lane));
+    return metrics;
+  }
+
+  @Override
+  public void close() {
+    executor.close();
+    databases.values().forEach(Database::close);
+    databases.clear();
+  }
+
+  private Mono<Database> database(String tenant) {
+    Database database = databases.get(tenant);
+    if (database != null) {
+      return Mono.just(database);
+    }
+    // building the session factory blocks, it must not run on the subscriber thread
+    return Mono.fromCallable(() -> databases.computeIfAbsent(tenant, this::createDatabase))
+        .subscribeOn(Schedulers.elastic());
+  }
+
+  private Database createDatabase(String tenant) {
+    TenantConfiguration configuration = configurations.apply(tenant);
+    if (configuration == null) {
+      throw new IllegalArgumentException("unknown tenant " + tenant);
+    }
+    Lane lane = executor.lane(tenant, configuration.getWeight(),
+        configuration.getEffectiveQuota());
+    try {
+      return new Database(new HashMap<>(configuration.getSettings()), resourcePackages,
+          configuration.getPool(), lane);
+    } catch (RuntimeException e) {
+      lane.shutdown();
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import reactor.util.context.Context;
+
+/**
+ * Carries the caller context to the worker thread of each {@code execute} and {@code stream},
+ * and opens a span around them. {@link #capture} runs on the subscribing thread when the call
+ * is subscribed, {@link #restore} on the worker thread around each task of the call.
+ * {@link #NOOP} neither carries the context nor opens spans.
+ */
+public interface Tracer {
+
+  Tracer NOOP = new Tracer() {
+  };
+
+  default Context capture(Context context) {
+    return context;
+  }
+
+  default Scope restore(Context context) {
+    return Scope.NOOP;
+  }
+
+  default Span start(String operation, String query, Context context) {
+    return Span.NOOP;
+  }
+
+  @FunctionalInterface
+  interface Scope extends AutoCloseable {
+
+    Scope NOOP = () -> {
+    };
+
+    @Override
+    void close();
+  }
+
+  interface Span {
+
+    // operations of the spans, EXECUTE also names the phase running the call
+    String EXECUTE = "execute";
+    String STREAM = "stream";
+
+    // phases
+    String QUEUE = "queue";
+    String FIRST_ROW = "first-row";
+    String TOTAL = "total";
+
+    Span NOOP = new Span() {
+    };
+
+    default void phase(String name, long nanos) {
+    }
+
+    default void rows(long rows) {
+    }
+
+    default void error(Throwable error) {
+    }
+
+    default void finish() {
+    }
+  }
+}
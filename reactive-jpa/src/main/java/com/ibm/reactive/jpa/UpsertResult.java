@@ -0,0 +1,31 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Rows inserted and updated by an upsert, rows are counted as updated when their natural key
+ * was found before they were written.
+ */
+@Value
+public class UpsertResult {
+
+  public static final UpsertResult EMPTY = new UpsertResult(0, 0);
+
+  private long inserted;
+  private long updated;
+
+  public long getTotal() {
+    return inserted + updated;
+  }
+
+  public UpsertResult plus(@NonNull UpsertResult other) {
+    return new UpsertResult(inserted + other.inserted, updated + other.updated);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import lombok.NonNull;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL95Dialect;
+
+/**
+ * Statement used to write the rows of an upsert.
+ */
+public enum UpsertStrategy {
+
+  /**
+   * {@code MERGE INTO ... WHEN MATCHED ... WHEN NOT MATCHED}.
+   */
+  MERGE,
+
+  /**
+   * {@code INSERT ... ON CONFLICT (key) DO UPDATE}, the natural key needs a unique constraint.
+   */
+  ON_CONFLICT,
+
+  /**
+   * {@code INSERT ... ON DUPLICATE KEY UPDATE}, the natural key needs a unique constraint.
+   */
+  ON_DUPLICATE_KEY,
+
+  /**
+   * Batched {@code INSERT} of the new keys and batched {@code UPDATE} of the existing ones.
+   */
+  FALLBACK;
+
+  public static UpsertStrategy of(@NonNull Dialect dialect) {
+    // the MERGE statement is only verified against HSQLDB, SQL Server among others uses the
+    // fallback until its syntax is covered
+    if (dialect instanceof HSQLDialect) {
+      return MERGE;
+    }
+    if (dialect instanceof PostgreSQL95Dialect) {
+      return ON_CONFLICT;
+    }
+    if (dialect instanceof MySQLDialect) {
+      return ON_DUPLICATE_KEY;
+    }
+    return FALLBACK;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.Aggregate;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Aggregates the values of streamed rows with the semantics of the JPQL aggregate: {@code null}
+ * values are ignored and the aggregate of no value is {@code null}, except counts. Running totals
+ * are kept in primitive fields.
+ */
+public abstract class Accumulator {
+
+  public abstract void add(Object value);
+
+  public abstract Number result();
+
+  public static Accumulator of(Aggregate.Function function) {
+    switch (function) {
+      case COUNT:
+        return new Count();
+      case SUM:
+        return new Sum();
+      case AVG:
+        return new Average();
+      case MIN:
+        return new Extremum(-1);
+      default:
+        return new Extremum(1);
+    }
+  }
+
+  public static class Count extends Accumulator {
+
+    private long count;
+
+    @Override
+    public void add(Object value) {
+      if (value != null) {
+        count++;
+      }
+    }
+
+    @Override
+    public Number result() {
+      return count;
+    }
+  }
+
+  public static class Sum extends Accumulator {
+
+    private long longSum;
+    private double doubleSum;
+    private BigDecimal decimalSum;
+    private BigInteger integerSum;
+    private boolean floating;
+    private boolean seen;
+
+    @Override
+    public void add(Object value) {
+      if (value instanceof Double || value instanceof Float) {
+        addDouble(((Number) value).doubleValue());
+      } else if (value instanceof BigDecimal) {
+        seen = true;
+        decimalSum = decimalSum == null ? (BigDecimal) value : decimalSum.add((BigDecimal) value);
+      } else if (value instanceof BigInteger) {
+        seen = true;
+        integerSum = integerSum == null ? (BigInteger) value : integerSum.add((BigInteger) value);
+      } else if (value != null) {
+        addLong(((Number) value).longValue());
+      }
+    }
+
+    public void addLong(long value) {
+      seen = true;
+      longSum += value;
+    }
+
+    public void addDouble(double value) {
+      seen = true;
+      floating = true;
+      doubleSum += value;
+    }
+
+    public long getLongSum() {
+      return longSum;
+    }
+
+    public double getDoubleSum() {
+      return doubleSum;
+    }
+
+    @Override
+    public Number result() {
+      if (!seen) {
+        return null;
+      }
+      if (decimalSum != null) {
+        return decimalSum;
+      }
+      if (integerSum != null) {
+        return integerSum;
+      }
+      return floating ? (Number) doubleSum : (Number) longSum;
+    }
+  }
+
+  public static class Average extends Accumulator {
+
+    private double sum;
+    private long count;
+
+    @Override
+    public void add(Object value) {
+      if (value != null) {
+        sum += ((Number) value).doubleValue();
+        count++;
+      }
+    }
+
+    @Override
+    public Number result() {
+      return count == 0 ? null : sum / count;
+    }
+  }
+
+  public static class Extremum extends Accumulator {
+
+    private final int sign;
+    private Number best;
+
+    Extremum(int sign) {
+      this.sign = sign;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void add(Object value) {
+      if (value != null && (best == null
+          || sign * ((Comparable<Object>) value).compareTo(best) > 0)) {
+        best = (Number) value;
+      }
+    }
+
+    @Override
+    public Number result() {
+      return best;
+    }
+  }
+}
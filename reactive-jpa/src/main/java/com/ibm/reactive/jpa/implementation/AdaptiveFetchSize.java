@@ -0,0 +1,52 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import lombok.Getter;
+
+@Getter
+public class AdaptiveFetchSize {
+
+  public static final long DEFAULT_MEMORY_BUDGET = 4L * 1024 * 1024;
+  public static final int MAX_FETCH_SIZE = 10_000;
+  private static final int GROWTH_FACTOR = 2;
+
+  private final int initialFetchSize;
+  private final long memoryBudget;
+  private int fetchSize;
+
+  public AdaptiveFetchSize(int initialFetchSize, long memoryBudget) {
+    if (initialFetchSize <= 0 || memoryBudget <= 0) {
+      throw new IllegalArgumentException("initialFetchSize and memoryBudget must be positive");
+    }
+    this.initialFetchSize = initialFetchSize;
+    this.memoryBudget = memoryBudget;
+    this.fetchSize = initialFetchSize;
+  }
+
+  /**
+   * Computes the fetch size for the next window of rows.
+   *
+   * <p>The fetch size doubles while the subscriber keeps requesting, never above the pending
+   * demand nor above the rows that fit in the memory budget, and halves back towards the
+   * initial value when the subscriber stops requesting.
+   *
+   * @param rowSize estimated size in bytes of a single row
+   * @param demand rows requested by the subscriber and not delivered yet
+   */
+  public int next(long rowSize, long demand) {
+    if (demand <= 0) {
+      fetchSize = Math.max(initialFetchSize, fetchSize / GROWTH_FACTOR);
+      return fetchSize;
+    }
+    long rowsInBudget = Math.min(MAX_FETCH_SIZE, memoryBudget / Math.max(1, rowSize));
+    long target = Math.min(Math.min((long) fetchSize * GROWTH_FACTOR, demand), rowsInBudget);
+    fetchSize = (int) Math.max(initialFetchSize, target);
+    return fetchSize;
+  }
+
+}
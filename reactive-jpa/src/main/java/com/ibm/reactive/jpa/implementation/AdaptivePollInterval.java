@@ -0,0 +1,53 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import lombok.Getter;
+
+@Getter
+public class AdaptivePollInterval {
+
+  public static final long DEFAULT_MIN_INTERVAL = 100;
+  public static final long DEFAULT_MAX_INTERVAL = 5_000;
+  private static final int BACKOFF_FACTOR = 2;
+
+  private final long minInterval;
+  private final long maxInterval;
+  private long interval;
+
+  public AdaptivePollInterval(long minInterval, long maxInterval) {
+    if (minInterval <= 0 || maxInterval < minInterval) {
+      throw new IllegalArgumentException(
+          "minInterval must be positive and not greater than maxInterval");
+    }
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.interval = minInterval;
+  }
+
+  /**
+   * Computes the milliseconds to wait before the next poll.
+   *
+   * <p>A full batch means more rows are waiting, the next poll is immediate. A partial batch
+   * resets the interval to the minimum and every empty poll doubles it up to the maximum.
+   *
+   * @param rows rows returned by the last poll
+   * @param batchSize maximum rows of a poll
+   */
+  public long next(int rows, int batchSize) {
+    if (rows >= batchSize) {
+      interval = minInterval;
+      return 0;
+    }
+    if (rows > 0) {
+      interval = minInterval;
+    } else {
+      interval = Math.min(maxInterval, interval * BACKOFF_FACTOR);
+    }
+    return interval;
+  }
+}
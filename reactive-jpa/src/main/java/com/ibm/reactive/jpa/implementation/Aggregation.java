@@ -0,0 +1,235 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.Aggregate;
+import com.ibm.reactive.jpa.Aggregate.Function;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.Getter;
+import lombok.NonNull;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+
+/**
+ * Aggregates of the rows of a streamed query, optionally grouped by an attribute path. A query
+ * on one entity, without fetch joins nor grouping, is compiled to a JPQL query computing the
+ * aggregates in the database; other queries are streamed and aggregated by {@link Accumulator}s.
+ */
+public class Aggregation {
+
+  private static final Pattern QUERY = Pattern.compile(
+      "^\\s*(?:select\\s+(\\w+)\\s+)?from\\s+([\\w.]+)\\s+(?:as\\s+)?(\\w+)(.*)$",
+      Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  private static final List<String> KEYWORDS = Arrays.asList("where", "join", "inner", "left",
+      "right", "order", "group");
+
+  @Getter
+  private final List<Aggregate> aggregates;
+  @Getter
+  private final String groupBy;
+
+  public Aggregation(@NonNull List<Aggregate> aggregates, String groupBy) {
+    if (aggregates.isEmpty()) {
+      throw new IllegalArgumentException("at least one aggregate is needed");
+    }
+    this.aggregates = Collections.unmodifiableList(new ArrayList<>(aggregates));
+    this.groupBy = groupBy;
+  }
+
+  /**
+   * JPQL query computing the aggregates of the rows of the query, {@code null} when the query
+   * cannot be rewritten. The group key, when there is one, is the first selected value.
+   */
+  public String compile(String query) {
+    if (query == null) {
+      return null;
+    }
+    Matcher matcher = QUERY.matcher(query);
+    if (!matcher.matches()) {
+      return null;
+    }
+    String alias = matcher.group(3);
+    String rest = matcher.group(4);
+    if (KEYWORDS.contains(alias.toLowerCase())
+        || matcher.group(1) != null && !matcher.group(1).equals(alias)
+        || QueryText.indexOf(rest, 0, "fetch") >= 0
+        || QueryText.indexOf(rest, 0, "group", "by") >= 0) {
+      return null;
+    }
+    int orderBy = QueryText.indexOf(rest, 0, "order", "by");
+    if (orderBy >= 0) {
+      rest = rest.substring(0, orderBy);
+    }
+    StringBuilder compiled = new StringBuilder("select ");
+    if (groupBy != null) {
+      compiled.append(path(alias, groupBy)).append(", ");
+    }
+    for (int index = 0; index < aggregates.size(); index++) {
+      Aggregate aggregate = aggregates.get(index);
+      if (index > 0) {
+        compiled.append(", ");
+      }
+      compiled.append(aggregate.getFunction().name().toLowerCase()).append('(')
+          .append(aggregate.getPath() == null ? alias : path(alias, aggregate.getPath()))
+          .append(')');
+    }
+    compiled.append(" from ").append(matcher.group(2)).append(' ').append(alias)
+        .append(rest.replaceAll("\\s+$", ""));
+    if (groupBy != null) {
+      compiled.append(" group by ").append(path(alias, groupBy))
+          .append(" order by ").append(path(alias, groupBy));
+    }
+    return compiled.toString();
+  }
+
+  /**
+   * Aggregates by group key of the rows of the compiled query.
+   */
+  public Map<Object, List<Number>> fromResults(@NonNull List<?> results) {
+    Map<Object, List<Number>> groups = new LinkedHashMap<>();
+    int offset = groupBy == null ? 0 : 1;
+    for (Object result : results) {
+      Object[] row = result instanceof Object[] ? (Object[]) result : new Object[] {result};
+      List<Number> values = new ArrayList<>(aggregates.size());
+      for (int index = 0; index < aggregates.size(); index++) {
+        values.add((Number) row[offset + index]);
+      }
+      groups.put(offset == 0 ? null : row[0], Collections.unmodifiableList(values));
+    }
+    return groups;
+  }
+
+  public Accumulation accumulation(@NonNull SessionFactory sessionFactory,
+      @NonNull Class<?> type) {
+    return new Accumulation(persister(sessionFactory, type));
+  }
+
+  /**
+   * Checks that the attributes of the aggregates other than counts are numeric attributes of the
+   * entity, their results are numbers.
+   */
+  public void validate(@NonNull SessionFactory sessionFactory, @NonNull Class<?> type) {
+    EntityPersister persister = null;
+    for (Aggregate aggregate : aggregates) {
+      if (aggregate.getFunction() == Function.COUNT) {
+        continue;
+      }
+      if (persister == null) {
+        persister = persister(sessionFactory, type);
+      }
+      Type attributeType;
+      try {
+        attributeType = persister.getPropertyType(property(persister, aggregate.getPath()));
+      } catch (HibernateException e) {
+        throw new IllegalArgumentException("no attribute " + aggregate.getPath() + " in "
+            + type.getName(), e);
+      }
+      if (!Number.class.isAssignableFrom(attributeType.getReturnedClass())) {
+        throw new IllegalArgumentException(aggregate.getFunction().name().toLowerCase()
+            + " of " + aggregate.getPath() + " needs a numeric attribute, not "
+            + attributeType.getReturnedClass().getName());
+      }
+    }
+  }
+
+  private static EntityPersister persister(SessionFactory sessionFactory, Class<?> type) {
+    return sessionFactory.unwrap(SessionFactoryImplementor.class).getMetamodel()
+        .entityPersister(type);
+  }
+
+  // paths are relative to the entity, the alias of the query is optional
+  private static String path(String alias, String path) {
+    return path.startsWith(alias + ".") ? path : alias + "." + path;
+  }
+
+  // the path without the alias of the query it may start with
+  private static String property(EntityPersister persister, String path) {
+    int dot = path.indexOf('.');
+    return dot > 0 && !isAttribute(persister, path.substring(0, dot))
+        ? path.substring(dot + 1)
+        : path;
+  }
+
+  private static boolean isAttribute(EntityPersister persister, String name) {
+    return name.equals(persister.getIdentifierPropertyName())
+        || persister.getEntityMetamodel().getPropertyIndexOrNull(name) != null;
+  }
+
+  /**
+   * Accumulators of the streamed rows by group key, rows must be used by one thread at a time.
+   */
+  public class Accumulation {
+
+    private final EntityPersister persister;
+    private final Map<Object, Accumulator[]> groups = new LinkedHashMap<>();
+
+    Accumulation(EntityPersister persister) {
+      this.persister = persister;
+    }
+
+    public void add(Object row) {
+      Object key = groupBy == null ? null : value(row, groupBy);
+      Accumulator[] accumulators = groups.get(key);
+      if (accumulators == null) {
+        accumulators = new Accumulator[aggregates.size()];
+        for (int index = 0; index < accumulators.length; index++) {
+          accumulators[index] = Accumulator.of(aggregates.get(index).getFunction());
+        }
+        groups.put(key, accumulators);
+      }
+      for (int index = 0; index < accumulators.length; index++) {
+        Aggregate aggregate = aggregates.get(index);
+        accumulators[index].add(aggregate.getFunction() == Function.COUNT
+            ? row
+            : value(row, aggregate.getPath()));
+      }
+    }
+
+    /**
+     * Aggregates by group key, the aggregates of no row when there is no group key.
+     */
+    public Map<Object, List<Number>> results() {
+      if (groupBy == null && groups.isEmpty()) {
+        // accumulators of no row: zero counts and null aggregates
+        add(null);
+      }
+      Map<Object, List<Number>> results = new LinkedHashMap<>();
+      groups.forEach((key, accumulators) -> {
+        List<Number> values = new ArrayList<>(accumulators.length);
+        for (Accumulator accumulator : accumulators) {
+          values.add(accumulator.result());
+        }
+        results.put(key, Collections.unmodifiableList(values));
+      });
+      return results;
+    }
+
+    private Object value(Object row, String path) {
+      if (row == null) {
+        return null;
+      }
+      String property = property(persister, path);
+      Object entity = Hibernate.unproxy(row);
+      if (property.equals(persister.getIdentifierPropertyName())) {
+        return persister.getIdentifier(entity, (SharedSessionContractImplementor) null);
+      }
+      return persister.getPropertyValue(entity, property);
+    }
+  }
+}
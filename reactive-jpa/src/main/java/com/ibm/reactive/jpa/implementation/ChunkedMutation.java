@@ -0,0 +1,115 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.ChunkProgress;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.persistence.EntityManager;
+import javax.persistence.Parameter;
+import javax.persistence.Query;
+import javax.persistence.metamodel.EntityType;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Value;
+import org.hibernate.SessionFactory;
+
+/**
+ * Splits a JPQL {@code DELETE} or {@code UPDATE} into chunks of rows ordered by identifier. A
+ * chunk selects the next identifiers matching the statement condition, then runs the statement
+ * restricted to them, so the caller can commit each chunk on its own.
+ */
+public class ChunkedMutation {
+
+  public static final String CHUNK_PARAMETER = "chunkKeys";
+  public static final String AFTER_PARAMETER = "chunkAfter";
+
+  private static final Pattern STATEMENT = Pattern.compile(
+      "^\\s*(?:delete\\s+from|delete|update)\\s+([\\w.]+)\\s+(?:as\\s+)?(\\w+)",
+      Pattern.CASE_INSENSITIVE);
+
+  @Getter
+  private final String mutation;
+  private final String firstSelect;
+  private final String nextSelect;
+  private final int chunkSize;
+
+  public ChunkedMutation(@NonNull SessionFactory sessionFactory, @NonNull Class<?> type,
+      @NonNull String statement, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    Matcher matcher = STATEMENT.matcher(statement);
+    if (!matcher.find() || matcher.group(2).equalsIgnoreCase("set")
+        || matcher.group(2).equalsIgnoreCase("where")) {
+      throw new IllegalArgumentException("expected a delete or update statement with an alias: "
+          + statement);
+    }
+    EntityType<?> entity = sessionFactory.getMetamodel().entity(type);
+    if (!entity.hasSingleIdAttribute()) {
+      throw new IllegalArgumentException(type.getName() + " does not have a single identifier");
+    }
+    String key = matcher.group(2) + "."
+        + entity.getId(entity.getIdType().getJavaType()).getName();
+    int where = QueryText.indexOf(statement, matcher.end(), "where");
+    String condition = where < 0 ? null : statement.substring(where + 5).trim();
+    String restriction = condition == null ? "" : "(" + condition + ") and ";
+    String head = where < 0 ? statement.trim() : statement.substring(0, where).trim();
+    String select = "select " + key + " from " + matcher.group(1) + " " + matcher.group(2);
+    this.mutation = head + " where " + restriction + key + " in (:" + CHUNK_PARAMETER + ")";
+    this.firstSelect = select + (condition == null ? "" : " where " + condition) + " order by "
+        + key;
+    this.nextSelect = select + " where " + restriction + key + " > :" + AFTER_PARAMETER
+        + " order by " + key;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Runs the chunk following the previous one, its last key may be {@code null} to start from
+   * the first row. The keys of the chunk are returned with the progress, the statement bypasses
+   * the persistence context and its listeners.
+   */
+  public Chunk apply(@NonNull EntityManager entityManager,
+      @NonNull ChunkProgress previous, @NonNull Map<String, Object> parameters) {
+    Object after = previous.getLastKey();
+    Query select = entityManager.createQuery(after == null ? firstSelect : nextSelect);
+    bind(select, parameters);
+    if (after != null) {
+      select.setParameter(AFTER_PARAMETER, after);
+    }
+    List<?> keys = select.setMaxResults(chunkSize).getResultList();
+    int rows = 0;
+    if (!keys.isEmpty()) {
+      Query update = entityManager.createQuery(mutation);
+      bind(update, parameters);
+      rows = update.setParameter(CHUNK_PARAMETER, keys).executeUpdate();
+    }
+    return new Chunk(new ChunkProgress(previous.getChunk() + 1, rows,
+        previous.getTotalRows() + rows, keys.isEmpty() ? after : keys.get(keys.size() - 1),
+        keys.size() < chunkSize), keys);
+  }
+
+  // the select does not have the parameters of the set clause
+  private static void bind(Query query, Map<String, Object> parameters) {
+    for (Parameter<?> parameter : query.getParameters()) {
+      String name = parameter.getName();
+      if (name != null && parameters.containsKey(name)) {
+        query.setParameter(name, parameters.get(name));
+      }
+    }
+  }
+
+  @Value
+  public static class Chunk {
+
+    private ChunkProgress progress;
+    // identifiers of the rows selected for the chunk
+    private List<?> keys;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.ConflictMetrics;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.persistence.OptimisticLockException;
+import lombok.NonNull;
+import org.hibernate.StaleStateException;
+import org.hibernate.dialect.lock.OptimisticEntityLockException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Resubscribes to an execution failed on a version conflict, after an exponential backoff with
+ * jitter so the competing executions do not meet again. The delay runs on a timer, no worker
+ * waits for it.
+ */
+public class ConflictRetry {
+
+  private static final int MAX_SHIFT = 16;
+
+  private ConflictRetry() {
+  }
+
+  public static <T> Mono<T> retry(@NonNull Mono<T> execution, int retries,
+      @NonNull Duration backoff, @NonNull ConflictMetrics metrics) {
+    if (retries < 0) {
+      throw new IllegalArgumentException("retries must not be negative");
+    }
+    return attempt(execution, 0, retries, backoff, metrics);
+  }
+
+  public static boolean isConflict(Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof OptimisticLockException || cause instanceof StaleStateException
+          || cause instanceof OptimisticEntityLockException) {
+        return true;
+      }
+      if (cause.getCause() == cause) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Random delay between the half and the whole of the backoff doubled at each attempt.
+   */
+  public static Duration delay(@NonNull Duration backoff, int attempt) {
+    long max = backoff.toNanos() << Math.min(attempt, MAX_SHIFT);
+    if (max <= 0) {
+      return Duration.ZERO;
+    }
+    return Duration.ofNanos(max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1));
+  }
+
+  private static <T> Mono<T> attempt(Mono<T> execution, int attempt, int retries,
+      Duration backoff, ConflictMetrics metrics) {
+    Mono<T> source = attempt == 0
+        ? execution
+        : execution.doOnSuccess(value -> metrics.recordRecovery());
+    return source.onErrorResume(ConflictRetry::isConflict, error -> {
+      boolean retried = attempt < retries;
+      metrics.recordConflict(retried);
+      if (!retried) {
+        return Mono.error(error);
+      }
+      return Mono.delay(delay(backoff, attempt))
+          .then(attempt(execution, attempt + 1, retries, backoff, metrics));
+    });
+  }
+}
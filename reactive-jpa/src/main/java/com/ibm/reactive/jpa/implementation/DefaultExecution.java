@@ -8,6 +8,8 @@ package com.ibm.reactive.jpa.implementation;
 
 import com.ibm.reactive.jpa.Execution;
 import com.ibm.reactive.jpa.IsolationLevel;
+import com.ibm.reactive.jpa.SlowQuery.Kind;
+import com.ibm.reactive.jpa.SlowQueryDetector;
 import com.ibm.reactive.jpa.TransactionDefinition;
 import com.ibm.reactive.jpa.util.HibernateUtils;
 import com.ibm.reactive.jpa.util.JdbcUtils;
@@ -30,23 +32,98 @@ public class DefaultExecution<T> implements Execution<T> {
   private static final Logger logger = LoggerFactory.getLogger(JdbcUtils.class);
   private TransactionDefinition transactionDefinition;
   private SessionFactory sessionFactory;
+  private SlowQueryDetector slowQueryDetector;
+  // sessions of successful calls are reused when set
+  private SessionPool sessionPool;
+
+  public DefaultExecution(TransactionDefinition transactionDefinition,
+      SessionFactory sessionFactory) {
+    this(transactionDefinition, sessionFactory, null);
+  }
+
+  public DefaultExecution(TransactionDefinition transactionDefinition,
+      SessionFactory sessionFactory, SlowQueryDetector slowQueryDetector) {
+    this(transactionDefinition, sessionFactory, slowQueryDetector, null);
+  }
+
+  public DefaultExecution(TransactionDefinition transactionDefinition,
+      SessionFactory sessionFactory, SlowQueryDetector slowQueryDetector,
+      SessionPool sessionPool) {
+    this.transactionDefinition = transactionDefinition;
+    this.sessionFactory = sessionFactory;
+    this.slowQueryDetector = slowQueryDetector;
+    this.sessionPool = sessionPool;
+  }
 
   @Override
   public T execute(@NonNull Function<EntityManager, T> function) throws SQLException {
     DefaultTransactionData data = null;
-    EntityManager entityManager = sessionFactory.createEntityManager();
+    QueryTimer timer = new QueryTimer(slowQueryDetector);
+    EntityManager entityManager = sessionPool == null
+        ? sessionFactory.createEntityManager()
+        : sessionPool.acquire();
     try {
+      acquire(entityManager, timer);
       data = checkAndBeginTransaction(entityManager);
       T response = function.apply(entityManager);
+      timer.executed();
       checkAndCommit(data, entityManager);
-      entityManager.close();
+      if (sessionPool == null) {
+        entityManager.close();
+      } else {
+        sessionPool.release(entityManager);
+      }
       return response;
     } catch (Exception e) {
       handleException(entityManager, data);
       throw e;
+    } finally {
+      // the queries of the function are unknown, its class tells where it comes from
+      timer.finish(Kind.EXECUTION, function.getClass().getName(), null,
+          isTransactional() ? transactionDefinition.getIsolation() : null, 0);
     }
   }
 
+  /**
+   * Runs the function in the entity manager of an outer transaction, which is neither begun nor
+   * committed here.
+   */
+  public T execute(@NonNull EntityManager entityManager,
+      @NonNull Function<EntityManager, T> function) {
+    QueryTimer timer = new QueryTimer(slowQueryDetector);
+    try {
+      timer.acquired();
+      T response = function.apply(entityManager);
+      timer.executed();
+      return response;
+    } finally {
+      timer.finish(Kind.EXECUTION, function.getClass().getName(), null,
+          isTransactional() ? transactionDefinition.getIsolation() : null, 0);
+    }
+  }
+
+  void acquire(EntityManager entityManager, QueryTimer timer) {
+    if (timer.isEnabled()) {
+      // the connection is otherwise obtained by the first statement, timed as the execution
+      getConnection(getSession(entityManager));
+      timer.acquired();
+    }
+  }
+
+  public DefaultTransactionData begin(@NonNull EntityManager entityManager) throws SQLException {
+    return checkAndBeginTransaction(entityManager);
+  }
+
+  public void commit(@NonNull EntityManager entityManager, DefaultTransactionData data)
+      throws SQLException {
+    checkAndCommit(data, entityManager);
+    entityManager.close();
+  }
+
+  public void rollback(@NonNull EntityManager entityManager, DefaultTransactionData data) {
+    handleException(entityManager, data);
+  }
+
   private void handleException(EntityManager entityManager,
       DefaultTransactionData data) {
     try {
@@ -156,7 +233,7 @@ public class DefaultExecution<T> implements Execution<T> {
   }
 
   @Value
-  private static class DefaultTransactionData {
+  public static class DefaultTransactionData {
 
     private FlushMode flushMode;
     private IsolationLevel isolationLevel;
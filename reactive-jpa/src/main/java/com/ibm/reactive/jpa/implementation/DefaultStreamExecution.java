@@ -0,0 +1,187 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.IsolationLevel;
+import com.ibm.reactive.jpa.SlowQuery.Kind;
+import com.ibm.reactive.jpa.SlowQueryDetector;
+import com.ibm.reactive.jpa.TransactionDefinition;
+import com.ibm.reactive.jpa.implementation.DefaultExecution.DefaultTransactionData;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Emits the elements of the {@link Stream} returned by the function one by one, as they are
+ * requested, keeping the entity manager open until the stream completes, fails or is cancelled.
+ *
+ * <p>The executor must run its tasks one at a time: no thread is held while the subscriber does
+ * not request, and the next request may resume on another thread of the executor.
+ */
+@Builder
+@Getter
+public class DefaultStreamExecution<T> {
+
+  public static final int DEFAULT_CLEAR_INTERVAL = 100;
+
+  private static final Logger logger = LoggerFactory.getLogger(DefaultStreamExecution.class);
+
+  @NonNull
+  private final Function<EntityManager, Stream<T>> function;
+
+  @NonNull
+  private final SessionFactory sessionFactory;
+
+  @NonNull
+  private final Executor executor;
+
+  private TransactionDefinition transactionDefinition;
+
+  // entity manager of an outer transaction, it is neither opened nor committed here
+  private EntityManager sharedEntityManager;
+
+  private SlowQueryDetector slowQueryDetector;
+
+  @Builder.Default
+  private int clearInterval = DEFAULT_CLEAR_INTERVAL;
+
+  public Flux<T> flux() {
+    return Flux.generate(this::open, this::next, this::release)
+        .subscribeOn(Schedulers.fromExecutor(executor));
+  }
+
+  private StreamState<T> open() throws Exception {
+    QueryTimer timer = new QueryTimer(slowQueryDetector);
+    if (sharedEntityManager != null) {
+      timer.acquired();
+      return opened(new StreamState<>(sharedEntityManager, null, null,
+          function.apply(sharedEntityManager), timer));
+    }
+    DefaultExecution<T> execution = new DefaultExecution<>(transactionDefinition, sessionFactory);
+    EntityManager entityManager = sessionFactory.createEntityManager();
+    DefaultTransactionData data = null;
+    try {
+      execution.acquire(entityManager, timer);
+      data = execution.begin(entityManager);
+      return opened(new StreamState<>(entityManager, execution, data,
+          function.apply(entityManager), timer));
+    } catch (Exception e) {
+      execution.rollback(entityManager, data);
+      finishTimer(timer);
+      throw e;
+    }
+  }
+
+  private StreamState<T> opened(StreamState<T> state) {
+    state.timer.executed();
+    state.timer.open(getDescription(), null, getIsolationLevel(), 0);
+    return state;
+  }
+
+  // the queries of the function are unknown, its class tells where it comes from
+  private String getDescription() {
+    return function.getClass().getName();
+  }
+
+  private IsolationLevel getIsolationLevel() {
+    return transactionDefinition == null ? null : transactionDefinition.getIsolation();
+  }
+
+  private void finishTimer(QueryTimer timer) {
+    timer.finish(Kind.STREAM, getDescription(), null, getIsolationLevel(), 0);
+  }
+
+  private StreamState<T> next(StreamState<T> state, SynchronousSink<T> sink) {
+    if (!state.iterator.hasNext()) {
+      try {
+        finish(state);
+        sink.complete();
+      } catch (Exception e) {
+        sink.error(e);
+      }
+      return state;
+    }
+    state.timer.row();
+    sink.next(state.iterator.next());
+    // emitted entities are not needed by the persistence context anymore
+    if (state.execution != null && clearInterval > 0 && ++state.rows % clearInterval == 0) {
+      state.entityManager.clear();
+    }
+    return state;
+  }
+
+  private void finish(StreamState<T> state) throws Exception {
+    state.closed = true;
+    try {
+      state.stream.close();
+      if (state.execution != null) {
+        try {
+          state.execution.commit(state.entityManager, state.data);
+        } catch (Exception e) {
+          state.execution.rollback(state.entityManager, state.data);
+          throw e;
+        }
+      }
+    } finally {
+      finishTimer(state.timer);
+    }
+  }
+
+  private void release(StreamState<T> state) {
+    if (state.closed) {
+      return;
+    }
+    // cancellation may come from the subscriber thread, the session is only used by the executor
+    executor.execute(() -> rollback(state));
+  }
+
+  private void rollback(StreamState<T> state) {
+    state.closed = true;
+    try {
+      state.stream.close();
+    } catch (RuntimeException e) {
+      logger.warn("Exception thrown while the stream was closed", e);
+    }
+    if (state.execution != null) {
+      state.execution.rollback(state.entityManager, state.data);
+    }
+    finishTimer(state.timer);
+  }
+
+  private static class StreamState<T> {
+
+    private final EntityManager entityManager;
+    private final DefaultExecution<T> execution;
+    private final DefaultTransactionData data;
+    private final Stream<T> stream;
+    private final Iterator<T> iterator;
+    private final QueryTimer timer;
+    private long rows;
+    private volatile boolean closed;
+
+    StreamState(EntityManager entityManager, DefaultExecution<T> execution,
+        DefaultTransactionData data, Stream<T> stream, QueryTimer timer) {
+      this.entityManager = entityManager;
+      this.execution = execution;
+      this.data = data;
+      this.stream = stream;
+      this.iterator = stream.iterator();
+      this.timer = timer;
+    }
+  }
+}
@@ -7,20 +7,29 @@
 package com.ibm.reactive.jpa.implementation;
 
 import com.ibm.reactive.jpa.IsolationLevel;
+import com.ibm.reactive.jpa.SlowQuery.Kind;
+import com.ibm.reactive.jpa.SlowQueryDetector;
 import com.ibm.reactive.jpa.Streamer;
+import com.ibm.reactive.jpa.util.HibernateUtils;
 import com.ibm.reactive.jpa.util.JdbcUtils;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import javax.persistence.criteria.CriteriaQuery;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
+import org.hibernate.CacheMode;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.hibernate.StatelessSession;
-import org.hibernate.internal.StatelessSessionImpl;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,9 +41,17 @@ public class DefaultStreamer<T> implements Streamer<T> {
 
   public static final int DEFAULT_FETCH_SIZE = 5;
 
-  @NonNull
+  public static final int DEFAULT_FETCH_BATCH_SIZE = 100;
+
+  // HQL query, ignored when the criteria query is set
   private final String query;
 
+  private CriteriaQuery<T> criteria;
+
+  // criteria literals are bound as parameters, see HibernateUtils#createQuery
+  @Builder.Default
+  private boolean bindLiterals = true;
+
   private Map<String, Object> parameters;
 
   private List<Object> parameterList;
@@ -47,37 +64,169 @@ public class DefaultStreamer<T> implements Streamer<T> {
 
   private IsolationLevel isolationLevel;
 
+  // session of an outer transaction, it is neither opened nor committed by the streamer
+  private Session sharedSession;
+
   @Builder.Default
   private int fetchSize = DEFAULT_FETCH_SIZE;
 
+  private long fetchMemoryBudget;
+
+  // when set, every page of fetchSize rows is streamed by a new task of this executor, so the
+  // worker is released between pages for the tasks queued meanwhile. The session stays open
+  // between pages, the executor should keep counting it against its limits, see
+  // FairExecutor.Lane#resume
+  private Executor pageExecutor;
+
   @Builder.Default
   private int maxResults = -1;
 
   @Builder.Default
   private int firstResult = -1;
 
+  private SlowQueryDetector slowQueryDetector;
+
+  // associations fetched with the rows: a named entity graph and attributes of the entity
+  private String fetchGraph;
+
+  private List<String> fetchAttributes;
+
+  @Builder.Default
+  private int fetchBatchSize = DEFAULT_FETCH_BATCH_SIZE;
+
   private static Logger logger = LoggerFactory.getLogger(JdbcUtils.class);
 
   public void stream(FluxSink<T> sink) {
-    StatelessSession session = null;
+    if (sharedSession != null) {
+      streamSharedSession(sink);
+      return;
+    }
+    SharedSessionContract session = null;
     ScrollableResults results = null;
     IsolationLevel previousLevel = null;
+    QueryTimer timer = new QueryTimer(slowQueryDetector);
+    boolean paged = false;
     try {
       session = openSession();
+      if (timer.isEnabled()) {
+        // the connection is otherwise obtained by the query, timed as the execution
+        getConnection(session);
+        timer.acquired();
+      }
       previousLevel = startTransaction(session);
-      results = createScroll(session);
-      streamRows(results, sink);
+      FetchPlan<T> plan = resolveFetchPlan(session);
+      results = createScroll(session, plan);
+      timer.executed();
+      open(timer);
+      if (pageExecutor != null) {
+        Page page = new Page(session, results, previousLevel, sink, plan, timer);
+        paged = true;
+        streamPage(page);
+        return;
+      }
+      if (plan != null && plan.hasCollections()) {
+        streamWindows(results, sink, (Session) session, plan, true, timer);
+      } else {
+        streamRows(results, sink, isStateful() ? (Session) session : null, timer);
+      }
       commit(session, previousLevel);
     } catch (Exception e) {
       handleException(session, previousLevel);
       sink.error(e);
     } finally {
-      closeResources(session, results);
+      if (!paged) {
+        closeResources(session, results);
+        finish(timer);
+      }
+    }
+  }
+
+  private void streamPage(Page page) {
+    boolean resubmitted = false;
+    try {
+      int rows = 0;
+      if (page.plan != null && page.plan.hasCollections()) {
+        List<T> window = readWindow(page.results, page.size, page.timer);
+        page.plan.load((Session) page.session, window);
+        window.forEach(page.sink::next);
+        rows = window.size();
+      } else {
+        while (!page.sink.isCancelled() && rows < page.size && page.results.next()) {
+          page.timer.row();
+          page.sink.next(type.cast(page.results.get(0)));
+          rows++;
+        }
+      }
+      if (page.sink.isCancelled()) {
+        handleException(page.session, page.previousLevel);
+      } else if (rows == page.size) {
+        clear(isStateful() ? (Session) page.session : null);
+        page.next();
+        pageExecutor.execute(() -> streamPage(page));
+        resubmitted = true;
+      } else {
+        commit(page.session, page.previousLevel);
+        page.sink.complete();
+      }
+    } catch (Exception e) {
+      handleException(page.session, page.previousLevel);
+      page.sink.error(e);
+    } finally {
+      if (!resubmitted) {
+        closeResources(page.session, page.results);
+        finish(page.timer);
+      }
+    }
+  }
+
+  private void streamSharedSession(FluxSink<T> sink) {
+    ScrollableResults results = null;
+    QueryTimer timer = new QueryTimer(slowQueryDetector);
+    try {
+      timer.acquired();
+      FetchPlan<T> plan = resolveFetchPlan(sharedSession);
+      results = createScroll(sharedSession, plan);
+      timer.executed();
+      open(timer);
+      if (plan != null && plan.hasCollections()) {
+        // the persistence context belongs to the outer transaction, it is never cleared here
+        streamWindows(results, sink, sharedSession, plan, false, timer);
+      } else {
+        streamRows(results, sink, null, timer);
+      }
+    } catch (Exception e) {
+      sink.error(e);
+    } finally {
+      if (results != null) {
+        results.close();
+      }
+      finish(timer);
     }
   }
 
-  private Query<T> createQuery(StatelessSession session) {
-    Query<T> compiledQuery = session.createQuery(query, type);
+  public String getDescription() {
+    return describe(query, type);
+  }
+
+  public static String describe(String query, Class<?> type) {
+    return query != null ? query : "criteria query of " + type.getName();
+  }
+
+  private void open(QueryTimer timer) {
+    timer.open(getDescription(), parameterList != null ? parameterList : parameters,
+        isolationLevel, fetchSize);
+  }
+
+  private void finish(QueryTimer timer) {
+    timer.finish(Kind.STREAM, getDescription(),
+        parameterList != null ? parameterList : parameters, isolationLevel, fetchSize);
+  }
+
+  private Query<T> createQuery(SharedSessionContract session) {
+    Query<T> compiledQuery = criteria == null
+        ? session.createQuery(query, type)
+        : bindLiterals ? HibernateUtils.createQuery((Session) session, criteria)
+            : ((Session) session).createQuery(criteria);
     setParameters(compiledQuery);
     if (maxResults > 0) {
       compiledQuery.setMaxResults(maxResults);
@@ -101,21 +250,45 @@ public class DefaultStreamer<T> implements Streamer<T> {
 
   }
 
-  private Connection getConnection(StatelessSession session) {
-    return ((StatelessSessionImpl) session).connection();
+  private Connection getConnection(SharedSessionContract session) {
+    return ((SharedSessionContractImplementor) session).connection();
+  }
+
+  private boolean isStateful() {
+    return criteria != null || fetchGraph != null
+        || fetchAttributes != null && !fetchAttributes.isEmpty();
+  }
+
+  private FetchPlan<T> resolveFetchPlan(SharedSessionContract session) {
+    if (session instanceof Session) {
+      return FetchPlan.resolve((Session) session, type, fetchGraph, fetchAttributes,
+          fetchBatchSize);
+    }
+    return null;
   }
 
-  private StatelessSession openSession() {
-    return sessionFactory.openStatelessSession();
+  private SharedSessionContract openSession() {
+    if (!isStateful()) {
+      return sessionFactory.openStatelessSession();
+    }
+    // criteria queries and fetch plans are only supported by stateful sessions
+    Session session = sessionFactory.openSession();
+    session.setDefaultReadOnly(true);
+    session.setCacheMode(CacheMode.IGNORE);
+    return session;
   }
 
-  private ScrollableResults createScroll(StatelessSession session) {
-    return createQuery(session).setReadOnly(true)
+  private ScrollableResults createScroll(SharedSessionContract session, FetchPlan<T> plan) {
+    Query<T> compiledQuery = createQuery(session);
+    if (plan != null) {
+      plan.apply((Session) session, compiledQuery);
+    }
+    return compiledQuery.setReadOnly(true)
         .setFetchSize(fetchSize)
         .scroll(ScrollMode.FORWARD_ONLY);
   }
 
-  private void closeResources(StatelessSession session, ScrollableResults results) {
+  private void closeResources(SharedSessionContract session, ScrollableResults results) {
     if (results != null) {
       results.close();
     }
@@ -124,15 +297,81 @@ public class DefaultStreamer<T> implements Streamer<T> {
     }
   }
 
-  private void streamRows(ScrollableResults results, FluxSink<T> sink) {
+  private void streamRows(ScrollableResults results, FluxSink<T> sink, Session clearedSession,
+      QueryTimer timer) throws SQLException {
+    ResultSet resultSet = isAdaptive() ? HibernateUtils.getResultSet(results) : null;
+    if (resultSet == null) {
+      int rowsInWindow = 0;
+      while (results.next()) {
+        timer.row();
+        sink.next(type.cast(results.get(0)));
+        if (++rowsInWindow == fetchSize) {
+          clear(clearedSession);
+          rowsInWindow = 0;
+        }
+      }
+    } else {
+      streamAdaptiveRows(results, resultSet, sink, clearedSession, timer);
+    }
+
+    sink.complete();
+  }
+
+  private void streamWindows(ScrollableResults results, FluxSink<T> sink, Session session,
+      FetchPlan<T> plan, boolean clearWindows, QueryTimer timer) {
+    int windowSize = Math.max(1, fetchSize);
+    List<T> window;
+    do {
+      window = readWindow(results, windowSize, timer);
+      // one batch of secondary queries per window instead of one query per row
+      plan.load(session, window);
+      window.forEach(sink::next);
+      if (clearWindows) {
+        clear(session);
+      }
+    } while (window.size() == windowSize && !sink.isCancelled());
+    sink.complete();
+  }
+
+  private List<T> readWindow(ScrollableResults results, int windowSize, QueryTimer timer) {
+    List<T> window = new ArrayList<>(windowSize);
+    while (window.size() < windowSize && results.next()) {
+      timer.row();
+      window.add(type.cast(results.get(0)));
+    }
+    return window;
+  }
+
+  private void clear(Session clearedSession) {
+    // the rows of the window are emitted, the persistence context does not need them anymore
+    if (clearedSession != null) {
+      clearedSession.clear();
+    }
+  }
+
+  private void streamAdaptiveRows(ScrollableResults results, ResultSet resultSet,
+      FluxSink<T> sink, Session clearedSession, QueryTimer timer) throws SQLException {
+    AdaptiveFetchSize adaptiveFetchSize = new AdaptiveFetchSize(fetchSize, fetchMemoryBudget);
+    long rowSize = JdbcUtils.estimateRowSize(resultSet);
+    int window = fetchSize;
+    int rowsInWindow = 0;
     while (results.next()) {
+      timer.row();
       sink.next(type.cast(results.get(0)));
+      if (++rowsInWindow == window) {
+        clear(clearedSession);
+        window = adaptiveFetchSize.next(rowSize, sink.requestedFromDownstream());
+        resultSet.setFetchSize(window);
+        rowsInWindow = 0;
+      }
     }
+  }
 
-    sink.complete();
+  private boolean isAdaptive() {
+    return fetchMemoryBudget > 0;
   }
 
-  private void handleException(StatelessSession session, IsolationLevel previousLevel) {
+  private void handleException(SharedSessionContract session, IsolationLevel previousLevel) {
     try {
       rollback(session, previousLevel);
     } catch (Exception ex) {
@@ -141,7 +380,7 @@ public class DefaultStreamer<T> implements Streamer<T> {
     }
   }
 
-  private IsolationLevel startTransaction(StatelessSession session) throws SQLException {
+  private IsolationLevel startTransaction(SharedSessionContract session) throws SQLException {
     if (isTransactional()) {
       Connection connection = getConnection(session);
       IsolationLevel previousIsolationLevel = JdbcUtils
@@ -152,14 +391,15 @@ public class DefaultStreamer<T> implements Streamer<T> {
     return null;
   }
 
-  private void commit(StatelessSession session, IsolationLevel previousLevel) throws SQLException {
+  private void commit(SharedSessionContract session, IsolationLevel previousLevel)
+      throws SQLException {
     if (isTransactional()) {
       session.getTransaction().commit();
       resetConnection(session, previousLevel);
     }
   }
 
-  private void rollback(StatelessSession session, IsolationLevel previousLevel)
+  private void rollback(SharedSessionContract session, IsolationLevel previousLevel)
       throws SQLException {
     if (isTransactional() && session.getTransaction().isActive()) {
       session.getTransaction().rollback();
@@ -167,7 +407,7 @@ public class DefaultStreamer<T> implements Streamer<T> {
     }
   }
 
-  private void resetConnection(StatelessSession session, IsolationLevel previousLevel)
+  private void resetConnection(SharedSessionContract session, IsolationLevel previousLevel)
       throws SQLException {
     Connection connection = getConnection(session);
     JdbcUtils.resetTransactionValues(connection, previousLevel);
@@ -176,4 +416,41 @@ public class DefaultStreamer<T> implements Streamer<T> {
   private boolean isTransactional() {
     return isolationLevel != null;
   }
+
+  // state of a paged stream carried from one page to the next
+  private class Page {
+
+    private final SharedSessionContract session;
+    private final ScrollableResults results;
+    private final IsolationLevel previousLevel;
+    private final FluxSink<T> sink;
+    private final FetchPlan<T> plan;
+    private final QueryTimer timer;
+    private final ResultSet resultSet;
+    private final AdaptiveFetchSize adaptiveFetchSize;
+    private final long rowSize;
+    private int size = Math.max(1, fetchSize);
+
+    Page(SharedSessionContract session, ScrollableResults results, IsolationLevel previousLevel,
+        FluxSink<T> sink, FetchPlan<T> plan, QueryTimer timer) throws SQLException {
+      this.session = session;
+      this.results = results;
+      this.previousLevel = previousLevel;
+      this.sink = sink;
+      this.plan = plan;
+      this.timer = timer;
+      this.resultSet = isAdaptive() ? HibernateUtils.getResultSet(results) : null;
+      this.adaptiveFetchSize = resultSet == null ? null
+          : new AdaptiveFetchSize(size, fetchMemoryBudget);
+      this.rowSize = resultSet == null ? 0 : JdbcUtils.estimateRowSize(resultSet);
+    }
+
+    // the next page follows the demand of the subscriber within the memory budget
+    void next() throws SQLException {
+      if (adaptiveFetchSize != null) {
+        size = adaptiveFetchSize.next(rowSize, sink.requestedFromDownstream());
+        resultSet.setFetchSize(size);
+      }
+    }
+  }
 }
@@ -0,0 +1,246 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.TailRecord;
+import com.ibm.reactive.jpa.Tracer;
+import com.ibm.reactive.jpa.TransactionDefinition;
+import com.ibm.reactive.jpa.util.ReactiveUtils;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.hibernate.SessionFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Polls an append-only table from the last seen value of a strictly increasing cursor column,
+ * waiting longer between polls while the table is idle.
+ *
+ * <p>Without a lookback the cursors must be assigned in commit order, a row committed after a
+ * higher cursor was read is skipped. With a lookback the rows behind the last cursor are read
+ * again until they are older than the window, the cursors already delivered are skipped, so a
+ * row committed within the window after a higher one is still delivered.
+ */
+@Builder
+@Getter
+public class DefaultTail<T> {
+
+  public static final int DEFAULT_BATCH_SIZE = 100;
+  static final String CURSOR_PARAMETER = "tailCursor";
+
+  // HQL query without order by, the cursor condition and ordering are appended
+  @NonNull
+  private final String query;
+
+  @NonNull
+  private final Class<T> type;
+
+  // cursor path in the query, e.g. "event.id"
+  @NonNull
+  private final String cursorColumn;
+
+  @NonNull
+  private final SessionFactory sessionFactory;
+
+  @NonNull
+  private final Executor executor;
+
+  // carries the caller context to each poll
+  @NonNull
+  @Builder.Default
+  private final Tracer tracer = Tracer.NOOP;
+
+  private Map<String, Object> parameters;
+
+  private TransactionDefinition transactionDefinition;
+
+  private Object startAfter;
+
+  @Builder.Default
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  @Builder.Default
+  private long minInterval = AdaptivePollInterval.DEFAULT_MIN_INTERVAL;
+
+  @Builder.Default
+  private long maxInterval = AdaptivePollInterval.DEFAULT_MAX_INTERVAL;
+
+  // milliseconds during which a delivered cursor is read again, 0 trusts the commit order
+  private long lookback;
+
+  public Flux<TailRecord<T>> flux() {
+    return Flux.defer(() -> {
+      TailState state = new TailState(startAfter, new AdaptivePollInterval(minInterval,
+          maxInterval), cursorMembers());
+      return Flux.defer(() -> poll(state)).repeat();
+    });
+  }
+
+  private Flux<TailRecord<T>> poll(TailState state) {
+    Mono<Long> wait = state.delay == 0
+        ? Mono.just(0L)
+        : Mono.delay(Duration.ofMillis(state.delay));
+    // the rows read again do not take the place of new ones
+    return wait
+        .then(Mono.defer(() -> fetch(state.cursor, batchSize + state.recent.size())))
+        .map(rows -> toRecords(state, rows))
+        .flatMapIterable(records -> records);
+  }
+
+  private Mono<List<T>> fetch(Object cursor, int maxResults) {
+    String hql = composeQuery(query, cursorColumn, cursor != null);
+    DefaultExecution<List<T>> execution = new DefaultExecution<>(transactionDefinition,
+        sessionFactory);
+    return ReactiveUtils.execute(executor, execution, entityManager -> {
+      TypedQuery<T> typedQuery = entityManager.createQuery(hql, type).setMaxResults(maxResults);
+      if (parameters != null) {
+        parameters.forEach(typedQuery::setParameter);
+      }
+      if (cursor != null) {
+        typedQuery.setParameter(CURSOR_PARAMETER, cursor);
+      }
+      return typedQuery.getResultList();
+    }, tracer);
+  }
+
+  private List<TailRecord<T>> toRecords(TailState state, List<T> rows) {
+    if (rows.isEmpty()) {
+      state.delay = state.interval.next(0, batchSize);
+      return Collections.emptyList();
+    }
+    List<TailRecord<T>> records = new ArrayList<>(rows.size());
+    long now = System.nanoTime();
+    for (T row : rows) {
+      Object cursor = readCursor(state.members, row);
+      if (lookback > 0 && cursor != null && state.recent.putIfAbsent(cursor, now) != null) {
+        // delivered by a previous poll
+        continue;
+      }
+      records.add(new TailRecord<>(row, cursor));
+    }
+    state.delay = state.interval.next(records.size(), batchSize);
+    // the next poll only starts once every record of this one is delivered
+    if (lookback == 0) {
+      state.cursor = readCursor(state.members, rows.get(rows.size() - 1));
+    } else {
+      advance(state, now);
+    }
+    return records;
+  }
+
+  // the lowest cursors older than the window are no longer read, a younger cursor keeps the
+  // higher ones in the window
+  private void advance(TailState state, long now) {
+    long window = TimeUnit.MILLISECONDS.toNanos(lookback);
+    while (!state.recent.isEmpty() && now - state.recent.firstEntry().getValue() > window) {
+      state.cursor = state.recent.pollFirstEntry().getKey();
+    }
+  }
+
+  static String composeQuery(String query, String cursorColumn, boolean withCursor) {
+    StringBuilder hql = new StringBuilder(query.length() + 2 * cursorColumn.length() + 40);
+    // the where of a subquery or of a string literal is not the where of the query
+    int where = withCursor ? QueryText.indexOf(query, 0, "where") : -1;
+    if (!withCursor) {
+      hql.append(query);
+    } else if (where >= 0) {
+      int conditions = where + "where".length();
+      // the original conditions are enclosed so an "or" does not skip the cursor condition
+      hql.append(query, 0, conditions).append(" (")
+          .append(query.substring(conditions).trim())
+          .append(") and ");
+      appendCondition(hql, cursorColumn);
+    } else {
+      hql.append(query).append(" where ");
+      appendCondition(hql, cursorColumn);
+    }
+    return hql.append(" order by ").append(cursorColumn).toString();
+  }
+
+  private static void appendCondition(StringBuilder hql, String cursorColumn) {
+    hql.append(cursorColumn).append(" > :").append(CURSOR_PARAMETER);
+  }
+
+  // members along the cursor path, e.g. "event.header.sequence" reads header then sequence
+  private List<Member> cursorMembers() {
+    Metamodel metamodel = sessionFactory.getMetamodel();
+    String[] path = cursorColumn.split("\\.");
+    ManagedType<?> managedType = metamodel.entity(type);
+    // the first segment is the alias of the entity unless it is one of its attributes
+    int first = path.length > 1 && !hasAttribute(managedType, path[0]) ? 1 : 0;
+    List<Member> members = new ArrayList<>(path.length - first);
+    for (int index = first; index < path.length; index++) {
+      Attribute<?, ?> attribute = managedType.getAttribute(path[index]);
+      Member member = attribute.getJavaMember();
+      if (member instanceof Field) {
+        ((Field) member).setAccessible(true);
+      } else if (member instanceof Method) {
+        ((Method) member).setAccessible(true);
+      }
+      members.add(member);
+      if (index < path.length - 1) {
+        managedType = metamodel.managedType(attribute.getJavaType());
+      }
+    }
+    return members;
+  }
+
+  private static boolean hasAttribute(ManagedType<?> managedType, String name) {
+    return managedType.getAttributes().stream()
+        .anyMatch(attribute -> attribute.getName().equals(name));
+  }
+
+  private static Object readCursor(List<Member> members, Object row) {
+    Object value = row;
+    try {
+      for (Member member : members) {
+        if (value == null) {
+          return null;
+        }
+        value = member instanceof Field
+            ? ((Field) member).get(value)
+            : ((Method) member).invoke(value);
+      }
+      return value;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("cursor column is not readable", e);
+    }
+  }
+
+  private static class TailState {
+
+    private final AdaptivePollInterval interval;
+    private final List<Member> members;
+    // cursors delivered within the lookback window, with the time they were delivered
+    private final NavigableMap<Object, Long> recent = new TreeMap<>();
+    private Object cursor;
+    private long delay;
+
+    TailState(Object cursor, AdaptivePollInterval interval, List<Member> members) {
+      this.cursor = cursor;
+      this.interval = interval;
+      this.members = members;
+    }
+  }
+}
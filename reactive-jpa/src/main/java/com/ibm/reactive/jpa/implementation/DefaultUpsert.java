@@ -0,0 +1,422 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.UpsertResult;
+import com.ibm.reactive.jpa.UpsertStrategy;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import javax.persistence.EntityManager;
+import lombok.Getter;
+import lombok.NonNull;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.Assigned;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PostInsertIdentifierGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+
+/**
+ * Writes batches of entities matched on a natural key with plain JDBC statements. The existing
+ * keys of a batch are looked up with one query, which tells the inserted rows from the updated
+ * ones, then the rows are written with one JDBC batch of the statement of the strategy.
+ *
+ * <p>The persistence context, the listeners and the second level cache are bypassed, the cached
+ * entries of the type are evicted after each batch. Identifiers generated after the insert,
+ * such as identity columns, are not supported.
+ *
+ * <p>A numeric version attribute is seeded on insert and incremented on update, the incoming
+ * version is not compared: the upsert wins over concurrent writers, which then fail their
+ * optimistic lock check.
+ */
+public class DefaultUpsert<T> {
+
+  @Getter
+  private final UpsertStrategy strategy;
+  private final AbstractEntityPersister persister;
+  private final SessionFactoryImplementor factory;
+  private final String[] identifierColumns;
+  private final int[] keys;
+  private final int[] written;
+  private final int[] updated;
+  // version attribute, -1 when the entity is not versioned
+  private final int version;
+  private final String writeSql;
+  private final String insertSql;
+  private final String updateSql;
+
+  public DefaultUpsert(@NonNull SessionFactory sessionFactory, @NonNull Class<T> type,
+      @NonNull List<String> naturalKey, UpsertStrategy strategy) {
+    this.factory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+    this.persister = (AbstractEntityPersister) factory.getMetamodel().entityPersister(type);
+    this.strategy = strategy != null
+        ? strategy
+        : UpsertStrategy.of(factory.getJdbcServices().getDialect());
+    if (persister.getIdentifierGenerator() instanceof PostInsertIdentifierGenerator) {
+      throw new IllegalArgumentException("identifiers of " + type.getName()
+          + " are generated on insert, they cannot be upserted");
+    }
+    this.identifierColumns = persister.getIdentifierColumnNames();
+    this.version = persister.isVersioned() ? persister.getVersionProperty() : -1;
+    if (version >= 0
+        && !Number.class.isAssignableFrom(persister.getVersionType().getReturnedClass())) {
+      throw new IllegalArgumentException("version of " + type.getName()
+          + " is not numeric, it cannot be incremented by an upsert");
+    }
+    this.keys = keyProperties(naturalKey);
+    this.written = writtenProperties();
+    for (int key : keys) {
+      if (Arrays.stream(written).noneMatch(property -> property == key)
+          || persister.getPropertyColumnNames(key).length != 1) {
+        throw new IllegalArgumentException("natural key attribute "
+            + persister.getPropertyNames()[key] + " must be mapped to one inserted column");
+      }
+    }
+    this.updated = Arrays.stream(written)
+        .filter(property -> persister.getPropertyUpdateability()[property])
+        .filter(property -> Arrays.stream(keys).noneMatch(key -> key == property))
+        .filter(property -> property != version)
+        .toArray();
+    this.insertSql = insertSql();
+    this.updateSql = updateSql();
+    this.writeSql = writeSql();
+  }
+
+  public String getSql() {
+    return strategy == UpsertStrategy.FALLBACK ? insertSql + "; " + updateSql : writeSql;
+  }
+
+  public UpsertResult apply(@NonNull EntityManager entityManager, @NonNull List<T> rows) {
+    if (rows.isEmpty()) {
+      return UpsertResult.EMPTY;
+    }
+    SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+    UpsertResult result = session.doReturningWork(connection -> {
+      List<Object[]> values = new ArrayList<>(rows.size());
+      List<List<Object>> rowKeys = new ArrayList<>(rows.size());
+      for (T row : rows) {
+        Object[] rowValues = persister.getPropertyValues(row);
+        values.add(rowValues);
+        rowKeys.add(key(rowValues));
+      }
+      Map<List<Object>, Serializable> existing = lookup(connection, session, rowKeys);
+      List<Object[]> inserts = new ArrayList<>(rows.size());
+      List<Object[]> updates = new ArrayList<>(rows.size());
+      List<Object[]> all = new ArrayList<>(rows.size());
+      for (int index = 0; index < rows.size(); index++) {
+        T row = rows.get(index);
+        Serializable identifier = existing.get(rowKeys.get(index));
+        boolean inserted = identifier == null;
+        if (inserted) {
+          identifier = generate(session, row);
+          // a key repeated in the batch updates the row inserted by the first one
+          existing.put(rowKeys.get(index), identifier);
+        }
+        persister.setIdentifier(row, identifier, session);
+        Object[] rowValues = values.get(index);
+        if (version >= 0 && (inserted || rowValues[version] == null)) {
+          // the version of an updated row is only inserted if the row was deleted meanwhile
+          rowValues[version] = persister.getVersionType().seed(session);
+          if (inserted) {
+            persister.setPropertyValue(row, version, rowValues[version]);
+          }
+        }
+        Object[] bound = withIdentifier(rowValues, identifier);
+        (inserted ? inserts : updates).add(bound);
+        all.add(bound);
+      }
+      if (strategy == UpsertStrategy.FALLBACK) {
+        write(connection, session, insertSql, inserts, this::bindInsert);
+        write(connection, session, updateSql, updates, this::bindUpdate);
+      } else if (strategy == UpsertStrategy.MERGE) {
+        write(connection, session, writeSql, all, this::bindMerge);
+      } else {
+        write(connection, session, writeSql, all, this::bindInsert);
+      }
+      return new UpsertResult(inserts.size(), updates.size());
+    });
+    if (persister.canWriteToCache()) {
+      factory.getCache().evictEntityData(persister.getEntityName());
+    }
+    return result;
+  }
+
+  private Map<List<Object>, Serializable> lookup(Connection connection,
+      SessionImplementor session, List<List<Object>> rowKeys) throws SQLException {
+    Map<List<Object>, Serializable> existing = new HashMap<>();
+    String[] identifierAliases = new String[identifierColumns.length];
+    StringJoiner select = new StringJoiner(", ", "select ", " from " + persister.getTableName());
+    for (int index = 0; index < identifierColumns.length; index++) {
+      identifierAliases[index] = "i" + index;
+      select.add(identifierColumns[index] + " as " + identifierAliases[index]);
+    }
+    for (int index = 0; index < keys.length; index++) {
+      select.add(keyColumn(index) + " as k" + index);
+    }
+    StringJoiner where = new StringJoiner(" or ", " where ", "");
+    for (int row = 0; row < rowKeys.size(); row++) {
+      StringJoiner conditions = new StringJoiner(" and ", "(", ")");
+      for (int index = 0; index < keys.length; index++) {
+        conditions.add(keyColumn(index) + " = ?");
+      }
+      where.add(conditions.toString());
+    }
+    try (PreparedStatement statement = connection.prepareStatement(select + where.toString())) {
+      int parameter = 1;
+      for (List<Object> key : rowKeys) {
+        for (int index = 0; index < keys.length; index++) {
+          keyType(index).nullSafeSet(statement, key.get(index), parameter++, session);
+        }
+      }
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          List<Object> key = new ArrayList<>(keys.length);
+          for (int index = 0; index < keys.length; index++) {
+            key.add(keyType(index).nullSafeGet(resultSet, new String[] {"k" + index}, session,
+                null));
+          }
+          existing.put(key, (Serializable) persister.getIdentifierType()
+              .nullSafeGet(resultSet, identifierAliases, session, null));
+        }
+      }
+    }
+    return existing;
+  }
+
+  private void write(Connection connection, SessionImplementor session, String sql,
+      List<Object[]> rows, Binder binder) throws SQLException {
+    if (rows.isEmpty() || sql == null) {
+      return;
+    }
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (Object[] values : rows) {
+        binder.bind(statement, values, session);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    }
+  }
+
+  // the identifier is appended after the property values
+  private Object[] withIdentifier(Object[] values, Serializable identifier) {
+    Object[] copy = Arrays.copyOf(values, values.length + 1);
+    copy[values.length] = identifier;
+    return copy;
+  }
+
+  private void bindMerge(PreparedStatement statement, Object[] values,
+      SessionImplementor session) throws SQLException {
+    int parameter = bind(statement, values, keys, 1, session);
+    parameter = bind(statement, values, updated, parameter, session);
+    bindIdentifierAndWritten(statement, values, parameter, session);
+  }
+
+  private void bindInsert(PreparedStatement statement, Object[] values,
+      SessionImplementor session) throws SQLException {
+    bindIdentifierAndWritten(statement, values, 1, session);
+  }
+
+  private void bindUpdate(PreparedStatement statement, Object[] values,
+      SessionImplementor session) throws SQLException {
+    int parameter = bind(statement, values, updated, 1, session);
+    bind(statement, values, keys, parameter, session);
+  }
+
+  private void bindIdentifierAndWritten(PreparedStatement statement, Object[] values,
+      int parameter, SessionImplementor session) throws SQLException {
+    Type identifierType = persister.getIdentifierType();
+    identifierType.nullSafeSet(statement, values[values.length - 1], parameter, session);
+    bind(statement, values, written, parameter + identifierType.getColumnSpan(factory), session);
+  }
+
+  private int bind(PreparedStatement statement, Object[] values, int[] properties,
+      int parameter, SessionImplementor session) throws SQLException {
+    for (int property : properties) {
+      Type type = persister.getPropertyTypes()[property];
+      type.nullSafeSet(statement, values[property], parameter, session);
+      parameter += type.getColumnSpan(factory);
+    }
+    return parameter;
+  }
+
+  private Serializable generate(SessionImplementor session, T row) {
+    IdentifierGenerator generator = persister.getIdentifierGenerator();
+    Serializable identifier = generator instanceof Assigned
+        ? persister.getIdentifier(row, session)
+        : generator.generate(session, row);
+    if (identifier == null) {
+      throw new IllegalArgumentException("no identifier for a new " + persister.getEntityName());
+    }
+    return identifier;
+  }
+
+  private List<Object> key(Object[] values) {
+    List<Object> key = new ArrayList<>(keys.length);
+    for (int property : keys) {
+      if (values[property] == null) {
+        throw new IllegalArgumentException("natural key attribute "
+            + persister.getPropertyNames()[property] + " is null");
+      }
+      key.add(values[property]);
+    }
+    return key;
+  }
+
+  private String keyColumn(int index) {
+    return persister.getPropertyColumnNames(keys[index])[0];
+  }
+
+  private Type keyType(int index) {
+    return persister.getPropertyTypes()[keys[index]];
+  }
+
+  private int[] keyProperties(List<String> naturalKey) {
+    if (!naturalKey.isEmpty()) {
+      return naturalKey.stream()
+          .mapToInt(name -> persister.getEntityMetamodel().getPropertyIndex(name))
+          .toArray();
+    }
+    if (!persister.hasNaturalIdentifier()) {
+      throw new IllegalArgumentException("no natural key given and " + persister.getEntityName()
+          + " has no natural identifier");
+    }
+    return persister.getNaturalIdentifierProperties();
+  }
+
+  private int[] writtenProperties() {
+    List<Integer> properties = new ArrayList<>();
+    for (int property = 0; property < persister.getPropertyNames().length; property++) {
+      String[] columns = persister.getPropertyColumnNames(property);
+      if (!persister.getPropertyTypes()[property].isCollectionType()
+          && persister.getPropertyInsertability()[property]
+          && columns != null && columns.length > 0) {
+        properties.add(property);
+      }
+    }
+    return properties.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private String writeSql() {
+    switch (strategy) {
+      case MERGE:
+        return mergeSql();
+      case ON_CONFLICT:
+        // the table is aliased, its columns are otherwise ambiguous with the excluded ones
+        return "insert into " + persister.getTableName() + " as target " + insertColumns()
+            + " values " + insertParameters() + " on conflict ("
+            + String.join(", ", keyColumns()) + ") do "
+            + (isUpdating() ? "update set " + assignments("excluded.%s", "target.%s") : "nothing");
+      case ON_DUPLICATE_KEY:
+        return insertSql + " on duplicate key update " + (isUpdating()
+            ? assignments("values(%s)", "%s")
+            : keyColumn(0) + " = " + keyColumn(0));
+      default:
+        return null;
+    }
+  }
+
+  // the parameters are compared and assigned to columns, so their types are known
+  private String mergeSql() {
+    StringJoiner on = new StringJoiner(" and ", " on ", "");
+    for (String column : keyColumns()) {
+      on.add("target." + column + " = ?");
+    }
+    String matched = isUpdating()
+        ? " when matched then update set " + assignments("?", "target.%s")
+        : "";
+    return "merge into " + persister.getTableName() + " as target using (values (0)) as source"
+        + " (dummy)" + on + matched + " when not matched then insert " + insertColumns()
+        + " values " + insertParameters();
+  }
+
+  private String insertSql() {
+    return "insert into " + persister.getTableName() + " " + insertColumns() + " values "
+        + insertParameters();
+  }
+
+  private String updateSql() {
+    if (!isUpdating()) {
+      return null;
+    }
+    StringJoiner where = new StringJoiner(" and ", " where ", "");
+    for (String column : keyColumns()) {
+      where.add(column + " = ?");
+    }
+    return "update " + persister.getTableName() + " set " + assignments("?", "%s") + where;
+  }
+
+  private String insertColumns() {
+    StringJoiner columns = new StringJoiner(", ", "(", ")");
+    for (String column : identifierColumns) {
+      columns.add(column);
+    }
+    for (int property : written) {
+      for (String column : persister.getPropertyColumnNames(property)) {
+        columns.add(column);
+      }
+    }
+    return columns.toString();
+  }
+
+  private String insertParameters() {
+    StringJoiner parameters = new StringJoiner(", ", "(", ")");
+    for (int index = 0; index < identifierColumns.length; index++) {
+      parameters.add("?");
+    }
+    for (int property : written) {
+      for (int index = 0; index < persister.getPropertyColumnNames(property).length; index++) {
+        parameters.add("?");
+      }
+    }
+    return parameters.toString();
+  }
+
+  private boolean isUpdating() {
+    return updated.length > 0 || version >= 0;
+  }
+
+  // value formats the new value of a column, current its value in the existing row
+  private String assignments(String value, String current) {
+    StringJoiner assignments = new StringJoiner(", ");
+    for (int property : updated) {
+      for (String column : persister.getPropertyColumnNames(property)) {
+        assignments.add(column + " = " + String.format(value, column));
+      }
+    }
+    if (version >= 0) {
+      String column = persister.getPropertyColumnNames(version)[0];
+      assignments.add(column + " = " + String.format(current, column) + " + 1");
+    }
+    return assignments.toString();
+  }
+
+  private List<String> keyColumns() {
+    List<String> columns = new ArrayList<>(keys.length);
+    for (int index = 0; index < keys.length; index++) {
+      columns.add(keyColumn(index));
+    }
+    return columns;
+  }
+
+  @FunctionalInterface
+  private interface Binder {
+
+    void bind(PreparedStatement statement, Object[] values, SessionImplementor session)
+        throws SQLException;
+  }
+}
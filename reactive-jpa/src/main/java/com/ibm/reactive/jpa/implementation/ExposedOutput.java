@@ -0,0 +1,20 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Output whose written bytes are read in place, without the copy of {@link #toByteArray()}.
+ */
+class ExposedOutput extends ByteArrayOutputStream {
+
+  // valid up to size()
+  byte[] buffer() {
+    return buf;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.persistence.EntityGraph;
+import javax.persistence.metamodel.EntityType;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+/**
+ * Associations to fetch with streamed entities: single valued ones are joined to the scrolled
+ * query through an entity graph, collections are loaded for a whole window of rows by secondary
+ * queries of at most batchSize entities, since joining them would repeat the rows of the scroll.
+ */
+class FetchPlan<T> {
+
+  static final String FETCH_GRAPH_HINT = "javax.persistence.fetchgraph";
+
+  private final Class<T> type;
+  private final String entityName;
+  private final String idAttribute;
+  private final List<String> joined = new ArrayList<>();
+  private final List<String> collections = new ArrayList<>();
+  private final int batchSize;
+
+  private FetchPlan(Class<T> type, EntityType<T> entity, Set<String> attributes,
+      int batchSize) {
+    this.type = type;
+    this.entityName = entity.getName();
+    this.idAttribute = entity.getId(entity.getIdType().getJavaType()).getName();
+    this.batchSize = batchSize;
+    for (String attribute : attributes) {
+      if (entity.getAttribute(attribute).isCollection()) {
+        collections.add(attribute);
+      } else {
+        joined.add(attribute);
+      }
+    }
+  }
+
+  static <T> FetchPlan<T> resolve(Session session, Class<T> type, String graphName,
+      List<String> attributes, int batchSize) {
+    Set<String> names = new LinkedHashSet<>();
+    if (graphName != null) {
+      // nested subgraphs are not followed, only the attributes of the root entity
+      session.getEntityGraph(graphName).getAttributeNodes()
+          .forEach(node -> names.add(node.getAttributeName()));
+    }
+    if (attributes != null) {
+      names.addAll(attributes);
+    }
+    if (names.isEmpty()) {
+      return null;
+    }
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("fetch batch size must be positive");
+    }
+    return new FetchPlan<>(type, session.getMetamodel().entity(type), names, batchSize);
+  }
+
+  boolean hasCollections() {
+    return !collections.isEmpty();
+  }
+
+  void apply(Session session, Query<T> query) {
+    if (joined.isEmpty()) {
+      return;
+    }
+    EntityGraph<T> graph = session.createEntityGraph(type);
+    graph.addAttributeNodes(joined.toArray(new String[0]));
+    query.setHint(FETCH_GRAPH_HINT, graph);
+  }
+
+  /**
+   * Initializes the collections of the window entities, which must be managed by the session.
+   */
+  void load(Session session, List<T> window) {
+    if (window.isEmpty()) {
+      return;
+    }
+    List<Object> ids = new ArrayList<>(window.size());
+    window.forEach(entity -> ids.add(session.getIdentifier(entity)));
+    for (String collection : collections) {
+      String query = "select distinct root from " + entityName + " root left join fetch root."
+          + collection + " where root." + idAttribute + " in (:ids)";
+      for (int from = 0; from < ids.size(); from += batchSize) {
+        session.createQuery(query, type)
+            .setParameterList("ids", ids.subList(from, Math.min(ids.size(), from + batchSize)))
+            .getResultList();
+      }
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.IsolationLevel;
+import com.ibm.reactive.jpa.RowMapper;
+import com.ibm.reactive.jpa.SlowQuery.Kind;
+import com.ibm.reactive.jpa.SlowQueryDetector;
+import com.ibm.reactive.jpa.util.JdbcUtils;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Streams the rows of a native SQL query straight from the JDBC result set, one row per request,
+ * without any Hibernate hydration.
+ *
+ * <p>The executor must run its tasks one at a time, see {@link DefaultStreamExecution}.
+ */
+@Builder
+@Getter
+public class NativeStreamer<T> {
+
+  private static final Logger logger = LoggerFactory.getLogger(NativeStreamer.class);
+
+  @NonNull
+  private final String sql;
+
+  @NonNull
+  private final RowMapper<T> mapper;
+
+  @NonNull
+  private final SessionFactory sessionFactory;
+
+  @NonNull
+  private final Executor executor;
+
+  private List<Object> parameterList;
+
+  private IsolationLevel isolationLevel;
+
+  // session of an outer transaction, it is neither opened nor committed by the streamer
+  private Session sharedSession;
+
+  private SlowQueryDetector slowQueryDetector;
+
+  @Builder.Default
+  private int fetchSize = DefaultStreamer.DEFAULT_FETCH_SIZE;
+
+  @Builder.Default
+  private int maxResults = -1;
+
+  public Flux<T> flux() {
+    return Flux.generate(this::open, this::next, this::release)
+        .subscribeOn(Schedulers.fromExecutor(executor));
+  }
+
+  private CursorState open() throws SQLException {
+    CursorState state = new CursorState(new QueryTimer(slowQueryDetector));
+    try {
+      if (sharedSession != null) {
+        // pending changes of the outer transaction must be visible to the query
+        sharedSession.flush();
+        state.connection = getConnection(sharedSession);
+        state.timer.acquired();
+      } else {
+        state.session = sessionFactory.openStatelessSession();
+        state.connection = getConnection(state.session);
+        state.timer.acquired();
+        startTransaction(state);
+      }
+      state.statement = prepareStatement(state.connection);
+      state.resultSet = state.statement.executeQuery();
+      state.timer.executed();
+      state.timer.open(sql, parameterList, isolationLevel, fetchSize);
+      return state;
+    } catch (SQLException | RuntimeException e) {
+      rollback(state);
+      throw e;
+    }
+  }
+
+  private PreparedStatement prepareStatement(Connection connection) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY);
+    statement.setFetchSize(fetchSize);
+    if (maxResults > 0) {
+      statement.setMaxRows(maxResults);
+    }
+    if (parameterList != null) {
+      for (int position = 0; position < parameterList.size(); position++) {
+        statement.setObject(position + 1, parameterList.get(position));
+      }
+    }
+    return statement;
+  }
+
+  private CursorState next(CursorState state, SynchronousSink<T> sink) {
+    try {
+      if (state.resultSet.next()) {
+        state.timer.row();
+        sink.next(mapper.map(state.resultSet, ++state.rows));
+      } else {
+        finish(state);
+        sink.complete();
+      }
+    } catch (SQLException e) {
+      sink.error(e);
+    }
+    return state;
+  }
+
+  private void finish(CursorState state) throws SQLException {
+    state.closed = true;
+    try {
+      closeCursor(state);
+      if (isTransactional(state)) {
+        state.session.getTransaction().commit();
+        JdbcUtils.resetTransactionValues(state.connection, state.previousLevel);
+      }
+    } catch (SQLException | RuntimeException e) {
+      rollbackTransaction(state);
+      throw e;
+    } finally {
+      closeSession(state);
+      finishTimer(state);
+    }
+  }
+
+  private void release(CursorState state) {
+    if (state.closed) {
+      return;
+    }
+    // cancellation may come from the subscriber thread, the connection is only used by the
+    // executor
+    executor.execute(() -> rollback(state));
+  }
+
+  private void rollback(CursorState state) {
+    state.closed = true;
+    try {
+      closeCursor(state);
+    } catch (SQLException e) {
+      logger.warn("Exception thrown while the result set was closed", e);
+    }
+    rollbackTransaction(state);
+    closeSession(state);
+    finishTimer(state);
+  }
+
+  private void finishTimer(CursorState state) {
+    state.timer.finish(Kind.STREAM, sql, parameterList, isolationLevel, fetchSize);
+  }
+
+  private void startTransaction(CursorState state) throws SQLException {
+    if (isolationLevel != null) {
+      state.previousLevel = JdbcUtils.setIsolationLevel(state.connection, isolationLevel);
+      state.session.getTransaction().begin();
+    }
+  }
+
+  private void rollbackTransaction(CursorState state) {
+    try {
+      if (isTransactional(state) && state.session.getTransaction().isActive()) {
+        state.session.getTransaction().rollback();
+        JdbcUtils.resetTransactionValues(state.connection, state.previousLevel);
+      }
+    } catch (Exception e) {
+      // ignore
+      logger.warn("Exception thrown while rollback was called", e);
+    }
+  }
+
+  private boolean isTransactional(CursorState state) {
+    return isolationLevel != null && state.session != null;
+  }
+
+  private void closeCursor(CursorState state) throws SQLException {
+    try {
+      if (state.resultSet != null) {
+        state.resultSet.close();
+      }
+    } finally {
+      if (state.statement != null) {
+        state.statement.close();
+      }
+    }
+  }
+
+  private void closeSession(CursorState state) {
+    if (state.session != null) {
+      state.session.close();
+    }
+  }
+
+  private Connection getConnection(SharedSessionContract session) {
+    return ((SharedSessionContractImplementor) session).connection();
+  }
+
+  private static class CursorState {
+
+    private final QueryTimer timer;
+    private StatelessSession session;
+    private Connection connection;
+    private IsolationLevel previousLevel;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private long rows;
+    private volatile boolean closed;
+
+    CursorState(QueryTimer timer) {
+      this.timer = timer;
+    }
+  }
+}
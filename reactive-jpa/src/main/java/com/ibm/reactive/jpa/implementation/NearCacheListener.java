@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.NearCache;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.bytecode.enhance.spi.interceptor.LazyPropertyInitializer;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.CompositeType;
+import org.hibernate.type.Type;
+
+/**
+ * Fills the {@link NearCache} once the transactions of the session factory are committed, rolled
+ * back writes never reach it. The cache gets a copy of the committed state, the entities it hands
+ * out are built from that state. Entities with associations, collections or a composite identifier
+ * are only invalidated.
+ */
+public class NearCacheListener implements PostCommitInsertEventListener,
+    PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+  @Getter
+  @Setter
+  private volatile NearCache cache;
+  private final Map<String, Boolean> cacheable = new ConcurrentHashMap<>();
+
+  @Override
+  public void onPostInsert(PostInsertEvent event) {
+    put(event.getPersister(), event.getId(), event.getState());
+  }
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    put(event.getPersister(), event.getId(), event.getState());
+  }
+
+  @Override
+  public void onPostDelete(PostDeleteEvent event) {
+    NearCache current = cache;
+    if (current != null && event.getId() != null) {
+      current.invalidate(event.getPersister().getMappedClass(), event.getId());
+    }
+  }
+
+  @Override
+  public void onPostInsertCommitFailed(PostInsertEvent event) {
+    // nothing was cached yet
+  }
+
+  @Override
+  public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    NearCache current = cache;
+    if (current != null && event.getId() != null) {
+      current.invalidate(event.getPersister().getMappedClass(), event.getId());
+    }
+  }
+
+  @Override
+  public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    // nothing was cached
+  }
+
+  @Override
+  public boolean requiresPostCommitHanding(EntityPersister persister) {
+    return true;
+  }
+
+  private void put(EntityPersister persister, Serializable id, Object[] state) {
+    NearCache current = cache;
+    if (current == null || id == null) {
+      return;
+    }
+    // the written instance stays in the hands of the caller, the committed state is copied
+    // instead, unless a lazy attribute was never loaded or the state cannot be detached
+    if (state == null || !cacheable(persister)
+        || Arrays.asList(state).contains(LazyPropertyInitializer.UNFETCHED_PROPERTY)) {
+      current.invalidate(persister.getMappedClass(), id);
+      return;
+    }
+    Object[] committed = copy(persister, state);
+    current.put(persister.getMappedClass(), id, () -> {
+      // no session is needed to build an entity with a simple identifier
+      Object entity = persister.instantiate(id, (SharedSessionContractImplementor) null);
+      persister.setPropertyValues(entity, copy(persister, committed));
+      return entity;
+    });
+  }
+
+  /**
+   * Entities with a composite identifier, or with associations and collections anywhere in their
+   * state, are not cached: {@link Type#deepCopy} keeps those values by reference, so the copies
+   * would share proxies and collections bound to the closed session of the writer.
+   */
+  private boolean cacheable(EntityPersister persister) {
+    return cacheable.computeIfAbsent(persister.getEntityName(),
+        name -> !persister.getIdentifierType().isComponentType()
+            && Arrays.stream(persister.getPropertyTypes()).noneMatch(NearCacheListener::related));
+  }
+
+  private static boolean related(Type type) {
+    if (type.isComponentType()) {
+      return Arrays.stream(((CompositeType) type).getSubtypes())
+          .anyMatch(NearCacheListener::related);
+    }
+    return type.isAssociationType();
+  }
+
+  private static Object[] copy(EntityPersister persister, Object[] state) {
+    Type[] types = persister.getPropertyTypes();
+    Object[] copy = new Object[state.length];
+    for (int index = 0; index < state.length; index++) {
+      copy[index] = types[index].deepCopy(state[index], persister.getFactory());
+    }
+    return copy;
+  }
+}
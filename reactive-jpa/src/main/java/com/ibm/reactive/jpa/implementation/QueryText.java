@@ -0,0 +1,71 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+/**
+ * Finds keywords of a JPQL query outside of parentheses and string literals, so a clause can be
+ * added to or cut from a query without parsing it.
+ */
+public class QueryText {
+
+  private QueryText() {
+  }
+
+  /**
+   * Index of the first top level occurrence of the words, separated by any whitespace, or
+   * {@code -1}.
+   */
+  public static int indexOf(String query, int from, String... words) {
+    int depth = 0;
+    boolean quoted = false;
+    for (int index = from; index < query.length(); index++) {
+      char current = query.charAt(index);
+      if (current == '\'') {
+        quoted = !quoted;
+      } else if (!quoted && current == '(') {
+        depth++;
+      } else if (!quoted && current == ')') {
+        depth--;
+      } else if (!quoted && depth == 0 && matches(query, index, words) >= 0) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Index following the words found at the index, or {@code -1}.
+   */
+  public static int matches(String query, int index, String... words) {
+    if (!isBoundary(query, index - 1)) {
+      return -1;
+    }
+    int position = index;
+    for (int word = 0; word < words.length; word++) {
+      if (word > 0) {
+        int start = position;
+        while (position < query.length() && Character.isWhitespace(query.charAt(position))) {
+          position++;
+        }
+        if (position == start) {
+          return -1;
+        }
+      }
+      if (!query.regionMatches(true, position, words[word], 0, words[word].length())) {
+        return -1;
+      }
+      position += words[word].length();
+    }
+    return isBoundary(query, position) ? position : -1;
+  }
+
+  private static boolean isBoundary(String query, int index) {
+    return index < 0 || index >= query.length()
+        || !Character.isLetterOrDigit(query.charAt(index))
+        && query.charAt(index) != '_' && query.charAt(index) != '.';
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.IsolationLevel;
+import com.ibm.reactive.jpa.SlowQuery;
+import com.ibm.reactive.jpa.SlowQuery.Kind;
+import com.ibm.reactive.jpa.SlowQueryDetector;
+import java.time.Instant;
+
+/**
+ * Timings of one call or stream, only turned into a {@link SlowQuery} when the detector finds it
+ * slow, so the common case costs a few {@link System#nanoTime()} calls.
+ *
+ * <p>Open streams are registered with the detector, whose periodic check reads the timings from
+ * another thread, hence the volatile fields.
+ */
+class QueryTimer {
+
+  private final SlowQueryDetector detector;
+  private final long start;
+  private volatile long acquired = -1;
+  private volatile long executed = -1;
+  private volatile long firstRow = -1;
+  private volatile long rows;
+  private boolean registered;
+  private boolean finished;
+
+  QueryTimer(SlowQueryDetector detector) {
+    this.detector = detector;
+    this.start = detector == null ? 0 : System.nanoTime();
+  }
+
+  boolean isEnabled() {
+    return detector != null;
+  }
+
+  void acquired() {
+    if (detector != null) {
+      acquired = System.nanoTime() - start;
+    }
+  }
+
+  void executed() {
+    if (detector != null) {
+      executed = System.nanoTime() - start;
+    }
+  }
+
+  void row() {
+    // only the thread of the stream writes the row count
+    if (detector != null && rows++ == 0) {
+      firstRow = System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Registers the stream with the detector, which reports it as soon as it turns slow rather than
+   * when it closes.
+   */
+  void open(String query, Object parameters, IsolationLevel isolationLevel, int fetchSize) {
+    if (detector == null || registered) {
+      return;
+    }
+    registered = true;
+    detector.opened(this, () -> snapshot(Kind.STREAM, query, parameters, isolationLevel,
+        fetchSize, System.nanoTime() - start));
+  }
+
+  void finish(Kind kind, String query, Object parameters, IsolationLevel isolationLevel,
+      int fetchSize) {
+    if (detector == null || finished) {
+      return;
+    }
+    finished = true;
+    long total = System.nanoTime() - start;
+    // a stream already reported while it was open is not reported twice
+    if (registered && !detector.closed(this)) {
+      return;
+    }
+    if (detector.isSlow(kind, total, rows)) {
+      detector.report(snapshot(kind, query, parameters, isolationLevel, fetchSize, total));
+    }
+  }
+
+  private SlowQuery snapshot(Kind kind, String query, Object parameters,
+      IsolationLevel isolationLevel, int fetchSize, long total) {
+    return new SlowQuery(kind, query, detector.describe(parameters), isolationLevel, fetchSize,
+        Instant.now().minusNanos(total), acquired, executed, firstRow, total, rows);
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.RowCodec;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import lombok.NonNull;
+import reactor.core.publisher.Flux;
+
+/**
+ * Encodes the rows of a flux into buffers. Each subscription reuses one growing array, so a row
+ * costs a single allocation of its encoded size.
+ */
+public class RowEncoder<T> {
+
+  private final RowCodec<T> codec;
+  private final ExposedOutput encoded = new ExposedOutput();
+  private final DataOutputStream output = new DataOutputStream(encoded);
+
+  private RowEncoder(RowCodec<T> codec) {
+    this.codec = codec;
+  }
+
+  public static <T> Flux<ByteBuffer> encode(@NonNull Flux<T> source,
+      @NonNull RowCodec<T> codec) {
+    return Flux.defer(() -> {
+      RowEncoder<T> encoder = new RowEncoder<>(codec);
+      return source.map(encoder::encode);
+    });
+  }
+
+  private ByteBuffer encode(T row) {
+    encoded.reset();
+    try {
+      codec.encode(row, output);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return ByteBuffer.wrap(Arrays.copyOf(encoded.buffer(), encoded.size()));
+  }
+}
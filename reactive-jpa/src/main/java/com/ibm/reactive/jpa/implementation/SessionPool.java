@@ -0,0 +1,154 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.persistence.EntityManager;
+import lombok.NonNull;
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one cleared session per worker thread, so short calls skip building a session. A
+ * released session is only kept when it can be reset: its transaction is over, and the entity
+ * manager properties are unchanged. It is cleared, its flush mode, cache mode, read-only default
+ * and filters are reset, and its JDBC connection is returned to the pool.
+ *
+ * <p>The idle sessions are tracked so {@link #close} closes them whatever thread they are kept
+ * for, a session is taken out of that set by the thread reusing it or by the close, never both.
+ */
+public class SessionPool {
+
+  private static final Logger logger = LoggerFactory.getLogger(SessionPool.class);
+
+  private final SessionFactory sessionFactory;
+  private final ThreadLocal<Session> idle = new ThreadLocal<>();
+  private final Set<Session> parked = ConcurrentHashMap.newKeySet();
+  private final LongAdder created = new LongAdder();
+  private final LongAdder reused = new LongAdder();
+  private final LongAdder discarded = new LongAdder();
+  // state of a new session, a session whose properties were changed is not kept
+  private volatile Map<String, Object> properties;
+  private volatile FlushMode flushMode;
+  private volatile CacheMode cacheMode;
+  private volatile boolean closed;
+
+  public SessionPool(@NonNull SessionFactory sessionFactory) {
+    this.sessionFactory = sessionFactory;
+  }
+
+  public EntityManager acquire() {
+    Session session = idle.get();
+    if (session != null) {
+      idle.remove();
+      // the session was closed with the pool when it is no longer parked
+      if (parked.remove(session) && session.isOpen()) {
+        reused.increment();
+        return session;
+      }
+    }
+    created.increment();
+    session = sessionFactory.createEntityManager().unwrap(Session.class);
+    if (properties == null) {
+      flushMode = session.getHibernateFlushMode();
+      cacheMode = session.getCacheMode();
+      properties = new HashMap<>(session.getProperties());
+    }
+    return session;
+  }
+
+  /**
+   * Keeps the session for the next call of the thread, or closes it.
+   */
+  public void release(@NonNull EntityManager entityManager) {
+    Session session = entityManager.unwrap(Session.class);
+    if (closed || idle.get() != null || !reset(session)) {
+      discarded.increment();
+      close(session);
+      return;
+    }
+    idle.set(session);
+    parked.add(session);
+    if (closed && parked.remove(session)) {
+      // the pool was closed meanwhile
+      idle.remove();
+      close(session);
+    }
+  }
+
+  /**
+   * Closes the idle sessions, the sessions released afterwards are closed too.
+   */
+  public void close() {
+    closed = true;
+    for (Session session : parked) {
+      if (parked.remove(session)) {
+        close(session);
+      }
+    }
+  }
+
+  public int getIdle() {
+    return parked.size();
+  }
+
+  public long getCreated() {
+    return created.sum();
+  }
+
+  public long getReused() {
+    return reused.sum();
+  }
+
+  public long getDiscarded() {
+    return discarded.sum();
+  }
+
+  private boolean reset(Session session) {
+    if (!session.isOpen() || session.getTransaction().isActive()
+        || !session.getProperties().equals(properties)) {
+      return false;
+    }
+    try {
+      session.clear();
+      session.setHibernateFlushMode(flushMode);
+      session.setCacheMode(cacheMode);
+      session.setDefaultReadOnly(false);
+      SessionImplementor implementor = (SessionImplementor) session;
+      for (String filter : implementor.getLoadQueryInfluencers().getEnabledFilterNames()) {
+        session.disableFilter(filter);
+      }
+      if (implementor.getJdbcCoordinator().getLogicalConnection().isPhysicallyConnected()) {
+        // the connection goes back to the pool, the next call acquires one
+        session.disconnect();
+      }
+      return true;
+    } catch (RuntimeException e) {
+      logger.warn("Session cannot be reset, it is closed", e);
+      return false;
+    }
+  }
+
+  private static void close(Session session) {
+    try {
+      if (session.isOpen()) {
+        session.close();
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Exception thrown while closing a session", e);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.util.context.Context;
+
+/**
+ * Merges publishers sorted by the same comparator into one sorted flux, k-way: the smallest head
+ * is emitted once every source still running has a head. Sources are subscribed at the same time
+ * and read ahead by {@code prefetch} elements at most, equal elements keep the source order.
+ */
+public class SortedMerge {
+
+  private SortedMerge() {
+  }
+
+  public static <T> Flux<T> merge(@NonNull List<? extends Publisher<? extends T>> sources,
+      @NonNull Comparator<? super T> comparator, int prefetch) {
+    if (prefetch <= 0) {
+      throw new IllegalArgumentException("prefetch must be positive");
+    }
+    return Flux.create(sink -> {
+      Merge<T> merge = new Merge<>(sink, comparator, sources.size(), prefetch);
+      sink.onRequest(requested -> merge.drain());
+      sink.onDispose(merge::cancel);
+      for (int index = 0; index < sources.size(); index++) {
+        sources.get(index).subscribe(merge.sources.get(index));
+      }
+      merge.drain();
+    });
+  }
+
+  private static class Merge<T> {
+
+    private final FluxSink<T> sink;
+    private final Comparator<? super T> comparator;
+    private final List<Source<T>> sources;
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    Merge(FluxSink<T> sink, Comparator<? super T> comparator, int count, int prefetch) {
+      this.sink = sink;
+      this.comparator = comparator;
+      this.sources = new ArrayList<>(count);
+      for (int index = 0; index < count; index++) {
+        sources.add(new Source<>(this, prefetch));
+      }
+    }
+
+    void drain() {
+      if (wip.getAndIncrement() != 0) {
+        return;
+      }
+      int missed = 1;
+      do {
+        if (!drainLoop()) {
+          return;
+        }
+        missed = wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    // false once the sink is terminated
+    private boolean drainLoop() {
+      while (!cancelled) {
+        if (error != null) {
+          cancel();
+          sink.error(error);
+          return false;
+        }
+        Source<T> smallest = null;
+        T smallestHead = null;
+        for (Source<T> source : sources) {
+          // done is read before the queue, an empty queue of a done source is final
+          boolean done = source.done;
+          T head = source.queue.peek();
+          if (head == null) {
+            if (!done) {
+              return true;
+            }
+            continue;
+          }
+          if (smallest == null || comparator.compare(head, smallestHead) < 0) {
+            smallest = source;
+            smallestHead = head;
+          }
+        }
+        if (smallest == null) {
+          sink.complete();
+          return false;
+        }
+        if (sink.requestedFromDownstream() == 0) {
+          return true;
+        }
+        sink.next(smallest.queue.poll());
+        smallest.consumed();
+      }
+      return false;
+    }
+
+    void cancel() {
+      cancelled = true;
+      sources.forEach(Source::dispose);
+    }
+  }
+
+  private static class Source<T> extends BaseSubscriber<T> {
+
+    private final Merge<T> merge;
+    private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+    private final int prefetch;
+    private final int replenish;
+    private int consumed;
+    private volatile boolean done;
+
+    Source(Merge<T> merge, int prefetch) {
+      this.merge = merge;
+      this.prefetch = prefetch;
+      this.replenish = Math.max(1, prefetch - (prefetch >> 2));
+    }
+
+    // the sources see the context of the merged subscriber, e.g. its transaction or tenant
+    @Override
+    public Context currentContext() {
+      return merge.sink.currentContext();
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+      request(prefetch);
+    }
+
+    @Override
+    protected void hookOnNext(T value) {
+      queue.offer(value);
+      merge.drain();
+    }
+
+    @Override
+    protected void hookOnComplete() {
+      done = true;
+      merge.drain();
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+      merge.error = throwable;
+      done = true;
+      merge.drain();
+    }
+
+    // only called by the drain loop
+    void consumed() {
+      if (++consumed == replenish) {
+        consumed = 0;
+        request(replenish);
+      }
+    }
+  }
+}
@@ -0,0 +1,356 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.RowCodec;
+import com.ibm.reactive.jpa.SpillOptions;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler.Worker;
+
+/**
+ * Drains the source as fast as it emits into a temporary file of encoded rows, and replays them
+ * as the subscriber requests. The source, and the connection behind it, is released as soon as
+ * its last row is written instead of waiting for a slow subscriber.
+ *
+ * <p>Rows are written through a direct buffer, flushed when it is full, when the subscriber
+ * waits for rows and when the source completes. The writer only signals new rows, they are read
+ * back and emitted on a worker of {@link SpillOptions#getScheduler()}. The source is subscribed
+ * with the context of the subscriber. The file is deleted on completion, error or cancel.
+ */
+public class SpillBuffer {
+
+  private static final Logger logger = LoggerFactory.getLogger(SpillBuffer.class);
+  private static final int HEADER_SIZE = Integer.BYTES;
+
+  private SpillBuffer() {
+  }
+
+  public static <T> Flux<T> spill(@NonNull Flux<T> source, @NonNull RowCodec<T> codec,
+      @NonNull SpillOptions options) {
+    return Flux.create(sink -> {
+      Spill<T> spill;
+      try {
+        spill = new Spill<>(codec, options, sink);
+      } catch (IOException e) {
+        sink.error(e);
+        return;
+      }
+      sink.onRequest(requested -> spill.signal());
+      sink.onDispose(spill::cancel);
+      spill.upstream = source
+          .subscriberContext(sink.currentContext())
+          .subscribe(spill::write, spill::fail, spill::complete);
+    });
+  }
+
+  private static class Spill<T> {
+
+    private final RowCodec<T> codec;
+    private final FluxSink<T> sink;
+    private final long limit;
+    private final Path path;
+    private final FileChannel channel;
+    private final Object lock = new Object();
+    private final ExposedOutput encoded = new ExposedOutput();
+    private final DataOutputStream output = new DataOutputStream(encoded);
+    private final ByteBuffer writeBuffer;
+    private final AtomicInteger wip = new AtomicInteger();
+    private final Worker worker;
+    private ByteBuffer readBuffer;
+    private long readFilePosition;
+    private long written;
+    private volatile long flushed;
+    private volatile boolean starving;
+    private volatile boolean done;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+    private volatile Disposable upstream;
+    private boolean closed;
+
+    Spill(RowCodec<T> codec, SpillOptions options, FluxSink<T> sink) throws IOException {
+      this.codec = codec;
+      this.sink = sink;
+      this.limit = options.getLimit();
+      // rows are only copied to the file, they do not need to live on the heap
+      this.writeBuffer = ByteBuffer.allocateDirect(options.getBufferSize());
+      this.readBuffer = ByteBuffer.allocate(options.getBufferSize());
+      this.readBuffer.flip();
+      Path directory = options.getDirectory() != null
+          ? options.getDirectory()
+          : Paths.get(System.getProperty("java.io.tmpdir"));
+      this.path = Files.createTempFile(directory, "reactive-jpa-spill", ".bin");
+      try {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+      } catch (IOException | RuntimeException e) {
+        delete(path, e);
+        throw e;
+      }
+      this.worker = options.getScheduler().createWorker();
+    }
+
+    void write(T row) {
+      synchronized (lock) {
+        if (done || closed) {
+          return;
+        }
+        try {
+          encoded.reset();
+          codec.encode(row, output);
+          int size = encoded.size();
+          if (written + HEADER_SIZE + size > limit) {
+            throw new IllegalStateException("spill limit of " + limit + " bytes reached");
+          }
+          append(size);
+          if (starving || !writeBuffer.hasRemaining()) {
+            flush();
+          }
+        } catch (IOException | RuntimeException e) {
+          flushBeforeError(e);
+          terminate(e);
+          dispose();
+        }
+      }
+      signal();
+    }
+
+    void complete() {
+      synchronized (lock) {
+        if (done || closed) {
+          return;
+        }
+        try {
+          flush();
+          done = true;
+        } catch (IOException e) {
+          terminate(e);
+        }
+      }
+      signal();
+    }
+
+    void fail(Throwable throwable) {
+      synchronized (lock) {
+        if (done || closed) {
+          return;
+        }
+        flushBeforeError(throwable);
+        terminate(throwable);
+      }
+      signal();
+    }
+
+    void cancel() {
+      cancelled = true;
+      dispose();
+      close();
+      worker.dispose();
+    }
+
+    // schedules a drain unless one is already running, which then loops once more
+    void signal() {
+      if (wip.getAndIncrement() != 0) {
+        return;
+      }
+      try {
+        worker.schedule(this::drain);
+      } catch (RejectedExecutionException e) {
+        if (!cancelled) {
+          dispose();
+          close();
+          sink.error(e);
+        }
+      }
+    }
+
+    private void drain() {
+      int missed = 1;
+      do {
+        if (!drainLoop()) {
+          return;
+        }
+        missed = wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    // false once the sink is terminated
+    private boolean drainLoop() {
+      while (!cancelled) {
+        boolean finished = done;
+        long available = flushed;
+        if (readPosition() == available) {
+          if (finished) {
+            close();
+            if (error != null) {
+              sink.error(error);
+            } else {
+              sink.complete();
+            }
+            worker.dispose();
+            return false;
+          }
+          starving = sink.requestedFromDownstream() > 0;
+          // the writer may have flushed before it saw the flag
+          if (!starving || flushed == available) {
+            return true;
+          }
+          continue;
+        }
+        if (sink.requestedFromDownstream() == 0) {
+          return true;
+        }
+        starving = false;
+        T row;
+        try {
+          row = read(available);
+        } catch (IOException | RuntimeException e) {
+          dispose();
+          close();
+          sink.error(e);
+          worker.dispose();
+          return false;
+        }
+        sink.next(row);
+      }
+      return false;
+    }
+
+    private long readPosition() {
+      return readFilePosition - readBuffer.remaining();
+    }
+
+    private T read(long available) throws IOException {
+      fill(HEADER_SIZE, available);
+      int size = readBuffer.getInt();
+      fill(size, available);
+      int position = readBuffer.position();
+      T row = codec.decode(new DataInputStream(new ByteArrayInputStream(readBuffer.array(),
+          readBuffer.arrayOffset() + position, size)));
+      readBuffer.position(position + size);
+      return row;
+    }
+
+    private void fill(int needed, long available) throws IOException {
+      if (readBuffer.remaining() >= needed) {
+        return;
+      }
+      if (readBuffer.capacity() < needed) {
+        ByteBuffer larger = ByteBuffer.allocate(needed);
+        larger.put(readBuffer);
+        readBuffer = larger;
+      } else {
+        readBuffer.compact();
+      }
+      while (readBuffer.position() < needed) {
+        int max = (int) Math.min(readBuffer.remaining(), available - readFilePosition);
+        if (max <= 0) {
+          throw new EOFException("spill file " + path + " is truncated");
+        }
+        ByteBuffer window = readBuffer.duplicate();
+        window.limit(window.position() + max);
+        int read = channel.read(window, readFilePosition);
+        if (read < 0) {
+          throw new EOFException("spill file " + path + " is truncated");
+        }
+        readBuffer.position(readBuffer.position() + read);
+        readFilePosition += read;
+      }
+      readBuffer.flip();
+    }
+
+    private void append(int size) throws IOException {
+      if (writeBuffer.remaining() < HEADER_SIZE + size) {
+        flush();
+      }
+      if (writeBuffer.remaining() < HEADER_SIZE + size) {
+        // larger than the buffer, written as it is
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + size);
+        record.putInt(size).put(encoded.buffer(), 0, size).flip();
+        writeFully(record);
+      } else {
+        writeBuffer.putInt(size).put(encoded.buffer(), 0, size);
+      }
+      written += HEADER_SIZE + size;
+    }
+
+    private void flush() throws IOException {
+      writeBuffer.flip();
+      writeFully(writeBuffer);
+      writeBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+      long position = flushed;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      flushed = position;
+    }
+
+    private void flushBeforeError(Throwable throwable) {
+      try {
+        // the rows written before the error are still replayed
+        flush();
+      } catch (IOException e) {
+        throwable.addSuppressed(e);
+      }
+    }
+
+    private void terminate(Throwable throwable) {
+      error = throwable;
+      done = true;
+    }
+
+    private void dispose() {
+      Disposable subscription = upstream;
+      if (subscription != null) {
+        subscription.dispose();
+      }
+    }
+
+    private void close() {
+      synchronized (lock) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        try {
+          channel.close();
+          Files.deleteIfExists(path);
+        } catch (IOException e) {
+          logger.warn("Exception thrown while the spill file was deleted", e);
+        }
+      }
+    }
+
+    private static void delete(Path path, Exception cause) {
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException e) {
+        cause.addSuppressed(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary form of a basic attribute value, values of object types are preceded by a presence
+ * flag so {@code null} round trips.
+ */
+public interface ValueCodec {
+
+  void write(DataOutput output, Object value) throws IOException;
+
+  Object read(DataInput input) throws IOException;
+
+  /**
+   * Codec of the type, {@code null} when the type is not supported.
+   */
+  static ValueCodec forType(Class<?> type) {
+    if (type.isEnum()) {
+      return nullable(new ValueCodecs.EnumCodec(type));
+    }
+    return ValueCodecs.CODECS.get(type);
+  }
+
+  static ValueCodec nullable(ValueCodec codec) {
+    return new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+          codec.write(output, value);
+        }
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return input.readBoolean() ? codec.read(input) : null;
+      }
+    };
+  }
+}
@@ -0,0 +1,310 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Codecs of the supported basic types, looked up through {@link ValueCodec#forType(Class)}.
+ */
+final class ValueCodecs {
+
+  static final Map<Class<?>, ValueCodec> CODECS = new HashMap<>();
+
+  static {
+    register(long.class, Long.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeLong((Long) value);
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return input.readLong();
+      }
+    });
+    register(int.class, Integer.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeInt((Integer) value);
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return input.readInt();
+      }
+    });
+    register(short.class, Short.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeShort((Short) value);
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return input.readShort();
+      }
+    });
+    register(byte.class, Byte.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeByte((Byte) value);
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return input.readByte();
+      }
+    });
+    register(boolean.class, Boolean.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeBoolean((Boolean) value);
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return input.readBoolean();
+      }
+    });
+    register(char.class, Character.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeChar((Character) value);
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return input.readChar();
+      }
+    });
+    register(double.class, Double.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeDouble((Double) value);
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return input.readDouble();
+      }
+    });
+    register(float.class, Float.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeFloat((Float) value);
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return input.readFloat();
+      }
+    });
+    register(String.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        // writeUTF is limited to 64KB, long texts are common in entities
+        writeBytes(output, ((String) value).getBytes(StandardCharsets.UTF_8));
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return new String(readBytes(input), StandardCharsets.UTF_8);
+      }
+    });
+    register(byte[].class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        writeBytes(output, (byte[]) value);
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return readBytes(input);
+      }
+    });
+    register(BigInteger.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        writeBytes(output, ((BigInteger) value).toByteArray());
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return new BigInteger(readBytes(input));
+      }
+    });
+    register(BigDecimal.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        BigDecimal decimal = (BigDecimal) value;
+        output.writeInt(decimal.scale());
+        writeBytes(output, decimal.unscaledValue().toByteArray());
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        int scale = input.readInt();
+        return new BigDecimal(new BigInteger(readBytes(input)), scale);
+      }
+    });
+    register(UUID.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeLong(((UUID) value).getMostSignificantBits());
+        output.writeLong(((UUID) value).getLeastSignificantBits());
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return new UUID(input.readLong(), input.readLong());
+      }
+    });
+    register(Date.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeLong(((Date) value).getTime());
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return new Date(input.readLong());
+      }
+    });
+    register(java.sql.Date.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeLong(((Date) value).getTime());
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return new java.sql.Date(input.readLong());
+      }
+    });
+    register(Timestamp.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        Timestamp timestamp = (Timestamp) value;
+        output.writeLong(timestamp.getTime());
+        output.writeInt(timestamp.getNanos());
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        Timestamp timestamp = new Timestamp(input.readLong());
+        timestamp.setNanos(input.readInt());
+        return timestamp;
+      }
+    });
+    register(Instant.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeLong(((Instant) value).getEpochSecond());
+        output.writeInt(((Instant) value).getNano());
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return Instant.ofEpochSecond(input.readLong(), input.readInt());
+      }
+    });
+    register(LocalDate.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeLong(((LocalDate) value).toEpochDay());
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return LocalDate.ofEpochDay(input.readLong());
+      }
+    });
+    register(LocalTime.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        output.writeLong(((LocalTime) value).toNanoOfDay());
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return LocalTime.ofNanoOfDay(input.readLong());
+      }
+    });
+    register(LocalDateTime.class, new ValueCodec() {
+      @Override
+      public void write(DataOutput output, Object value) throws IOException {
+        LocalDateTime dateTime = (LocalDateTime) value;
+        output.writeLong(dateTime.toLocalDate().toEpochDay());
+        output.writeLong(dateTime.toLocalTime().toNanoOfDay());
+      }
+
+      @Override
+      public Object read(DataInput input) throws IOException {
+        return LocalDateTime.of(LocalDate.ofEpochDay(input.readLong()),
+            LocalTime.ofNanoOfDay(input.readLong()));
+      }
+    });
+  }
+
+  private ValueCodecs() {
+  }
+
+  private static void register(Class<?> primitive, Class<?> wrapper, ValueCodec codec) {
+    // primitive attributes are never null, they skip the presence flag
+    CODECS.put(primitive, codec);
+    CODECS.put(wrapper, ValueCodec.nullable(codec));
+  }
+
+  private static void register(Class<?> type, ValueCodec codec) {
+    CODECS.put(type, ValueCodec.nullable(codec));
+  }
+
+  private static void writeBytes(DataOutput output, byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  static final class EnumCodec implements ValueCodec {
+
+    private final Object[] constants;
+
+    EnumCodec(Class<?> type) {
+      this.constants = type.getEnumConstants();
+    }
+
+    @Override
+    public void write(DataOutput output, Object value) throws IOException {
+      output.writeInt(((Enum<?>) value).ordinal());
+    }
+
+    @Override
+    public Object read(DataInput input) throws IOException {
+      return constants[input.readInt()];
+    }
+  }
+}
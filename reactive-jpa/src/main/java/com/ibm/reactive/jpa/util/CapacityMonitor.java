@@ -0,0 +1,64 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CapacityMonitor {
+
+  public static final long DEFAULT_INTERVAL = 30_000;
+
+  private static final Logger logger = LoggerFactory.getLogger(CapacityMonitor.class);
+  private static final ScheduledExecutorService scheduler = Executors
+      .newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "reactive-jpa-capacity");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private CapacityMonitor() {
+  }
+
+  public static ScheduledFuture<?> watch(@NonNull Runnable check, long intervalMillis) {
+    return scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        check.run();
+      } catch (RuntimeException e) {
+        // a failing check must not cancel the next ones
+        logger.warn("Exception thrown while the pool capacity was checked", e);
+      }
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Checks the target until the returned future is cancelled or the target is garbage
+   * collected, the check must not hold the target itself.
+   */
+  public static <T> ScheduledFuture<?> watch(@NonNull T target, @NonNull Consumer<T> check,
+      long intervalMillis) {
+    WeakReference<T> reference = new WeakReference<>(target);
+    AtomicReference<ScheduledFuture<?>> future = new AtomicReference<>();
+    future.set(watch(() -> {
+      T current = reference.get();
+      if (current != null) {
+        check.accept(current);
+      } else if (future.get() != null) {
+        future.get().cancel(false);
+      }
+    }, intervalMillis));
+    return future.get();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import lombok.Getter;
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Limits the publishers subscribed at the same time: a publisher past the limit is subscribed
+ * when a running one terminates or is cancelled, in arrival order. No thread waits meanwhile.
+ */
+public class ConcurrencyLimiter {
+
+  @Getter
+  private final int limit;
+  private final Queue<Waiter> waiting = new ArrayDeque<>();
+  private int active;
+
+  public ConcurrencyLimiter(int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("limit must be positive");
+    }
+    this.limit = limit;
+  }
+
+  public synchronized int getActive() {
+    return active;
+  }
+
+  public synchronized int getWaiting() {
+    return waiting.size();
+  }
+
+  public <T> Flux<T> limit(@NonNull Publisher<T> source) {
+    return Flux.defer(() -> {
+      Waiter waiter = new Waiter();
+      return Mono.<Waiter>create(sink -> acquire(waiter, sink))
+          .flatMapMany(granted -> start(granted)
+              ? Flux.from(source).doFinally(signal -> release())
+              : Flux.<T>empty());
+    });
+  }
+
+  private void acquire(Waiter waiter, MonoSink<Waiter> sink) {
+    sink.onCancel(() -> cancel(waiter));
+    synchronized (this) {
+      waiter.sink = sink;
+      if (active >= limit) {
+        waiting.offer(waiter);
+        return;
+      }
+      active++;
+      waiter.granted = true;
+    }
+    sink.success(waiter);
+  }
+
+  private synchronized boolean start(Waiter waiter) {
+    if (waiter.cancelled) {
+      return false;
+    }
+    waiter.started = true;
+    return true;
+  }
+
+  private void cancel(Waiter waiter) {
+    boolean release;
+    synchronized (this) {
+      if (waiter.started || waiter.cancelled) {
+        return;
+      }
+      waiter.cancelled = true;
+      // a permit granted to a waiter cancelled before it started is given back
+      release = waiter.granted;
+      if (!release) {
+        waiting.remove(waiter);
+      }
+    }
+    if (release) {
+      release();
+    }
+  }
+
+  private void release() {
+    Waiter next;
+    synchronized (this) {
+      next = waiting.poll();
+      if (next == null) {
+        active--;
+        return;
+      }
+      next.granted = true;
+    }
+    // the permit goes to the next waiter, its publisher is not subscribed under the lock
+    next.sink.success(next);
+  }
+
+  private static class Waiter {
+
+    private MonoSink<Waiter> sink;
+    private boolean granted;
+    private boolean started;
+    private boolean cancelled;
+  }
+}
@@ -0,0 +1,457 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Worker threads shared by several lanes, served in weighted round robin: a lane runs up to its
+ * weight tasks in a row before the next lane with queued tasks gets the next worker, and never
+ * more than its quota of tasks at the same time.
+ *
+ * <p>The workers can also be the threads of a delegate executor, then at most {@code slots}
+ * tasks are handed to it at the same time. A task may keep its slot for a task it resumes, see
+ * {@link Lane#resume(Runnable)}.
+ */
+public class FairExecutor implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(FairExecutor.class);
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private final List<Lane> lanes = new ArrayList<>();
+  private final List<Thread> workers;
+  // null when the executor runs its own workers
+  private final Executor delegate;
+  private int slots;
+  // slots taken by running tasks and by resumed tasks waiting for a worker
+  private int occupied;
+  private int cursor;
+  private boolean closed;
+
+  public FairExecutor(int workers, @NonNull String name) {
+    if (workers <= 0) {
+      throw new IllegalArgumentException("workers must be positive");
+    }
+    List<Thread> threads = new ArrayList<>(workers);
+    for (int index = 0; index < workers; index++) {
+      Thread thread = new Thread(this::work, name + "-" + index);
+      thread.setDaemon(true);
+      threads.add(thread);
+    }
+    this.workers = Collections.unmodifiableList(threads);
+    this.delegate = null;
+    this.slots = workers;
+    this.workers.forEach(Thread::start);
+  }
+
+  public FairExecutor(@NonNull Executor delegate, int slots) {
+    if (slots <= 0) {
+      throw new IllegalArgumentException("slots must be positive");
+    }
+    this.workers = Collections.emptyList();
+    this.delegate = delegate;
+    this.slots = slots;
+  }
+
+  public int getWorkers() {
+    return workers.size();
+  }
+
+  public int getSlots() {
+    lock.lock();
+    try {
+      return slots;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Changes the tasks handed to the delegate at the same time, running tasks above a lower
+   * value are not interrupted.
+   */
+  public void setSlots(int slots) {
+    if (slots <= 0) {
+      throw new IllegalArgumentException("slots must be positive");
+    }
+    if (delegate == null) {
+      throw new IllegalStateException("the workers of the executor can not be resized");
+    }
+    lock.lock();
+    try {
+      this.slots = slots;
+    } finally {
+      lock.unlock();
+    }
+    dispatch();
+  }
+
+  public Lane lane(@NonNull String name, int weight, int quota) {
+    if (weight <= 0 || quota <= 0) {
+      throw new IllegalArgumentException("weight and quota must be positive");
+    }
+    lock.lock();
+    try {
+      if (closed) {
+        throw new RejectedExecutionException("executor closed");
+      }
+      Lane lane = new Lane(name, weight, quota);
+      lanes.add(lane);
+      return lane;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public List<LaneMetrics> metrics() {
+    lock.lock();
+    try {
+      List<LaneMetrics> metrics = new ArrayList<>(lanes.size());
+      lanes.forEach(lane -> metrics.add(lane.snapshot()));
+      return metrics;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void work() {
+    while (true) {
+      QueuedTask task;
+      lock.lock();
+      try {
+        while ((task = next()) == null) {
+          if (closed) {
+            return;
+          }
+          available.awaitUninterruptibly();
+        }
+      } finally {
+        lock.unlock();
+      }
+      run(task);
+    }
+  }
+
+  private void run(QueuedTask task) {
+    Lane lane = task.lane;
+    try {
+      task.runnable.run();
+    } catch (RuntimeException e) {
+      logger.warn("Exception thrown by a task of the lane " + lane.name, e);
+    } finally {
+      complete(lane);
+    }
+  }
+
+  // hands the tasks that can start to the delegate, the executor may run them on this thread
+  private void dispatch() {
+    if (delegate == null) {
+      return;
+    }
+    List<QueuedTask> ready = new ArrayList<>();
+    lock.lock();
+    try {
+      QueuedTask task;
+      while ((task = next()) != null) {
+        ready.add(task);
+      }
+    } finally {
+      lock.unlock();
+    }
+    for (QueuedTask task : ready) {
+      try {
+        delegate.execute(() -> run(task));
+      } catch (RejectedExecutionException e) {
+        logger.warn("Task of the lane " + task.lane.name + " rejected by the delegate", e);
+        complete(task.lane);
+      }
+    }
+  }
+
+  private QueuedTask next() {
+    for (Lane lane : lanes) {
+      QueuedTask task = lane.resumed.poll();
+      if (task != null) {
+        // the slot was kept for it by the task that resumed it
+        lane.held--;
+        return lane.start(task);
+      }
+    }
+    if (occupied >= slots) {
+      return null;
+    }
+    Lane lane = pick();
+    if (lane == null) {
+      return null;
+    }
+    occupied++;
+    return lane.start(lane.tasks.poll());
+  }
+
+  private void complete(Lane lane) {
+    lock.lock();
+    try {
+      lane.running--;
+      lane.completed++;
+      occupied--;
+      if (lane.shutdown && lane.isIdle()) {
+        remove(lane);
+      }
+      // the lane may have been at its quota, a waiting worker can take it now
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+    dispatch();
+  }
+
+  private void remove(Lane lane) {
+    lanes.remove(lane);
+    cursor = lanes.isEmpty() ? 0 : cursor % lanes.size();
+  }
+
+  private Lane pick() {
+    if (lanes.isEmpty()) {
+      return null;
+    }
+    // one more step than lanes so the starting lane is visited again with its credits refilled
+    for (int step = 0; step <= lanes.size(); step++) {
+      Lane lane = lanes.get(cursor);
+      if (lane.isRunnable() && lane.credits > 0) {
+        lane.credits--;
+        return lane;
+      }
+      lane.credits = lane.weight;
+      cursor = (cursor + 1) % lanes.size();
+    }
+    return null;
+  }
+
+  @Value
+  public static class LaneMetrics {
+
+    private String name;
+    private int weight;
+    private int quota;
+    private int queued;
+    private int running;
+    private long submitted;
+    private long completed;
+    private long waitNanos;
+  }
+
+  public class Lane extends AbstractExecutorService {
+
+    private final Queue<QueuedTask> tasks = new ArrayDeque<>();
+    private final Queue<QueuedTask> resumed = new ArrayDeque<>();
+    @Getter
+    private final String name;
+    @Getter
+    private final int weight;
+    private int quota;
+    private int credits;
+    private int running;
+    // slots kept for resumed tasks
+    private int held;
+    private long submitted;
+    private long completed;
+    private long waitNanos;
+    private boolean shutdown;
+
+    private Lane(String name, int weight, int quota) {
+      this.name = name;
+      this.weight = weight;
+      this.quota = quota;
+      this.credits = weight;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+      lock.lock();
+      try {
+        if (shutdown || closed) {
+          throw new RejectedExecutionException("lane " + name + " is shut down");
+        }
+        tasks.offer(new QueuedTask(command, System.nanoTime(), this));
+        submitted++;
+        available.signal();
+      } finally {
+        lock.unlock();
+      }
+      dispatch();
+    }
+
+    /**
+     * Queues a task that takes over the slot of the running task calling it, ahead of the tasks
+     * waiting for a slot. Work holding a resource between its tasks, like a stream reading a
+     * page of rows per task, then keeps counting against the quota while it waits.
+     */
+    public void resume(@NonNull Runnable command) {
+      lock.lock();
+      try {
+        if (closed) {
+          throw new RejectedExecutionException("lane " + name + " is shut down");
+        }
+        resumed.offer(new QueuedTask(command, System.nanoTime(), this));
+        // the calling task gives its slot back when it completes
+        held++;
+        occupied++;
+        submitted++;
+        available.signal();
+      } finally {
+        lock.unlock();
+      }
+      dispatch();
+    }
+
+    @Override
+    public void shutdown() {
+      lock.lock();
+      try {
+        shutdown = true;
+        if (isIdle()) {
+          remove(this);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      lock.lock();
+      try {
+        List<Runnable> pending = new ArrayList<>(tasks.size());
+        tasks.forEach(task -> pending.add(task.runnable));
+        tasks.clear();
+        shutdown();
+        return pending;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public boolean isShutdown() {
+      lock.lock();
+      try {
+        return shutdown;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public boolean isTerminated() {
+      lock.lock();
+      try {
+        return shutdown && isIdle();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit)
+        throws InterruptedException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      while (!isTerminated()) {
+        if (System.nanoTime() >= deadline) {
+          return false;
+        }
+        TimeUnit.MILLISECONDS.sleep(1);
+      }
+      return true;
+    }
+
+    public int getQuota() {
+      lock.lock();
+      try {
+        return quota;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    public void setQuota(int quota) {
+      if (quota <= 0) {
+        throw new IllegalArgumentException("quota must be positive");
+      }
+      lock.lock();
+      try {
+        this.quota = quota;
+        available.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      dispatch();
+    }
+
+    public LaneMetrics metrics() {
+      lock.lock();
+      try {
+        return snapshot();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private boolean isRunnable() {
+      return !tasks.isEmpty() && running + held < quota;
+    }
+
+    private boolean isIdle() {
+      return tasks.isEmpty() && resumed.isEmpty() && running == 0;
+    }
+
+    private QueuedTask start(QueuedTask task) {
+      running++;
+      waitNanos += System.nanoTime() - task.enqueued;
+      return task;
+    }
+
+    private LaneMetrics snapshot() {
+      return new LaneMetrics(name, weight, quota, tasks.size() + resumed.size(), running,
+          submitted, completed, waitNanos);
+    }
+  }
+
+  @Value
+  private static class QueuedTask {
+
+    private Runnable runnable;
+    private long enqueued;
+    private Lane lane;
+  }
+}
@@ -8,18 +8,49 @@ package com.ibm.reactive.jpa.util;
 
 import com.ibm.reactive.jpa.PoolConfiguration;
 import com.ibm.reactive.jpa.TransactionDefinition;
+import com.ibm.reactive.jpa.implementation.NearCacheListener;
+import com.zaxxer.hikari.HikariDataSource;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.sql.DataSource;
 import lombok.NonNull;
 import org.hibernate.FlushMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.Metadata;
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.boot.spi.AbstractDelegatingSessionFactoryOptions;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionDelegatorBaseImpl;
+import org.hibernate.engine.spi.SessionFactoryDelegatingImpl;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.internal.AbstractScrollableResults;
+import org.hibernate.query.Query;
+import org.hibernate.query.criteria.LiteralHandlingMode;
+import org.hibernate.query.criteria.internal.compile.CompilableCriteria;
+import org.hibernate.query.criteria.internal.compile.CriteriaCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public abstract class HibernateUtils {
 
+  private static final Logger logger = LoggerFactory.getLogger(HibernateUtils.class);
+
   private HibernateUtils() {
   }
 
@@ -50,6 +81,77 @@ public abstract class HibernateUtils {
         .build();
   }
 
+  public static StandardServiceRegistry createServiceRegistry(@NonNull Map<String, String> settings,
+      @NonNull DataSource dataSource) {
+    // the data source is used as it is, its pool is configured by the caller
+    return new StandardServiceRegistryBuilder()
+        .applySettings(settings)
+        .applySetting(AvailableSettings.DATASOURCE, dataSource)
+        .build();
+  }
+
+  public static DataSource getDataSource(@NonNull SessionFactory sessionFactory) {
+    ConnectionProvider provider = ((SessionFactoryImplementor) sessionFactory)
+        .getServiceRegistry()
+        .getService(ConnectionProvider.class);
+    if (provider == null) {
+      return null;
+    }
+    // the HikariCP provider only unwraps to its own data source class
+    if (provider.isUnwrappableAs(HikariDataSource.class)) {
+      return provider.unwrap(HikariDataSource.class);
+    }
+    return provider.isUnwrappableAs(DataSource.class) ? provider.unwrap(DataSource.class) : null;
+  }
+
+  public static void appendPostCommitListener(@NonNull SessionFactory sessionFactory,
+      @NonNull NearCacheListener listener) {
+    EventListenerRegistry registry = ((SessionFactoryImplementor) sessionFactory)
+        .getServiceRegistry()
+        .getService(EventListenerRegistry.class);
+    registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+    registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+    registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+  }
+
+  /**
+   * Compiles the criteria query with its literals bound as parameters, whatever the literal
+   * handling mode of the session factory. Queries of the same shape then render the same HQL and
+   * share the plan cached by Hibernate.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Query<T> createQuery(@NonNull Session session,
+      @NonNull CriteriaQuery<T> criteria) {
+    SessionImplementor implementor = (SessionImplementor) session;
+    SessionFactoryImplementor factory = implementor.getFactory();
+    SessionFactoryOptions options =
+        new AbstractDelegatingSessionFactoryOptions(factory.getSessionFactoryOptions()) {
+          @Override
+          public LiteralHandlingMode getCriteriaLiteralHandlingMode() {
+            return LiteralHandlingMode.BIND;
+          }
+        };
+    SessionFactoryImplementor bindingFactory = new SessionFactoryDelegatingImpl(factory) {
+      @Override
+      public SessionFactoryOptions getSessionFactoryOptions() {
+        return options;
+      }
+    };
+    // the query itself is created by the session, only the rendering sees the binding factory
+    SessionImplementor bindingSession = new SessionDelegatorBaseImpl(implementor) {
+      @Override
+      public SessionFactoryImplementor getFactory() {
+        return bindingFactory;
+      }
+
+      @Override
+      public SessionFactoryImplementor getSessionFactory() {
+        return bindingFactory;
+      }
+    };
+    return new CriteriaCompiler(bindingSession).compile((CompilableCriteria) criteria);
+  }
+
   public static SessionFactory getSessionFactory(@NonNull MetadataSources sources) {
     try {
       Metadata metadata = sources.getMetadataBuilder().build();
@@ -81,6 +183,36 @@ public abstract class HibernateUtils {
     session.setHibernateFlushMode(flushMode);
   }
 
+  public static ResultSet getResultSet(@NonNull ScrollableResults results) {
+    if (!(results instanceof AbstractScrollableResults)) {
+      return null;
+    }
+    try {
+      // Hibernate does not expose the underlying ResultSet, it is only reachable by reflection
+      Method method = AbstractScrollableResults.class.getDeclaredMethod("getResultSet");
+      method.setAccessible(true);
+      return (ResultSet) method.invoke(results);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.warn("ResultSet is not accessible from the scrollable results", e);
+      return null;
+    }
+  }
+
+  public static <T> Stream<T> stream(@NonNull ScrollableResults results, @NonNull Class<T> type) {
+    Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+        Spliterator.ORDERED | Spliterator.NONNULL) {
+      @Override
+      public boolean tryAdvance(Consumer<? super T> action) {
+        if (!results.next()) {
+          return false;
+        }
+        action.accept(type.cast(results.get(0)));
+        return true;
+      }
+    };
+    return StreamSupport.stream(spliterator, false).onClose(results::close);
+  }
+
   private static boolean needChangeFlushModeForReadOnly(FlushMode current) {
     return !FlushMode.MANUAL.equals(current);
   }
@@ -7,8 +7,12 @@
 package com.ibm.reactive.jpa.util;
 
 import com.ibm.reactive.jpa.IsolationLevel;
+import com.zaxxer.hikari.HikariConfigMXBean;
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import javax.sql.DataSource;
 import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +21,8 @@ import org.slf4j.LoggerFactory;
 public abstract class JdbcUtils {
 
   private static final Logger logger = LoggerFactory.getLogger(JdbcUtils.class);
+  private static final int MIN_COLUMN_SIZE = 8;
+  private static final int MAX_COLUMN_SIZE = 4096;
 
   private JdbcUtils() {
   }
@@ -61,4 +67,36 @@ public abstract class JdbcUtils {
     int defaultIsolation = connection.getTransactionIsolation();
     return IsolationLevel.of(defaultIsolation);
   }
+
+  public static long estimateRowSize(@NonNull ResultSet resultSet) throws SQLException {
+    ResultSetMetaData metaData = resultSet.getMetaData();
+    long size = 0;
+    for (int column = 1; column <= metaData.getColumnCount(); column++) {
+      // LOB columns report huge display sizes, cap them to keep the estimate useful
+      int columnSize = metaData.getColumnDisplaySize(column);
+      size += Math.min(MAX_COLUMN_SIZE, Math.max(MIN_COLUMN_SIZE, columnSize));
+    }
+    return size;
+  }
+
+  /**
+   * Reads the capacity of HikariCP pools, even when they are resized at runtime through their
+   * MXBean, other data sources keep the fallback capacity.
+   */
+  public static PoolCapacity getCapacity(@NonNull DataSource dataSource, int fallback) {
+    HikariConfigMXBean hikari = null;
+    try {
+      if (dataSource instanceof HikariConfigMXBean) {
+        hikari = (HikariConfigMXBean) dataSource;
+      } else if (dataSource.isWrapperFor(HikariConfigMXBean.class)) {
+        hikari = dataSource.unwrap(HikariConfigMXBean.class);
+      }
+    } catch (SQLException e) {
+      logger.warn("DataSource can not be unwrapped", e);
+    }
+    if (hikari == null) {
+      return () -> fallback;
+    }
+    return hikari::getMaximumPoolSize;
+  }
 }
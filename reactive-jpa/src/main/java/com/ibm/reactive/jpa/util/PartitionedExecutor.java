@@ -0,0 +1,134 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import lombok.NonNull;
+
+/**
+ * Executor partitioned by key: the tasks of a key always run on the same worker thread, in
+ * submission order, so calls for a key are ordered without any lock.
+ *
+ * <p>On a delegate executor the partitions have no thread of their own: the tasks of a key are
+ * still ordered, and a partition keeps its delegate thread while it has queued tasks.
+ */
+public class PartitionedExecutor implements AutoCloseable {
+
+  private final Executor[] partitions;
+  private final Worker[] workers;
+  private volatile boolean closed;
+
+  public PartitionedExecutor(int partitions, @NonNull String name) {
+    if (partitions <= 0) {
+      throw new IllegalArgumentException("partitions must be positive");
+    }
+    this.workers = new Worker[partitions];
+    for (int index = 0; index < partitions; index++) {
+      workers[index] = new Worker(name + "-" + index);
+      workers[index].thread.start();
+    }
+    this.partitions = workers;
+  }
+
+  public PartitionedExecutor(int partitions, @NonNull Executor delegate) {
+    if (partitions <= 0) {
+      throw new IllegalArgumentException("partitions must be positive");
+    }
+    this.workers = new Worker[0];
+    this.partitions = new Executor[partitions];
+    for (int index = 0; index < partitions; index++) {
+      this.partitions[index] = new SerialExecutor(delegate);
+    }
+  }
+
+  public int getPartitions() {
+    return partitions.length;
+  }
+
+  public int partition(@NonNull Object key) {
+    int hash = key.hashCode();
+    // spreads the high bits so keys with close hash codes still use every worker
+    hash ^= hash >>> 16;
+    return (hash & Integer.MAX_VALUE) % partitions.length;
+  }
+
+  public void execute(@NonNull Object key, @NonNull Runnable task) {
+    if (closed) {
+      throw new RejectedExecutionException("executor closed");
+    }
+    partitions[partition(key)].execute(task);
+  }
+
+  public Executor forKey(@NonNull Object key) {
+    Executor partition = partitions[partition(key)];
+    return task -> {
+      if (closed) {
+        throw new RejectedExecutionException("executor closed");
+      }
+      partition.execute(task);
+    };
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    for (Worker worker : workers) {
+      LockSupport.unpark(worker.thread);
+    }
+  }
+
+  private class Worker implements Runnable, Executor {
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean parked = new AtomicBoolean();
+    private final Thread thread;
+
+    Worker(String name) {
+      thread = new Thread(this, name);
+      thread.setDaemon(true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.offer(task);
+      if (parked.get() && parked.compareAndSet(true, false)) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    @Override
+    public void run() {
+      while (!closed || !tasks.isEmpty()) {
+        Runnable task = tasks.poll();
+        if (task != null) {
+          runTask(task);
+          continue;
+        }
+        parked.set(true);
+        // a task offered before the flag was visible would otherwise wait for the next one
+        if (tasks.isEmpty() && !closed) {
+          LockSupport.park(this);
+        }
+        parked.set(false);
+      }
+    }
+
+    private void runTask(Runnable task) {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        // a failing task must not stop the worker
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+      }
+    }
+  }
+}
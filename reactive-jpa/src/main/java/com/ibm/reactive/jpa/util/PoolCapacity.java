@@ -0,0 +1,17 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+/**
+ * Number of connections the pool can hand out right now, it may change when the pool is
+ * reconfigured at runtime.
+ */
+@FunctionalInterface
+public interface PoolCapacity {
+
+  int getMaxConnections();
+}
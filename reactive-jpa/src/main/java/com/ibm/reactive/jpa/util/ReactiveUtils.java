@@ -7,33 +7,74 @@
 package com.ibm.reactive.jpa.util;
 
 import com.ibm.reactive.jpa.Execution;
+import com.ibm.reactive.jpa.Tracer;
+import com.ibm.reactive.jpa.Tracer.Scope;
+import com.ibm.reactive.jpa.Tracer.Span;
 import com.ibm.reactive.jpa.implementation.DefaultStreamer;
+import java.util.Collection;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import javax.persistence.EntityManager;
 import lombok.NonNull;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
 
 public class ReactiveUtils {
 
   private ReactiveUtils() {
   }
 
-  public static <T> Mono<T> execute(@NonNull ExecutorService service,
+  public static <T> Mono<T> execute(@NonNull Executor service,
       @NonNull Execution<T> execution,
       @NonNull Function<EntityManager, T> function) {
     return Mono.defer(() -> Mono.fromFuture(executeJpa(service, execution, function)));
   }
 
-  private static <T> CompletableFuture<T> executeJpa(ExecutorService service,
+  public static <T> Mono<T> execute(@NonNull Executor service,
+      @NonNull Execution<T> execution,
+      @NonNull Function<EntityManager, T> function,
+      @NonNull Tracer tracer) {
+    return Mono.subscriberContext().flatMap(subscriberContext -> {
+      Context context = tracer.capture(subscriberContext);
+      Span span = tracer.start(Span.EXECUTE, function.getClass().getName(), context);
+      long submitted = System.nanoTime();
+      return Mono
+          .fromFuture(submit(service, () -> {
+            long started = System.nanoTime();
+            span.phase(Span.QUEUE, started - submitted);
+            try (Scope scope = tracer.restore(context)) {
+              T response = execution.execute(function);
+              span.phase(Span.EXECUTE, System.nanoTime() - started);
+              span.rows(rows(response));
+              return response;
+            }
+          }))
+          .doOnError(span::error)
+          .doFinally(signal -> finish(span, submitted));
+    });
+  }
+
+  public static <T> Mono<T> call(@NonNull Executor service, @NonNull Callable<T> callable) {
+    return Mono.defer(() -> Mono.fromFuture(submit(service, callable)));
+  }
+
+  private static <T> CompletableFuture<T> executeJpa(Executor service,
       Execution<T> execution,
       Function<EntityManager, T> function) {
+    return submit(service, () -> execution.execute(function));
+  }
+
+  private static <T> CompletableFuture<T> submit(Executor service, Callable<T> callable) {
     CompletableFuture<T> result = new CompletableFuture<>();
-    service.submit(() -> {
+    service.execute(() -> {
       try {
-        T response = execution.execute(function);
+        T response = callable.call();
         result.complete(response);
       } catch (Exception e) {
         result.completeExceptionally(e);
@@ -42,9 +83,63 @@ public class ReactiveUtils {
     return result;
   }
 
-  public static <T> Flux<T> stream(@NonNull ExecutorService service,
+  public static <T> Flux<T> stream(@NonNull Executor service,
       @NonNull DefaultStreamer<T> defaultStreamer) {
     return Flux.create(fluxSink -> service.execute(() -> defaultStreamer.stream(fluxSink)));
   }
 
+  public static <T> Flux<T> stream(@NonNull Executor service,
+      @NonNull DefaultStreamer<T> defaultStreamer,
+      @NonNull Tracer tracer) {
+    return stream(defaultStreamer.getDescription(), tracer,
+        restore -> stream(restore.apply(service), defaultStreamer));
+  }
+
+  /**
+   * Traces the rows of the flux built by the source when it is subscribed. The source wraps every
+   * executor its rows are read on with the given operator, so that each task, and not only the
+   * first one, runs with the caller context restored.
+   */
+  public static <T> Flux<T> stream(@NonNull String query, @NonNull Tracer tracer,
+      @NonNull Function<UnaryOperator<Executor>, Flux<T>> source) {
+    return Mono.subscriberContext().flatMapMany(subscriberContext -> {
+      Context context = tracer.capture(subscriberContext);
+      Span span = tracer.start(Span.STREAM, query, context);
+      long submitted = System.nanoTime();
+      AtomicBoolean started = new AtomicBoolean();
+      AtomicLong rows = new AtomicLong();
+      UnaryOperator<Executor> restore = executor -> task -> executor.execute(() -> {
+        if (!started.get() && started.compareAndSet(false, true)) {
+          span.phase(Span.QUEUE, System.nanoTime() - submitted);
+        }
+        try (Scope scope = tracer.restore(context)) {
+          task.run();
+        }
+      });
+      return source.apply(restore)
+          .doOnNext(row -> {
+            if (rows.getAndIncrement() == 0) {
+              span.phase(Span.FIRST_ROW, System.nanoTime() - submitted);
+            }
+          })
+          .doOnError(span::error)
+          .doFinally(signal -> {
+            span.rows(rows.get());
+            finish(span, submitted);
+          });
+    });
+  }
+
+  private static long rows(Object response) {
+    if (response instanceof Collection) {
+      return ((Collection<?>) response).size();
+    }
+    return response == null ? 0 : 1;
+  }
+
+  private static void finish(Span span, long submitted) {
+    span.phase(Span.TOTAL, System.nanoTime() - submitted);
+    span.finish();
+  }
+
 }
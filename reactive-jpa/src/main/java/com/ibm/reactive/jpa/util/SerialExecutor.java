@@ -0,0 +1,48 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.NonNull;
+
+/**
+ * Runs the submitted tasks one at a time, in submission order, on the delegate executor.
+ */
+public class SerialExecutor implements Executor {
+
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Executor delegate;
+
+  public SerialExecutor(@NonNull Executor delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void execute(@NonNull Runnable task) {
+    tasks.offer(task);
+    if (pending.getAndIncrement() == 0) {
+      delegate.execute(this::drain);
+    }
+  }
+
+  private void drain() {
+    do {
+      Runnable task = tasks.poll();
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        // a failing task must not stop the following ones
+        Thread.currentThread().getUncaughtExceptionHandler()
+            .uncaughtException(Thread.currentThread(), e);
+      }
+    } while (pending.decrementAndGet() != 0);
+  }
+}
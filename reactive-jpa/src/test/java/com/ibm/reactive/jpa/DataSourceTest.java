@@ -0,0 +1,104 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ibm.reactive.jpa.annotation.Integration;
+import com.ibm.reactive.jpa.resources.Event;
+import com.ibm.reactive.jpa.util.HibernateUtils;
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+@Integration
+public class DataSourceTest {
+
+  private static HikariDataSource dataSource;
+  private static Database database;
+
+  @BeforeAll
+  public static void createDatabase() {
+    dataSource = new HikariDataSource();
+    dataSource.setJdbcUrl("jdbc:hsqldb:mem:datasource");
+    dataSource.setUsername("sa");
+    dataSource.setMaximumPoolSize(3);
+    Map<String, String> settings = new HashMap<>();
+    settings.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+    settings.put("hibernate.hbm2ddl.auto", "update");
+    database = new Database(dataSource, settings,
+        Collections.singletonList(Event.class.getPackage().getName()));
+  }
+
+  @AfterAll
+  public static void closeDataSource() {
+    dataSource.close();
+  }
+
+  @Test
+  public void testWorkersFollowThePool() {
+    ThreadPoolExecutor service = (ThreadPoolExecutor) database.getService();
+    assertEquals(3, database.getMaxPoolSize());
+    assertEquals(3, service.getMaximumPoolSize());
+
+    dataSource.setMaximumPoolSize(5);
+    assertEquals(5, database.adjustToCapacity());
+    assertEquals(5, service.getCorePoolSize());
+    assertEquals(5, service.getMaximumPoolSize());
+
+    dataSource.setMaximumPoolSize(2);
+    assertEquals(2, database.adjustToCapacity());
+    assertEquals(2, service.getCorePoolSize());
+    assertEquals(2, service.getMaximumPoolSize());
+  }
+
+  @Test
+  public void testSettingsPoolIsWatched() {
+    Map<String, String> settings = new HashMap<>();
+    settings.put("hibernate.connection.url", "jdbc:hsqldb:mem:settings");
+    settings.put("hibernate.connection.username", "sa");
+    settings.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+    try (Database settingsDatabase = new Database(settings,
+        Collections.singletonList(Event.class.getPackage().getName()),
+        PoolConfiguration.builder().maxPoolSize(3).minPoolSize(1).build())) {
+      // the data source of the HikariCP connection provider is found and followed
+      DataSource pool = HibernateUtils.getDataSource(settingsDatabase.getSessionFactory());
+      assertTrue(pool instanceof HikariDataSource);
+      assertEquals(3, settingsDatabase.getMaxPoolSize());
+
+      ((HikariDataSource) pool).setMaximumPoolSize(8);
+      assertEquals(8, settingsDatabase.adjustToCapacity());
+      assertEquals(8, ((ThreadPoolExecutor) settingsDatabase.getService()).getMaximumPoolSize());
+      assertEquals(8, settingsDatabase.getPriorityLane(Priority.INTERACTIVE).getQuota());
+      assertEquals(Priority.BATCH.quota(8),
+          settingsDatabase.getPriorityLane(Priority.BATCH).getQuota());
+    }
+  }
+
+  @Test
+  public void testExecuteThroughDataSource() {
+    StepVerifier.create(database
+        .execute(entityManager -> {
+          Event event = new Event();
+          event.setType("datasource");
+          entityManager.persist(event);
+          return event.getId();
+        })
+        .transaction(TransactionDefinition.builder().build())
+        .mono())
+        .expectNextCount(1)
+        .verifyComplete();
+  }
+}
@@ -8,6 +8,11 @@ package com.ibm.reactive.jpa;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.ibm.reactive.jpa.implementation.DefaultExecution;
@@ -15,6 +20,7 @@ import com.ibm.reactive.jpa.implementation.DefaultStreamer;
 import com.ibm.reactive.jpa.implementation.DefaultStreamerTest;
 import com.ibm.reactive.jpa.lombok.LombokTestUtil;
 import com.ibm.reactive.jpa.resources.Person;
+import com.ibm.reactive.jpa.util.PartitionedExecutor;
 import com.ibm.reactive.jpa.util.ReactiveUtils;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -24,9 +30,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
 import java.util.stream.Stream;
 import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
 import org.hibernate.FlushMode;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
@@ -70,6 +80,12 @@ public class DatabaseTest {
   @Mock
   Transaction transaction;
 
+  @Test
+  public void testMdcIsCarriedByDefault() {
+    Database database = new Database(sessionFactory, 1);
+    assertTrue(database.getTracer() instanceof MdcTracer);
+  }
+
   @Test
   public void testLombokNullValidations() {
     ExecutorService service = Executors.newFixedThreadPool(1);
@@ -85,7 +101,13 @@ public class DatabaseTest {
         () -> database.stream("", Person.class).addParameter(null, null),
         () -> database.stream("", Person.class).addParameters(null),
         () -> database.stream("", Person.class).addParameters(null),
-        () -> database.stream("", Person.class).parameterList(null)
+        () -> database.stream("", Person.class).parameterList(null),
+        () -> database.execute(entityManager -> 1).affinity(null),
+        () -> database.executeStream(null),
+        () -> database.executeScroll(null, Person.class),
+        () -> database.executeScroll(entityManager -> null, null),
+        () -> database.stream((CriteriaQuery<Person>) null),
+        () -> database.stream((Function<CriteriaBuilder, CriteriaQuery<Person>>) null)
     ));
 
   }
@@ -125,6 +147,18 @@ public class DatabaseTest {
     assertEquals(((ThreadPoolExecutor) database.getService()).getMaximumPoolSize(), 1);
   }
 
+  @Test
+  public void testClose() {
+    Database database = new Database(sessionFactory, 2);
+    PartitionedExecutor affinity = database.getAffinityExecutor();
+    assertEquals(2, affinity.getPartitions());
+    database.close();
+    assertTrue(database.getService().isShutdown());
+    assertThrows(RejectedExecutionException.class, () -> affinity.execute(1, () -> { }));
+    // the session factory belongs to the caller
+    verify(sessionFactory, never()).close();
+  }
+
   private void setupTransactionMocks(TransactionDefinition definition) throws SQLException {
     if (definition != null) {
       when(sessionFactory.createEntityManager()).thenReturn(entityManager);
@@ -196,6 +230,31 @@ public class DatabaseTest {
         .verifyComplete();
   }
 
+  @Test
+  public void testInTransactionExecution() throws SQLException {
+
+    TransactionDefinition definition = TransactionDefinition.builder()
+        .isolation(IsolationLevel.SERIALIZABLE)
+        .isReadonly(true)
+        .build();
+
+    setupTransactionMocks(definition);
+
+    Database database = new Database(sessionFactory, 1);
+
+    StepVerifier.create(database.inTransaction(definition, transaction -> database
+        .execute(entityManager -> 1)
+        .mono()
+        .concatWith(database.execute(entityManager -> 2).mono())))
+        .expectNext(1, 2)
+        .verifyComplete();
+
+    verify(sessionFactory, times(1)).createEntityManager();
+    verify(transaction, times(1)).begin();
+    verify(transaction, times(1)).commit();
+    verify(entityManager, times(1)).close();
+  }
+
   @Test
   public void testExceptionallyExecution() throws SQLException {
 
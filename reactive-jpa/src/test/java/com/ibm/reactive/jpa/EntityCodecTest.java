@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ibm.reactive.jpa.annotation.Integration;
+import com.ibm.reactive.jpa.resources.Event;
+import com.ibm.reactive.jpa.resources.Person;
+import com.ibm.reactive.jpa.resources.Project;
+import com.ibm.reactive.jpa.resources.Task;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+@Integration
+public class EntityCodecTest {
+
+  private final Database database = TestUtil.getDatabase();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    EntityCodec<Person> codec = database.codec(Person.class);
+    Person person = new Person(7, "Tomas");
+
+    assertEquals(Arrays.asList("id", "name"), codec.getAttributeNames());
+    assertEquals(person, codec.fromByteBuffer(codec.toByteBuffer(person)));
+  }
+
+  @Test
+  public void testNullAttributes() throws IOException {
+    EntityCodec<Event> codec = database.codec(Event.class);
+    Event event = new Event();
+    event.setId(3);
+    event.setType("created");
+
+    Event decoded = codec.fromByteBuffer(codec.toByteBuffer(event));
+    assertEquals(3, decoded.getId());
+    assertEquals("created", decoded.getType());
+    assertNull(decoded.getData());
+  }
+
+  @Test
+  public void testAssociationsAreSkipped() throws IOException {
+    EntityCodec<Task> codec = database.codec(Task.class);
+    Project project = new Project();
+    project.setId(1);
+    Task task = new Task();
+    task.setId(2);
+    task.setName("review");
+    task.setProject(project);
+
+    assertEquals(Arrays.asList("id", "name"), codec.getAttributeNames());
+    Task decoded = codec.fromByteBuffer(codec.toByteBuffer(task));
+    assertEquals(2, decoded.getId());
+    assertEquals("review", decoded.getName());
+    assertNull(decoded.getProject());
+    assertTrue(database.codec(Project.class).fromByteBuffer(
+        database.codec(Project.class).toByteBuffer(project)).getTasks().isEmpty());
+  }
+
+  @Test
+  public void testDirectBuffer() throws IOException {
+    EntityCodec<Person> codec = database.codec(Person.class);
+    ByteBuffer encoded = codec.toByteBuffer(new Person(1, "Ailed"));
+    ByteBuffer direct = ByteBuffer.allocateDirect(encoded.remaining());
+    direct.put(encoded).flip();
+
+    assertEquals(new Person(1, "Ailed"), codec.fromByteBuffer(direct));
+    assertEquals(0, direct.position());
+  }
+
+  @Test
+  public void testCodecIsCached() {
+    assertSame(database.codec(Person.class), database.codec(Person.class));
+  }
+}
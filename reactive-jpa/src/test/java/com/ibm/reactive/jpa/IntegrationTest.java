@@ -7,16 +7,40 @@
 package com.ibm.reactive.jpa;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.ibm.reactive.jpa.annotation.Integration;
+import com.ibm.reactive.jpa.resources.Account;
+import com.ibm.reactive.jpa.resources.Event;
 import com.ibm.reactive.jpa.resources.Person;
+import com.ibm.reactive.jpa.resources.Product;
+import com.ibm.reactive.jpa.resources.Project;
+import com.ibm.reactive.jpa.resources.Stock;
+import com.ibm.reactive.jpa.resources.Task;
+import com.ibm.reactive.jpa.util.HibernateUtils;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import org.hibernate.ScrollMode;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
 import reactor.core.scheduler.Schedulers;
@@ -73,6 +97,44 @@ public class IntegrationTest {
         .verifyComplete();
   }
 
+  @Test
+  public void executeStream() {
+    Flux<Person> result = simpleDatabase.<Person>executeStream(entityManager -> {
+      CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+      CriteriaQuery<Person> criteria = builder.createQuery(Person.class);
+      Root<Person> root = criteria.from(Person.class);
+      criteria.select(root);
+      criteria.orderBy(builder.asc(root.get("id")));
+      return entityManager
+          .createQuery(criteria)
+          .setMaxResults(TestUtil.getPersons().size())
+          .getResultStream();
+    })
+        .clearInterval(1)
+        .flux();
+
+    StepVerifier.create(result, 1)
+        .expectNext(TestUtil.getPersons().get(0))
+        .thenRequest(Long.MAX_VALUE)
+        .expectNextSequence(TestUtil.getPersons().subList(1, TestUtil.getPersons().size()))
+        .verifyComplete();
+  }
+
+  @Test
+  public void executeScrollCancelled() {
+    Flux<Person> result = simpleDatabase
+        .executeScroll(entityManager -> entityManager
+            .unwrap(Session.class)
+            .createQuery("from PERSON person order by person.id", Person.class)
+            .scroll(ScrollMode.FORWARD_ONLY), Person.class)
+        .transaction(TransactionDefinition.builder().isReadonly(true).build())
+        .flux();
+
+    StepVerifier.create(result.take(2))
+        .expectNextSequence(TestUtil.getPersons().subList(0, 2))
+        .verifyComplete();
+  }
+
   @Test
   public void testConnectionPool() throws Exception {
     int poolSize = ((ThreadPoolExecutor) simpleDatabase.getService()).getMaximumPoolSize();
@@ -118,6 +180,124 @@ public class IntegrationTest {
         .verifyComplete();
   }
 
+  @Test
+  public void streamSpill() {
+    RowCodec<Person> codec = new RowCodec<Person>() {
+      @Override
+      public void encode(Person person, DataOutput output) throws IOException {
+        output.writeLong(person.getId());
+        output.writeUTF(person.getName());
+      }
+
+      @Override
+      public Person decode(DataInput input) throws IOException {
+        return new Person(input.readLong(), input.readUTF());
+      }
+    };
+    Flux<Person> result = simpleDatabase
+        .stream("from PERSON person order by person.id", Person.class)
+        .maxResults(TestUtil.getPersons().size())
+        .spill(codec)
+        .flux();
+
+    StepVerifier.create(result, 1)
+        .expectNext(TestUtil.getPersons().get(0))
+        .thenRequest(Long.MAX_VALUE)
+        .expectNextSequence(TestUtil.getPersons().subList(1, TestUtil.getPersons().size()))
+        .verifyComplete();
+  }
+
+  @Test
+  public void streamEncoded() {
+    EntityCodec<Person> codec = simpleDatabase.codec(Person.class);
+    Flux<Person> result = simpleDatabase
+        .stream("from PERSON person order by person.id", Person.class)
+        .maxResults(TestUtil.getPersons().size())
+        .encoded()
+        .map(buffer -> {
+          try {
+            return codec.fromByteBuffer(buffer);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+
+    StepVerifier.create(result)
+        .expectNextSequence(TestUtil.getPersons())
+        .verifyComplete();
+  }
+
+  @Test
+  public void streamSpillWithEntityCodec() {
+    Flux<Person> result = simpleDatabase
+        .stream("from PERSON person order by person.id", Person.class)
+        .maxResults(TestUtil.getPersons().size())
+        .spill()
+        .flux();
+
+    StepVerifier.create(result)
+        .expectNextSequence(TestUtil.getPersons())
+        .verifyComplete();
+  }
+
+  @Test
+  public void streamWithPriority() {
+    Flux<Person> result = simpleDatabase
+        .stream("from PERSON person order by person.id", Person.class)
+        .fetchSize(2)
+        .maxResults(TestUtil.getPersons().size())
+        .priority(Priority.BATCH)
+        .flux();
+
+    StepVerifier.create(result)
+        .expectNextSequence(TestUtil.getPersons())
+        .verifyComplete();
+  }
+
+  @Test
+  public void executeWithPriority() {
+    StepVerifier.create(simpleDatabase
+        .execute(entityManager -> entityManager.find(Person.class, 1L))
+        .priority(Priority.INTERACTIVE)
+        .mono())
+        .expectNext(TestUtil.getPersons().get(0))
+        .verifyComplete();
+  }
+
+  @Test
+  public void streamWithAdaptiveFetchSize() {
+    Flux<Person> result = simpleDatabase
+        .stream("from PERSON person order by person.id", Person.class)
+        .fetchSize(1)
+        .adaptiveFetchSize(1024)
+        .maxResults(TestUtil.getPersons().size())
+        .isolationLevel(IsolationLevel.READ_COMMITTED)
+        .flux();
+
+    StepVerifier.create(result, 2)
+        .expectNextSequence(TestUtil.getPersons().subList(0, 2))
+        .thenRequest(Long.MAX_VALUE)
+        .expectNextSequence(TestUtil.getPersons().subList(2, TestUtil.getPersons().size()))
+        .verifyComplete();
+  }
+
+  @Test
+  public void streamWithPriorityAndAdaptiveFetchSize() {
+    Flux<Person> result = simpleDatabase
+        .stream("from PERSON person order by person.id", Person.class)
+        .fetchSize(1)
+        .adaptiveFetchSize(1024)
+        .priority(Priority.BACKGROUND)
+        .maxResults(TestUtil.getPersons().size())
+        .flux();
+
+    StepVerifier.create(result, 2)
+        .expectNextSequence(TestUtil.getPersons().subList(0, 2))
+        .thenRequest(Long.MAX_VALUE)
+        .expectNextSequence(TestUtil.getPersons().subList(2, TestUtil.getPersons().size()))
+        .verifyComplete();
+  }
+
   @Test
   public void streamWithLimitAndOffset() {
     System.out.println("Stream");
@@ -153,6 +333,82 @@ public class IntegrationTest {
         .verifyComplete();
   }
 
+  @Test
+  public void streamCriteria() {
+    Person first = TestUtil.getPersons().get(0);
+    Flux<Person> result = simpleDatabase
+        .stream(builder -> {
+          CriteriaQuery<Person> criteria = builder.createQuery(Person.class);
+          Root<Person> root = criteria.from(Person.class);
+          return criteria
+              .select(root)
+              .where(builder.equal(root.get("name"), first.getName()));
+        })
+        .fetchSize(1)
+        .isolationLevel(IsolationLevel.READ_COMMITTED)
+        .flux();
+
+    StepVerifier.create(result)
+        .expectNext(first)
+        .verifyComplete();
+  }
+
+  @Test
+  public void criteriaLiteralsAreBound() {
+    Person first = TestUtil.getPersons().get(0);
+    try (Session session = simpleDatabase.getSessionFactory().openSession()) {
+      CriteriaBuilder builder = session.getCriteriaBuilder();
+      CriteriaQuery<Person> criteria = builder.createQuery(Person.class);
+      Root<Person> root = criteria.from(Person.class);
+      criteria.select(root).where(builder.equal(root.get("id"), first.getId()));
+
+      Query<Person> query = HibernateUtils.createQuery(session, criteria);
+      assertTrue(query.getQueryString().contains(":param0"));
+      assertEquals(first, query.getSingleResult());
+    }
+  }
+
+  @Test
+  public void streamCriteriaWithParameter() {
+    CriteriaBuilder builder = simpleDatabase.getSessionFactory().getCriteriaBuilder();
+    CriteriaQuery<Person> criteria = builder.createQuery(Person.class);
+    Root<Person> root = criteria.from(Person.class);
+    criteria
+        .select(root)
+        .where(builder.greaterThan(root.<Long>get("id"), builder.parameter(Long.class, "id")))
+        .orderBy(builder.asc(root.get("id")));
+    Person first = TestUtil.getPersons().get(0);
+
+    Flux<Person> result = simpleDatabase
+        .stream(criteria)
+        .addParameter("id", first.getId())
+        .maxResults(TestUtil.getPersons().size() - 1)
+        .flux();
+
+    StepVerifier.create(result)
+        .expectNextSequence(TestUtil.getPersons().subList(1, TestUtil.getPersons().size()))
+        .verifyComplete();
+  }
+
+  @Test
+  public void streamNative() {
+    Person first = TestUtil.getPersons().get(0);
+    Flux<Person> result = simpleDatabase
+        .streamNative("select id, name from PERSON where id >= ? order by id",
+            (resultSet, rowNumber) -> new Person(resultSet.getLong(1), resultSet.getString(2)))
+        .addParameter(first.getId())
+        .maxResults(TestUtil.getPersons().size())
+        .fetchSize(2)
+        .isolationLevel(IsolationLevel.READ_COMMITTED)
+        .flux();
+
+    StepVerifier.create(result, 1)
+        .expectNext(first)
+        .thenRequest(Long.MAX_VALUE)
+        .expectNextSequence(TestUtil.getPersons().subList(1, TestUtil.getPersons().size()))
+        .verifyComplete();
+  }
+
   @Test
   public void streamWithParameterList() {
     Person first = TestUtil.getPersons().get(0);
@@ -168,4 +424,541 @@ public class IntegrationTest {
         .verifyComplete();
   }
 
+  @Test
+  public void mutateInChunks() {
+    List<Long> ids = persistEvents("chunkedUpdate", 25);
+    StepVerifier.create(simpleDatabase
+        .mutateInChunks(Event.class,
+            "update EVENT event set event.data = :data where event.type = :type")
+        .addParameter("data", "updated")
+        .addParameter("type", "chunkedUpdate")
+        .chunkSize(10)
+        .resumeAfter(ids.get(4))
+        .pace(Duration.ofMillis(1))
+        .flux()
+        .map(ChunkProgress::getRows))
+        .expectNext(10, 10, 0)
+        .verifyComplete();
+    long updated = simpleDatabase
+        .execute(entityManager -> entityManager
+            .createQuery("select count(e) from EVENT e where e.data = 'updated'"
+                + " and e.type = 'chunkedUpdate'", Long.class)
+            .getSingleResult())
+        .mono()
+        .block();
+    assertEquals(20, updated);
+
+    StepVerifier.create(simpleDatabase
+        .mutateInChunks(Event.class, "delete from EVENT event where event.type = :type")
+        .addParameter("type", "chunkedUpdate")
+        .chunkSize(7)
+        .flux())
+        .expectNextMatches(progress -> progress.getRows() == 7 && !progress.isLast())
+        .expectNextCount(2)
+        .expectNextMatches(progress -> progress.getTotalRows() == 25 && progress.isLast()
+            && progress.getLastKey().equals(ids.get(24)))
+        .verifyComplete();
+    assertEquals(0, countEvents("chunkedUpdate"));
+  }
+
+  @Test
+  public void mutateInChunksInvalidatesTheNearCache() {
+    simpleDatabase.setNearCache(new NearCache(100, Duration.ofMinutes(1)));
+    try {
+      List<Long> ids = persistEvents("chunkedNearCache", 3);
+      assertEquals("data", simpleDatabase.find(Event.class, ids.get(0)).block().getData());
+
+      simpleDatabase
+          .mutateInChunks(Event.class,
+              "update EVENT event set event.data = :data where event.type = :type")
+          .addParameter("data", "updated")
+          .addParameter("type", "chunkedNearCache")
+          .chunkSize(2)
+          .flux()
+          .blockLast();
+      assertEquals("updated", simpleDatabase.find(Event.class, ids.get(0)).block().getData());
+
+      simpleDatabase
+          .mutateInChunks(Event.class, "delete from EVENT event where event.type = :type")
+          .addParameter("type", "chunkedNearCache")
+          .chunkSize(2)
+          .flux()
+          .blockLast();
+      StepVerifier.create(simpleDatabase.find(Event.class, ids.get(2)))
+          .verifyComplete();
+    } finally {
+      simpleDatabase.setNearCache(null);
+    }
+  }
+
+  private List<Long> persistEvents(String type, int count) {
+    return simpleDatabase
+        .execute(entityManager -> {
+          List<Long> ids = new ArrayList<>(count);
+          for (int index = 0; index < count; index++) {
+            Event event = event(type);
+            entityManager.persist(event);
+            ids.add(event.getId());
+          }
+          return ids;
+        })
+        .transaction(TransactionDefinition.builder().build())
+        .mono()
+        .block();
+  }
+
+  @Test
+  public void retryOnConflict() {
+    Account account = new Account();
+    simpleDatabase
+        .execute(entityManager -> {
+          entityManager.persist(account);
+          return account;
+        })
+        .transaction(TransactionDefinition.builder().build())
+        .mono()
+        .block();
+    long recovered = simpleDatabase.getConflictMetrics().getRecovered();
+    AtomicInteger attempts = new AtomicInteger();
+
+    Long balance = simpleDatabase
+        .execute(entityManager -> {
+          Account loaded = entityManager.find(Account.class, account.getId());
+          if (attempts.incrementAndGet() == 1) {
+            // a concurrent execution commits first
+            EntityManager concurrent = simpleDatabase.getSessionFactory().createEntityManager();
+            concurrent.getTransaction().begin();
+            concurrent.find(Account.class, account.getId()).setBalance(100);
+            concurrent.getTransaction().commit();
+            concurrent.close();
+          }
+          loaded.setBalance(loaded.getBalance() + 10);
+          return loaded.getBalance();
+        })
+        .transaction(TransactionDefinition.builder().build())
+        .retryOnConflict(3, Duration.ofMillis(5))
+        .mono()
+        .block();
+
+    assertEquals(2, attempts.get());
+    assertEquals(110L, balance);
+    assertEquals(recovered + 1, simpleDatabase.getConflictMetrics().getRecovered());
+  }
+
+  private static Event event(String type) {
+    Event event = new Event();
+    event.setType(type);
+    event.setData("data");
+    return event;
+  }
+
+  private long countEvents(String type) {
+    return simpleDatabase
+        .execute(entityManager -> entityManager
+            .createQuery("select count(e) from EVENT e where e.type = :type", Long.class)
+            .setParameter("type", type)
+            .getSingleResult())
+        .mono()
+        .block();
+  }
+
+  @Test
+  public void tail() {
+    String type = "tail";
+    simpleDatabase
+        .execute(entityManager -> {
+          for (int index = 0; index < 3; index++) {
+            entityManager.persist(event(type));
+          }
+          return 3;
+        })
+        .transaction(TransactionDefinition.builder().build())
+        .mono()
+        .block();
+
+    List<TailRecord<Event>> records = simpleDatabase
+        .tail("from EVENT e where e.type = :type", Event.class, "e.id")
+        .addParameter("type", type)
+        .batchSize(2)
+        .records()
+        .take(3)
+        .collectList()
+        .block();
+    assertEquals(3, records.size());
+    assertTrue(records.get(0).getValue().getId() < records.get(1).getValue().getId());
+
+    // resumes after the second record
+    StepVerifier.create(simpleDatabase
+        .tail("from EVENT e where e.type = :type", Event.class, "e.id")
+        .addParameter("type", type)
+        .startAfter(records.get(1).getCursor())
+        .pollInterval(Duration.ofMillis(10), Duration.ofMillis(50))
+        .flux()
+        .take(Duration.ofMillis(500)))
+        .expectNext(records.get(2).getValue())
+        .verifyComplete();
+  }
+
+  @Test
+  public void tailWithLookback() {
+    String prefix = "tailLookback";
+    persistProduct(new Product(prefix + "-2", "first", 20));
+
+    StepVerifier.create(simpleDatabase
+        .tail("from PRODUCT p where p.code like :prefix", Product.class, "p.price")
+        .addParameter("prefix", prefix + "-%")
+        .lookback(Duration.ofMinutes(1))
+        .pollInterval(Duration.ofMillis(10), Duration.ofMillis(50))
+        .flux()
+        .map(Product::getPrice)
+        .take(2))
+        .expectNext(20L)
+        // a lower cursor committed after the higher one was read, the higher one is not repeated
+        .then(() -> persistProduct(new Product(prefix + "-1", "late", 10)))
+        .expectNext(10L)
+        .verifyComplete();
+  }
+
+  private void persistProduct(Product product) {
+    simpleDatabase
+        .execute(entityManager -> {
+          entityManager.persist(product);
+          return product;
+        })
+        .transaction(TransactionDefinition.builder().build())
+        .mono()
+        .block();
+  }
+
+  @Test
+  public void inTransactionCommit() {
+    String type = "commit";
+    Flux<Event> result = simpleDatabase.inTransaction(transaction -> simpleDatabase
+        .execute(entityManager -> {
+          entityManager.persist(event(type));
+          return 1;
+        })
+        .mono()
+        .then(simpleDatabase.execute(entityManager -> {
+          entityManager.persist(event(type));
+          return 2;
+        }).mono())
+        .thenMany(simpleDatabase
+            .stream("from EVENT e where e.type = :type", Event.class)
+            .addParameter("type", type)
+            .flux()));
+
+    StepVerifier.create(result)
+        .expectNextCount(2)
+        .verifyComplete();
+    assertEquals(2, countEvents(type));
+  }
+
+  @Test
+  public void inTransactionRollback() {
+    String type = "rollback";
+    Flux<Integer> result = simpleDatabase.inTransaction(transaction -> simpleDatabase
+        .execute(entityManager -> {
+          entityManager.persist(event(type));
+          entityManager.flush();
+          return 1;
+        })
+        .mono()
+        .then(simpleDatabase.<Integer>execute(entityManager -> {
+          throw new IllegalStateException();
+        }).mono()));
+
+    StepVerifier.create(result)
+        .verifyError(IllegalStateException.class);
+    assertEquals(0, countEvents(type));
+  }
+
+  @Test
+  public void inTransactionRollbackOnly() {
+    String type = "rollbackOnly";
+    Flux<Integer> result = simpleDatabase.inTransaction(transaction -> simpleDatabase
+        .execute(entityManager -> {
+          entityManager.persist(event(type));
+          transaction.setRollbackOnly();
+          return 1;
+        })
+        .mono());
+
+    StepVerifier.create(result)
+        .expectNext(1)
+        .verifyComplete();
+    assertEquals(0, countEvents(type));
+  }
+
+  @Test
+  public void statistics() {
+    String query = "select person from PERSON person where person.id < 3";
+    simpleDatabase.enableStatistics();
+    try {
+      simpleDatabase
+          .execute(entityManager -> entityManager.createQuery(query, Person.class)
+              .getResultList())
+          .mono()
+          .block();
+      StatsSnapshot snapshot = simpleDatabase.statistics();
+      assertTrue(snapshot.isEnabled());
+      StatsSnapshot.QueryStats stats = snapshot.getQueries().stream()
+          .filter(queryStats -> queryStats.getQuery().equals(query))
+          .findFirst()
+          .orElseThrow(AssertionError::new);
+      assertTrue(stats.getExecutions() >= 1);
+      assertTrue(stats.getRows() >= 2);
+
+      StepVerifier.create(simpleDatabase.statistics(Duration.ofMillis(10)).take(2))
+          .expectNextCount(2)
+          .verifyComplete();
+    } finally {
+      simpleDatabase.disableStatistics();
+    }
+  }
+
+  @Test
+  public void streamFetchCollection() {
+    insertProjects("fetchCollection", 3, 2);
+    List<Project> projects = simpleDatabase
+        .stream("from PROJECT project where project.name like 'fetchCollection%' "
+            + "order by project.id", Project.class)
+        .fetchJoin("tasks")
+        .fetchSize(2)
+        .fetchBatchSize(1)
+        .flux()
+        .collectList()
+        .block();
+
+    assertEquals(3, projects.size());
+    // the sessions are closed, lazy collections would fail here
+    projects.forEach(project -> assertEquals(2, project.getTasks().size()));
+  }
+
+  @Test
+  public void streamFetchGraph() {
+    insertProjects("fetchGraph", 2, 3);
+    StepVerifier.create(simpleDatabase
+        .stream("from PROJECT project where project.name like 'fetchGraph%'", Project.class)
+        .fetchGraph("PROJECT.tasks")
+        .priority(Priority.BATCH)
+        .fetchSize(1)
+        .flux()
+        .map(project -> project.getTasks().size()))
+        .expectNext(3, 3)
+        .verifyComplete();
+  }
+
+  @Test
+  public void streamFetchSingleValued() {
+    insertProjects("fetchJoin", 1, 2);
+    StepVerifier.create(simpleDatabase
+        .stream("from TASK task where task.name like 'fetchJoin%'", Task.class)
+        .fetchJoin("project")
+        .flux()
+        .map(task -> task.getProject().getName()))
+        .expectNext("fetchJoin 0", "fetchJoin 0")
+        .verifyComplete();
+  }
+
+  private void insertProjects(String name, int projects, int tasks) {
+    simpleDatabase
+        .execute(entityManager -> {
+          for (int index = 0; index < projects; index++) {
+            Project project = new Project();
+            project.setName(name + " " + index);
+            entityManager.persist(project);
+            for (int taskIndex = 0; taskIndex < tasks; taskIndex++) {
+              Task task = new Task();
+              task.setName(name + " " + index + "." + taskIndex);
+              task.setProject(project);
+              entityManager.persist(task);
+            }
+          }
+          return projects;
+        })
+        .transaction(TransactionDefinition.builder().build())
+        .mono()
+        .block();
+  }
+
+  @Test
+  public void nearCache() {
+    simpleDatabase.setNearCache(new NearCache(100, Duration.ofMinutes(1)));
+    try {
+      Event event = event("nearCache");
+      Long id = simpleDatabase
+          .execute(entityManager -> {
+            entityManager.persist(event);
+            return event.getId();
+          })
+          .transaction(TransactionDefinition.builder().build())
+          .mono()
+          .block();
+      Event cached = simpleDatabase.find(Event.class, id).block();
+      assertNotSame(event, cached);
+      assertEquals(event, cached);
+      // changes of the written instance or of a found copy do not reach the cache
+      event.setData("changed");
+      cached.setType("changed");
+      Event found = simpleDatabase.find(Event.class, id).block();
+      assertEquals("nearCache", found.getType());
+      assertEquals("data", found.getData());
+
+      simpleDatabase
+          .execute(entityManager -> {
+            entityManager.remove(entityManager.find(Event.class, id));
+            return id;
+          })
+          .transaction(TransactionDefinition.builder().build())
+          .mono()
+          .block();
+      StepVerifier.create(simpleDatabase.find(Event.class, id))
+          .verifyComplete();
+    } finally {
+      simpleDatabase.setNearCache(null);
+    }
+  }
+
+  @Test
+  public void nearCacheSkipsAssociations() {
+    simpleDatabase.setNearCache(new NearCache(100, Duration.ofMinutes(1)));
+    try {
+      insertProjects("nearCacheSkipsAssociations", 1, 2);
+      // neither the project and its tasks collection nor the tasks and their project are cached
+      assertEquals(0, simpleDatabase.getNearCache().size());
+    } finally {
+      simpleDatabase.setNearCache(null);
+    }
+  }
+
+  @Test
+  public void upsertMerge() {
+    upsert("merge", UpsertStrategy.MERGE);
+  }
+
+  @Test
+  public void upsertFallback() {
+    upsert("fallback", UpsertStrategy.FALLBACK);
+  }
+
+  private void upsert(String prefix, UpsertStrategy strategy) {
+    UpsertResult first = simpleDatabase
+        .upsert(Flux.just(new Product(prefix + "-1", "one", 1),
+            new Product(prefix + "-2", "two", 2)), Product.class)
+        .strategy(strategy)
+        .mono()
+        .block();
+    assertEquals(new UpsertResult(2, 0), first);
+
+    Product updated = new Product(prefix + "-2", "second", 20);
+    UpsertResult second = simpleDatabase
+        .upsert(Flux.just(updated, new Product(prefix + "-3", "three", 3),
+            new Product(prefix + "-3", "third", 30)), Product.class, "code")
+        .strategy(strategy)
+        .batchSize(2)
+        .mono()
+        .block();
+    assertEquals(new UpsertResult(1, 2), second);
+
+    List<Product> products = simpleDatabase
+        .execute(entityManager -> entityManager
+            .createQuery("from PRODUCT product where product.code like :prefix"
+                + " order by product.code", Product.class)
+            .setParameter("prefix", prefix + "-%")
+            .getResultList())
+        .mono()
+        .block();
+    assertEquals(Arrays.asList("one", "second", "third"),
+        products.stream().map(Product::getName).collect(Collectors.toList()));
+    assertEquals(20, products.get(1).getPrice());
+    assertEquals(updated.getId(), products.get(1).getId());
+  }
+
+  @Test
+  public void upsertVersioned() {
+    for (UpsertStrategy strategy : new UpsertStrategy[] {UpsertStrategy.MERGE,
+        UpsertStrategy.FALLBACK}) {
+      String sku = "versioned-" + strategy;
+      Stock inserted = new Stock(sku, 1);
+      simpleDatabase.upsert(Flux.just(inserted), Stock.class)
+          .strategy(strategy)
+          .mono()
+          .block();
+      assertEquals(Long.valueOf(0), inserted.getVersion());
+      assertEquals(Long.valueOf(0), findStock(sku).getVersion());
+
+      // the incoming version is ignored, the stored one is incremented
+      simpleDatabase.upsert(Flux.just(new Stock(sku, 5)), Stock.class)
+          .strategy(strategy)
+          .mono()
+          .block();
+      Stock updated = findStock(sku);
+      assertEquals(5, updated.getQuantity());
+      assertEquals(Long.valueOf(1), updated.getVersion());
+    }
+  }
+
+  private Stock findStock(String sku) {
+    return simpleDatabase
+        .execute(entityManager -> entityManager
+            .createQuery("from STOCK stock where stock.sku = :sku", Stock.class)
+            .setParameter("sku", sku)
+            .getSingleResult())
+        .mono()
+        .block();
+  }
+
+  @Test
+  public void aggregate() {
+    simpleDatabase
+        .execute(entityManager -> {
+          entityManager.persist(new Product("aggregate-1", "a", 1));
+          entityManager.persist(new Product("aggregate-2", "a", 3));
+          entityManager.persist(new Product("aggregate-3", "b", 5));
+          return null;
+        })
+        .transaction(TransactionDefinition.builder().build())
+        .mono()
+        .block();
+    // the query is pushed down, the same query with a result window is streamed
+    for (int maxResults : new int[] {-1, 100}) {
+      Database.StreamerBuilder<Product> products = simpleDatabase
+          .stream("from PRODUCT product where product.code like :prefix order by product.code",
+              Product.class)
+          .addParameter("prefix", "aggregate-%")
+          .maxResults(maxResults);
+      assertEquals(3L, (long) products.count().block());
+      assertEquals(9L, products.sum("price").block().longValue());
+      assertEquals(9L, (long) products.sumLong(Product::getPrice).block());
+      assertEquals(Arrays.asList(3L, 1L, 5L, 3.0), products
+          .aggregate(Aggregate.count(), Aggregate.min("price"), Aggregate.max("product.price"),
+              Aggregate.avg("price"))
+          .block());
+      Map<Object, List<Number>> groups = products.groupBy("name")
+          .aggregate(Aggregate.sum("price"))
+          .block();
+      assertEquals(Arrays.asList("a", "b"), new ArrayList<>(groups.keySet()));
+      assertEquals(Collections.singletonList(4L), groups.get("a"));
+      assertEquals(Collections.singletonMap("b", 1L), products
+          .addParameter("prefix", "aggregate-3")
+          .groupBy("product.name")
+          .count()
+          .block());
+      assertEquals(0L, (long) products.addParameter("prefix", "none").count().block());
+      assertFalse(products.sum("price").blockOptional().isPresent());
+    }
+  }
+
+  @Test
+  public void aggregateOfNonNumericAttribute() {
+    Database.StreamerBuilder<Product> products = simpleDatabase
+        .stream("from PRODUCT product", Product.class);
+    assertThrows(IllegalArgumentException.class,
+        () -> products.aggregate(Aggregate.min("name")));
+    assertThrows(IllegalArgumentException.class,
+        () -> products.groupBy("price").aggregate(Aggregate.max("product.code")));
+    assertThrows(IllegalArgumentException.class,
+        () -> products.aggregate(Aggregate.sum("missing")));
+  }
 }
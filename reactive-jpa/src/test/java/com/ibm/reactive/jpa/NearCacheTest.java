@@ -0,0 +1,63 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.ibm.reactive.jpa.resources.Event;
+import com.ibm.reactive.jpa.resources.Person;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+public class NearCacheTest {
+
+  @Test
+  public void testPutGetInvalidate() {
+    NearCache cache = new NearCache(10, Duration.ofMinutes(1));
+    cache.put(Person.class, 1L, () -> new Person(1, "Ailed"));
+    Person person = cache.get(Person.class, 1L);
+    assertEquals("Ailed", person.getName());
+    // every caller gets its own copy
+    assertNotSame(person, cache.get(Person.class, 1L));
+    assertNull(cache.get(Event.class, 1L));
+
+    cache.invalidate(Person.class, 1L);
+    assertNull(cache.get(Person.class, 1L));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() {
+    NearCache cache = new NearCache(2, Duration.ofMinutes(1));
+    cache.put(Person.class, 1L, () -> new Person(1, "Ailed"));
+    cache.put(Person.class, 2L, () -> new Person(2, "Alex"));
+    cache.get(Person.class, 1L);
+    cache.put(Person.class, 3L, () -> new Person(3, "Efrain"));
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get(Person.class, 2L));
+    assertEquals("Ailed", cache.get(Person.class, 1L).getName());
+  }
+
+  @Test
+  public void testStaleEntriesAreIgnored() throws InterruptedException {
+    NearCache cache = new NearCache(2, Duration.ofMillis(1));
+    cache.put(Person.class, 1L, () -> new Person(1, "Ailed"));
+    Thread.sleep(5);
+    assertNull(cache.get(Person.class, 1L));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testInvalidConfiguration() {
+    assertThrows(IllegalArgumentException.class, () -> new NearCache(0, Duration.ZERO));
+    assertThrows(IllegalArgumentException.class,
+        () -> new NearCache(1, Duration.ofSeconds(-1)));
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class PriorityTest {
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 5, 8, 20})
+  public void testQuotas(int workers) {
+    assertEquals(workers, Priority.INTERACTIVE.quota(workers));
+    assertTrue(Priority.BATCH.quota(workers) >= 1);
+    assertTrue(Priority.BACKGROUND.quota(workers) >= 1);
+    if (workers > 2) {
+      // interactive calls always have at least one worker of their own
+      assertTrue(Priority.BATCH.quota(workers) + Priority.BACKGROUND.quota(workers) < workers);
+    }
+  }
+
+  @Test
+  public void testDefaultPoolQuotas() {
+    int workers = PoolConfiguration.MAX_POOL_SIZE;
+    assertEquals(3, Priority.BATCH.quota(workers));
+    assertEquals(1, Priority.BACKGROUND.quota(workers));
+  }
+}
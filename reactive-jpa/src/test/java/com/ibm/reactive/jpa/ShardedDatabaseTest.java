@@ -0,0 +1,165 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.ibm.reactive.jpa.annotation.Integration;
+import com.ibm.reactive.jpa.resources.Person;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@Integration
+public class ShardedDatabaseTest {
+
+  private static final List<String> NAMES = Arrays.asList("Ailed", "Alex", "Efrain", "Ellen",
+      "Javier", "Luis", "Marie", "Sarah", "Tomas");
+
+  private static ShardedDatabase sharded;
+
+  @BeforeAll
+  public static void createShards() {
+    List<Database> shards = new ArrayList<>(3);
+    for (int index = 0; index < 3; index++) {
+      Map<String, String> settings = new HashMap<>();
+      settings.put("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
+      settings.put("hibernate.connection.url", "jdbc:hsqldb:mem:shard" + index);
+      settings.put("hibernate.connection.username", "sa");
+      settings.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+      settings.put("hibernate.hbm2ddl.auto", "create-drop");
+      shards.add(new Database(settings,
+          Collections.singletonList(Person.class.getPackage().getName())));
+    }
+    sharded = new ShardedDatabase(shards, ShardFunction.HASH, 2);
+    Flux.fromIterable(NAMES)
+        .flatMap(name -> sharded.route(name, database -> database
+            .execute(entityManager -> {
+              entityManager.persist(new Person(name));
+              return name;
+            })
+            .transaction(TransactionDefinition.builder().build())
+            .mono()))
+        .blockLast();
+  }
+
+  @AfterAll
+  public static void closeShards() {
+    sharded.getShards().forEach(database -> database.getSessionFactory().close());
+  }
+
+  @Test
+  public void testRoutedByKey() {
+    for (String name : NAMES) {
+      long count = sharded.execute(name, entityManager -> entityManager
+          .createQuery("select count(p) from PERSON p where p.name = :name", Long.class)
+          .setParameter("name", name)
+          .getSingleResult())
+          .mono()
+          .block();
+      assertEquals(1, count);
+    }
+    assertEquals(sharded.getShards().get(sharded.shardIndex("Luis")), sharded.shard("Luis"));
+  }
+
+  @Test
+  public void testExecuteInTransactionCommits() {
+    TransactionDefinition transaction = TransactionDefinition.builder().build();
+    sharded
+        .execute("Zoe", entityManager -> {
+          entityManager.persist(new Person("Zoe"));
+          return "Zoe";
+        })
+        .transaction(transaction)
+        .mono()
+        .block();
+    try {
+      assertEquals(1, countOnShard("Zoe"));
+    } finally {
+      sharded.execute("Zoe", entityManager -> entityManager
+          .createQuery("delete from PERSON p where p.name = :name")
+          .setParameter("name", "Zoe")
+          .executeUpdate())
+          .transaction(transaction)
+          .priority(Priority.BATCH)
+          .mono()
+          .block();
+    }
+    assertEquals(0, countOnShard("Zoe"));
+  }
+
+  @Test
+  public void testScatterSorted() {
+    Flux<String> names = sharded
+        .scatter(database -> database
+            .stream("from PERSON person order by person.name", Person.class)
+            .flux(), Comparator.comparing(Person::getName), 2)
+        .map(Person::getName);
+
+    StepVerifier.create(names)
+        .expectNextSequence(NAMES)
+        .verifyComplete();
+  }
+
+  @Test
+  public void testScatterUnordered() {
+    List<String> names = sharded
+        .scatter(database -> database
+            .stream("from PERSON person", Person.class)
+            .flux())
+        .map(Person::getName)
+        .collectList()
+        .block();
+
+    assertEquals(NAMES, names.stream().sorted().collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testStreamBuilder() {
+    Flux<String> names = sharded
+        .stream("from PERSON person where person.name > :after order by person.name",
+            Person.class)
+        .addParameter("after", "B")
+        .fetchSize(2)
+        .maxResults(3)
+        .flux(Comparator.comparing(Person::getName))
+        .map(Person::getName);
+
+    StepVerifier.create(names)
+        .expectNextSequence(NAMES.subList(2, 5))
+        .verifyComplete();
+  }
+
+  @Test
+  public void testInvalidShardFunction() {
+    ShardedDatabase invalid = new ShardedDatabase(sharded.getShards(), (key, shards) -> shards,
+        1);
+    assertThrows(IllegalStateException.class, () -> invalid.shardIndex("Luis"));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ShardedDatabase(Collections.emptyList()));
+  }
+
+  private static long countOnShard(String name) {
+    return sharded.execute(name, entityManager -> entityManager
+        .createQuery("select count(p) from PERSON p where p.name = :name", Long.class)
+        .setParameter("name", name)
+        .getSingleResult())
+        .mono()
+        .block();
+  }
+}
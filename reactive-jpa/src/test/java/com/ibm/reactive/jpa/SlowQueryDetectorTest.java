@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ibm.reactive.jpa.SlowQuery.Kind;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class SlowQueryDetectorTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void testThresholds() {
+    SlowQueryDetector detector = SlowQueryDetector.builder()
+        .executionThreshold(Duration.ofMillis(500))
+        .streamThreshold(Duration.ofSeconds(10))
+        .minRowsPerSecond(100)
+        .build();
+    assertFalse(detector.isSlow(Kind.EXECUTION, SECOND / 4, 0));
+    assertTrue(detector.isSlow(Kind.EXECUTION, SECOND, 0));
+    assertTrue(detector.isSlow(Kind.STREAM, 10 * SECOND, 1_000_000));
+    // 50 rows per second
+    assertTrue(detector.isSlow(Kind.STREAM, 2 * SECOND, 100));
+    assertFalse(detector.isSlow(Kind.STREAM, 2 * SECOND, 1000));
+    // too short for a rate
+    assertFalse(detector.isSlow(Kind.STREAM, SECOND / 2, 1));
+  }
+
+  @Test
+  public void testRecentKeepsTheLastOffenders() {
+    SlowQueryDetector detector = SlowQueryDetector.builder()
+        .capacity(2)
+        .build();
+    detector.report(query("first"));
+    detector.report(query("second"));
+    detector.report(query("third"));
+
+    List<SlowQuery> recent = detector.recent();
+    assertEquals(2, recent.size());
+    assertEquals("third", recent.get(0).getQuery());
+    assertEquals("second", recent.get(1).getQuery());
+    assertEquals(3, detector.getOffenders());
+  }
+
+  @Test
+  public void testSampling() {
+    SlowQueryDetector detector = SlowQueryDetector.builder()
+        .sampleRate(2)
+        .build();
+    for (int index = 0; index < 5; index++) {
+      detector.report(query("query " + index));
+    }
+    assertEquals(3, detector.recent().size());
+    assertEquals("query 4", detector.recent().get(0).getQuery());
+    assertEquals(5, detector.getOffenders());
+  }
+
+  @Test
+  public void testParameters() {
+    SlowQueryDetector redacted = SlowQueryDetector.defaultDetector();
+    assertEquals("{name=?}", redacted.describe(Collections.singletonMap("name", "Sarah")));
+    assertEquals("[?, ?]", redacted.describe(Arrays.asList(1, "secret")));
+
+    SlowQueryDetector visible = SlowQueryDetector.builder()
+        .redactParameters(false)
+        .build();
+    assertEquals("{name=Sarah}", visible.describe(Collections.singletonMap("name", "Sarah")));
+    assertEquals("[1, secret]", visible.describe(Arrays.asList(1, "secret")));
+  }
+
+  @Test
+  public void testOpenStreamIsReportedOnce() {
+    SlowQueryDetector detector = SlowQueryDetector.builder()
+        .streamThreshold(Duration.ofSeconds(10))
+        .checkInterval(Duration.ofHours(1))
+        .build();
+    Object slow = new Object();
+    Object fast = new Object();
+    detector.opened(slow, () -> stream("slow", 20 * SECOND));
+    detector.opened(fast, () -> stream("fast", SECOND));
+    assertEquals(2, detector.getOpenStreams());
+
+    detector.checkOpenStreams();
+    detector.checkOpenStreams();
+    assertEquals(1, detector.getOffenders());
+    assertEquals("slow", detector.recent().get(0).getQuery());
+    // the closing stream learns it was already reported
+    assertFalse(detector.closed(slow));
+    assertTrue(detector.closed(fast));
+    assertEquals(0, detector.getOpenStreams());
+  }
+
+  @Test
+  public void testInvalidCapacity() {
+    assertThrows(IllegalArgumentException.class,
+        () -> SlowQueryDetector.builder().capacity(0).build());
+  }
+
+  @Test
+  public void testInvalidCheckInterval() {
+    assertThrows(IllegalArgumentException.class,
+        () -> SlowQueryDetector.builder().checkInterval(Duration.ZERO).build());
+  }
+
+  private static SlowQuery stream(String query, long totalNanos) {
+    return new SlowQuery(Kind.STREAM, query, null, null, 5, Instant.now(), 1, 2, 3, totalNanos,
+        totalNanos / SECOND * 1000);
+  }
+
+  private static SlowQuery query(String query) {
+    return new SlowQuery(Kind.STREAM, query, null, null, 5, Instant.now(), 1, 2, 3, 4, 0);
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+
+public class StatsSnapshotTest {
+
+  @Test
+  public void testSnapshotOrdering() {
+    Statistics statistics = mock(Statistics.class);
+    QueryStatistics fast = mock(QueryStatistics.class);
+    QueryStatistics slow = mock(QueryStatistics.class);
+    EntityStatistics person = mock(EntityStatistics.class);
+    EntityStatistics event = mock(EntityStatistics.class);
+    CollectionStatistics roles = mock(CollectionStatistics.class);
+    when(statistics.isStatisticsEnabled()).thenReturn(true);
+    when(statistics.getQueries()).thenReturn(new String[]{"fast", "slow"});
+    when(statistics.getQueryStatistics("fast")).thenReturn(fast);
+    when(statistics.getQueryStatistics("slow")).thenReturn(slow);
+    when(fast.getExecutionCount()).thenReturn(10L);
+    when(fast.getExecutionAvgTime()).thenReturn(1L);
+    when(slow.getExecutionCount()).thenReturn(2L);
+    when(slow.getExecutionAvgTime()).thenReturn(50L);
+    when(statistics.getEntityNames()).thenReturn(new String[]{"Event", "Person"});
+    when(statistics.getEntityStatistics("Event")).thenReturn(event);
+    when(statistics.getEntityStatistics("Person")).thenReturn(person);
+    when(event.getFetchCount()).thenReturn(1L);
+    when(person.getFetchCount()).thenReturn(100L);
+    when(person.getLoadCount()).thenReturn(100L);
+    when(statistics.getCollectionRoleNames()).thenReturn(new String[]{"Person.roles"});
+    when(statistics.getCollectionStatistics("Person.roles")).thenReturn(roles);
+    when(roles.getFetchCount()).thenReturn(7L);
+    when(statistics.getEntityFetchCount()).thenReturn(101L);
+
+    StatsSnapshot snapshot = StatsSnapshot.of(statistics);
+    assertEquals("slow", snapshot.getQueries().get(0).getQuery());
+    assertEquals(100, snapshot.getQueries().get(0).getTotalTime());
+    assertEquals("Person", snapshot.getEntities().get(0).getName());
+    assertEquals(100, snapshot.getEntities().get(0).getLoads());
+    assertEquals(7, snapshot.getCollections().get(0).getFetches());
+    assertEquals(101, snapshot.getEntityFetches());
+  }
+}
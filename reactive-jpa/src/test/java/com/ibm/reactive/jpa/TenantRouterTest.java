@@ -0,0 +1,98 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ibm.reactive.jpa.annotation.Integration;
+import com.ibm.reactive.jpa.resources.Event;
+import com.ibm.reactive.jpa.util.FairExecutor.LaneMetrics;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@Integration
+public class TenantRouterTest {
+
+  private static TenantRouter router;
+
+  @BeforeAll
+  public static void createRouter() {
+    router = new TenantRouter(2,
+        Collections.singletonList(Event.class.getPackage().getName()),
+        tenant -> tenant.startsWith("unknown") ? null : TenantConfiguration.builder()
+            .settings(settings(tenant))
+            .build());
+  }
+
+  @AfterAll
+  public static void closeRouter() {
+    router.close();
+  }
+
+  private static Map<String, String> settings(String tenant) {
+    Map<String, String> settings = new HashMap<>();
+    settings.put("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
+    settings.put("hibernate.connection.url", "jdbc:hsqldb:mem:tenant-" + tenant);
+    settings.put("hibernate.connection.username", "sa");
+    settings.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+    settings.put("hibernate.hbm2ddl.auto", "update");
+    return settings;
+  }
+
+  private static Mono<Long> insertAndCount(String tenant, int events) {
+    return router
+        .route(database -> database
+            .execute(entityManager -> {
+              for (int index = 0; index < events; index++) {
+                Event event = new Event();
+                event.setType(tenant);
+                entityManager.persist(event);
+              }
+              return events;
+            })
+            .transaction(TransactionDefinition.builder().build())
+            .mono())
+        .then(router.execute(entityManager -> entityManager
+            .createQuery("select count(e) from EVENT e", Long.class)
+            .getSingleResult()))
+        .subscriberContext(TenantRouter.tenant(tenant));
+  }
+
+  @Test
+  public void routesByTenant() {
+    StepVerifier.create(insertAndCount("a", 3))
+        .expectNext(3L)
+        .verifyComplete();
+    StepVerifier.create(insertAndCount("b", 1))
+        .expectNext(1L)
+        .verifyComplete();
+
+    Map<String, LaneMetrics> metrics = router.metrics();
+    assertTrue(metrics.get("a").getCompleted() >= 2);
+    assertEquals(0, metrics.get("b").getQueued());
+  }
+
+  @Test
+  public void failsWithoutTenant() {
+    StepVerifier.create(router.execute(entityManager -> 1))
+        .verifyError(IllegalStateException.class);
+  }
+
+  @Test
+  public void failsWithUnknownTenant() {
+    StepVerifier.create(router.execute(entityManager -> 1)
+        .subscriberContext(TenantRouter.tenant("unknown")))
+        .verifyError(IllegalArgumentException.class);
+  }
+}
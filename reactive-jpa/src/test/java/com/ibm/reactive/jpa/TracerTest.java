@@ -0,0 +1,183 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.ibm.reactive.jpa.implementation.DefaultStreamer;
+import com.ibm.reactive.jpa.util.ReactiveUtils;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+public class TracerTest {
+
+  private final Execution<Object> execution = function -> function.apply(null);
+  private ExecutorService service;
+
+  @BeforeEach
+  public void createService() {
+    service = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterEach
+  public void shutdownService() {
+    service.shutdownNow();
+    MDC.clear();
+  }
+
+  @Test
+  public void testMdcOfTheSubscribingThread() {
+    MDC.put("request", "42");
+    Object request = ReactiveUtils
+        .execute(service, execution, entityManager -> MDC.get("request"), new MdcTracer())
+        .block();
+    assertEquals("42", request);
+
+    MDC.clear();
+    Object cleared = ReactiveUtils
+        .execute(service, execution, entityManager -> String.valueOf(MDC.get("request")))
+        .block();
+    assertEquals("null", cleared);
+  }
+
+  @Test
+  public void testMdcOfTheContext() {
+    StepVerifier.create(ReactiveUtils
+        .execute(service, execution, entityManager -> MDC.get("request"), new MdcTracer())
+        .subscriberContext(Context.of(MdcTracer.MDC_KEY,
+            Collections.singletonMap("request", "43"))))
+        .expectNext("43")
+        .verifyComplete();
+    assertNull(MDC.get("request"));
+  }
+
+  @Test
+  public void testExecuteSpan() throws InterruptedException {
+    RecordingTracer tracer = new RecordingTracer();
+    StepVerifier.create(ReactiveUtils
+        .execute(service, execution, entityManager -> Arrays.asList(1, 2, 3), tracer))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    assertTrue(tracer.finished.await(1, TimeUnit.SECONDS));
+    assertEquals(Tracer.Span.EXECUTE, tracer.operation);
+    assertEquals(3, tracer.rows);
+    assertTrue(tracer.phases.keySet().containsAll(Arrays.asList(Tracer.Span.QUEUE,
+        Tracer.Span.EXECUTE, Tracer.Span.TOTAL)));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testStreamSpan() throws InterruptedException {
+    DefaultStreamer<String> streamer = mock(DefaultStreamer.class);
+    when(streamer.getDescription()).thenReturn("from EVENT");
+    doAnswer(invocation -> {
+      FluxSink<String> sink = invocation.getArgument(0);
+      sink.next("a");
+      sink.next("b");
+      sink.complete();
+      return null;
+    }).when(streamer).stream(any());
+    RecordingTracer tracer = new RecordingTracer();
+
+    StepVerifier.create(ReactiveUtils.stream(service, streamer, tracer))
+        .expectNext("a", "b")
+        .verifyComplete();
+
+    assertTrue(tracer.finished.await(1, TimeUnit.SECONDS));
+    assertEquals(Tracer.Span.STREAM, tracer.operation);
+    assertEquals("from EVENT", tracer.query);
+    assertEquals(2, tracer.rows);
+    assertTrue(tracer.phases.containsKey(Tracer.Span.FIRST_ROW));
+  }
+
+  @Test
+  public void testMdcOfEveryTaskOfAStream() {
+    MDC.put("request", "44");
+    Flux<String> rows = ReactiveUtils.stream("native", new MdcTracer(), restore -> Flux
+        .<String>generate(sink -> sink.next(String.valueOf(MDC.get("request"))))
+        .take(3)
+        .subscribeOn(Schedulers.fromExecutor(restore.apply(service))));
+
+    // each request is a new task of the worker, the later ones must see the context too
+    StepVerifier.create(rows, 1)
+        .expectNext("44")
+        .thenRequest(2)
+        .expectNext("44", "44")
+        .verifyComplete();
+  }
+
+  @Test
+  public void testErrorSpan() throws InterruptedException {
+    RecordingTracer tracer = new RecordingTracer();
+    StepVerifier.create(ReactiveUtils.execute(service, execution, entityManager -> {
+      throw new IllegalStateException();
+    }, tracer))
+        .verifyError(IllegalStateException.class);
+    assertTrue(tracer.finished.await(1, TimeUnit.SECONDS));
+    assertTrue(tracer.error instanceof IllegalStateException);
+  }
+
+  private static class RecordingTracer implements Tracer, Tracer.Span {
+
+    private final Map<String, Long> phases = new ConcurrentHashMap<>();
+    private volatile String operation;
+    private volatile String query;
+    private volatile long rows;
+    private volatile Throwable error;
+    // the span is finished right after the terminal signal reaches the subscriber
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    @Override
+    public Span start(String operation, String query, Context context) {
+      this.operation = operation;
+      this.query = query;
+      return this;
+    }
+
+    @Override
+    public void phase(String name, long nanos) {
+      phases.put(name, nanos);
+    }
+
+    @Override
+    public void rows(long rows) {
+      this.rows = rows;
+    }
+
+    @Override
+    public void error(Throwable error) {
+      this.error = error;
+    }
+
+    @Override
+    public void finish() {
+      finished.countDown();
+    }
+  }
+}
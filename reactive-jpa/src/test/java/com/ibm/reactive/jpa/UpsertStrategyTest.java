@@ -0,0 +1,39 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.stream.Stream;
+import org.hibernate.dialect.DB2Dialect;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.MySQL57Dialect;
+import org.hibernate.dialect.PostgreSQL95Dialect;
+import org.hibernate.dialect.SQLServer2012Dialect;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class UpsertStrategyTest {
+
+  static Stream<Arguments> dialectArguments() {
+    return Stream.of(
+        Arguments.of(new HSQLDialect(), UpsertStrategy.MERGE),
+        Arguments.of(new PostgreSQL95Dialect(), UpsertStrategy.ON_CONFLICT),
+        Arguments.of(new MySQL57Dialect(), UpsertStrategy.ON_DUPLICATE_KEY),
+        Arguments.of(new SQLServer2012Dialect(), UpsertStrategy.FALLBACK),
+        Arguments.of(new DB2Dialect(), UpsertStrategy.FALLBACK)
+    );
+  }
+
+  @ParameterizedTest
+  @MethodSource("dialectArguments")
+  public void testStrategyOfDialect(Dialect dialect, UpsertStrategy strategy) {
+    assertEquals(strategy, UpsertStrategy.of(dialect));
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveFetchSizeTest {
+
+  @Test
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new AdaptiveFetchSize(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> new AdaptiveFetchSize(1, 0));
+  }
+
+  @Test
+  public void testGrowsWhileDemandIsPending() {
+    AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(5, 1024 * 1024);
+    assertEquals(5, fetchSize.getFetchSize());
+    assertEquals(10, fetchSize.next(100, Long.MAX_VALUE));
+    assertEquals(20, fetchSize.next(100, Long.MAX_VALUE));
+    assertEquals(40, fetchSize.next(100, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testLimitedByMemoryBudget() {
+    AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(5, 1000);
+    assertEquals(10, fetchSize.next(100, Long.MAX_VALUE));
+    assertEquals(10, fetchSize.next(100, Long.MAX_VALUE));
+    // rows wider than the budget never go below the initial fetch size
+    assertEquals(5, fetchSize.next(10_000, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testLimitedByMaxFetchSize() {
+    AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(AdaptiveFetchSize.MAX_FETCH_SIZE, 1L << 40);
+    assertEquals(AdaptiveFetchSize.MAX_FETCH_SIZE, fetchSize.next(1, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testFollowsDemand() {
+    AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(5, 1024 * 1024);
+    assertEquals(10, fetchSize.next(100, Long.MAX_VALUE));
+    assertEquals(7, fetchSize.next(100, 7));
+    assertEquals(5, fetchSize.next(100, 1));
+  }
+
+  @Test
+  public void testShrinksWhenConsumerStalls() {
+    AdaptiveFetchSize fetchSize = new AdaptiveFetchSize(5, 1024 * 1024);
+    fetchSize.next(100, Long.MAX_VALUE);
+    fetchSize.next(100, Long.MAX_VALUE);
+    assertEquals(20, fetchSize.getFetchSize());
+    assertEquals(10, fetchSize.next(100, 0));
+    assertEquals(5, fetchSize.next(100, 0));
+    assertEquals(5, fetchSize.next(100, 0));
+  }
+
+}
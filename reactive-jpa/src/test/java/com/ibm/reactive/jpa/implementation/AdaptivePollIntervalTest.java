@@ -0,0 +1,40 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class AdaptivePollIntervalTest {
+
+  @Test
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new AdaptivePollInterval(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> new AdaptivePollInterval(10, 5));
+  }
+
+  @Test
+  public void testBacksOffWhileIdle() {
+    AdaptivePollInterval interval = new AdaptivePollInterval(100, 500);
+    assertEquals(200, interval.next(0, 10));
+    assertEquals(400, interval.next(0, 10));
+    assertEquals(500, interval.next(0, 10));
+    assertEquals(500, interval.next(0, 10));
+  }
+
+  @Test
+  public void testSpeedsUpUnderLoad() {
+    AdaptivePollInterval interval = new AdaptivePollInterval(100, 500);
+    interval.next(0, 10);
+    interval.next(0, 10);
+    assertEquals(0, interval.next(10, 10));
+    assertEquals(100, interval.next(3, 10));
+    assertEquals(200, interval.next(0, 10));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.ibm.reactive.jpa.Aggregate;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class AggregationTest {
+
+  private final Aggregation totals = new Aggregation(
+      Arrays.asList(Aggregate.count(), Aggregate.sum("price")), null);
+  private final Aggregation byName = new Aggregation(
+      Collections.singletonList(Aggregate.max("product.price")), "name");
+
+  @Test
+  public void testCompile() {
+    assertEquals("select count(product), sum(product.price) from PRODUCT product"
+            + " where product.price > :price",
+        totals.compile("from PRODUCT product where product.price > :price order by product.id"));
+    assertEquals("select product.name, max(product.price) from PRODUCT product"
+            + " group by product.name order by product.name",
+        byName.compile("select product from PRODUCT as product"));
+  }
+
+  @Test
+  public void testQueriesWhichCannotBeCompiled() {
+    assertNull(totals.compile(null));
+    assertNull(totals.compile("from PRODUCT"));
+    assertNull(totals.compile("from PRODUCT where price > 1"));
+    assertNull(totals.compile("select product.name from PRODUCT product"));
+    assertNull(totals.compile("from PROJECT project join fetch project.tasks"));
+    assertNull(totals.compile("from PRODUCT product group by product.name"));
+  }
+
+  @Test
+  public void testFromResults() {
+    Map<Object, List<Number>> groups = byName.fromResults(Arrays.asList(
+        new Object[] {"a", 1L}, new Object[] {"b", 2L}));
+    assertEquals(Arrays.asList("a", "b"), Arrays.asList(groups.keySet().toArray()));
+    assertEquals(Collections.singletonList(2L), groups.get("b"));
+    assertEquals(Arrays.asList(0L, null), totals
+        .fromResults(Collections.singletonList(new Object[] {0L, null})).get(null));
+  }
+
+  @Test
+  public void testAccumulators() {
+    Accumulator sum = Accumulator.of(Aggregate.Function.SUM);
+    assertNull(sum.result());
+    sum.add(1);
+    sum.add(null);
+    sum.add(2L);
+    assertEquals(3L, sum.result());
+    sum.add(0.5);
+    assertEquals(3.5, sum.result());
+
+    Accumulator decimals = Accumulator.of(Aggregate.Function.SUM);
+    decimals.add(BigDecimal.ONE);
+    decimals.add(BigDecimal.TEN);
+    assertEquals(new BigDecimal(11), decimals.result());
+
+    Accumulator count = Accumulator.of(Aggregate.Function.COUNT);
+    count.add("a");
+    count.add(null);
+    assertEquals(1L, count.result());
+
+    Accumulator average = Accumulator.of(Aggregate.Function.AVG);
+    assertNull(average.result());
+    average.add(1);
+    average.add(2);
+    assertEquals(1.5, average.result());
+
+    Accumulator min = Accumulator.of(Aggregate.Function.MIN);
+    Accumulator max = Accumulator.of(Aggregate.Function.MAX);
+    for (long value : new long[] {3, 1, 2}) {
+      min.add(value);
+      max.add(value);
+    }
+    assertEquals(1L, min.result());
+    assertEquals(3L, max.result());
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ibm.reactive.jpa.ConflictMetrics;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.RollbackException;
+import org.hibernate.StaleObjectStateException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class ConflictRetryTest {
+
+  @Test
+  public void testConflictsAreDetectedInCauses() {
+    assertTrue(ConflictRetry.isConflict(new OptimisticLockException()));
+    assertTrue(ConflictRetry.isConflict(
+        new RollbackException(new StaleObjectStateException("Account", 1L))));
+    assertFalse(ConflictRetry.isConflict(new IllegalStateException()));
+  }
+
+  @Test
+  public void testDelayIsJitteredAndGrows() {
+    Duration backoff = Duration.ofMillis(10);
+    for (int attempt = 0; attempt < 5; attempt++) {
+      Duration delay = ConflictRetry.delay(backoff, attempt);
+      long max = backoff.toNanos() << attempt;
+      assertTrue(delay.toNanos() >= max / 2 && delay.toNanos() <= max);
+    }
+    assertEquals(Duration.ZERO, ConflictRetry.delay(Duration.ZERO, 3));
+  }
+
+  @Test
+  public void testRetriedUntilSuccess() {
+    AtomicInteger attempts = new AtomicInteger();
+    ConflictMetrics metrics = new ConflictMetrics();
+    Mono<Integer> execution = Mono.defer(() -> attempts.incrementAndGet() < 3
+        ? Mono.error(new OptimisticLockException())
+        : Mono.just(attempts.get()));
+
+    StepVerifier.create(ConflictRetry.retry(execution, 3, Duration.ofMillis(1), metrics))
+        .expectNext(3)
+        .verifyComplete();
+    assertEquals(2, metrics.getConflicts());
+    assertEquals(2, metrics.getRetries());
+    assertEquals(1, metrics.getRecovered());
+    assertEquals(0, metrics.getExhausted());
+  }
+
+  @Test
+  public void testRetriesAreExhausted() {
+    AtomicInteger attempts = new AtomicInteger();
+    ConflictMetrics metrics = new ConflictMetrics();
+    Mono<Integer> execution = Mono.defer(() -> {
+      attempts.incrementAndGet();
+      return Mono.error(new OptimisticLockException());
+    });
+
+    StepVerifier.create(ConflictRetry.retry(execution, 2, Duration.ofMillis(1), metrics))
+        .verifyError(OptimisticLockException.class);
+    assertEquals(3, attempts.get());
+    assertEquals(3, metrics.getConflicts());
+    assertEquals(1, metrics.getExhausted());
+    assertEquals(0, metrics.getRecovered());
+  }
+
+  @Test
+  public void testOtherErrorsAreNotRetried() {
+    AtomicInteger attempts = new AtomicInteger();
+    Mono<Integer> execution = Mono.defer(() -> {
+      attempts.incrementAndGet();
+      return Mono.error(new IllegalStateException());
+    });
+
+    StepVerifier.create(ConflictRetry.retry(execution, 2, Duration.ofMillis(1),
+        new ConflictMetrics()))
+        .verifyError(IllegalStateException.class);
+    assertEquals(1, attempts.get());
+  }
+}
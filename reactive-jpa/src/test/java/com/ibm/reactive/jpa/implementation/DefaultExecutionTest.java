@@ -9,16 +9,21 @@ package com.ibm.reactive.jpa.implementation;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.ibm.reactive.jpa.IsolationLevel;
+import com.ibm.reactive.jpa.SlowQuery;
+import com.ibm.reactive.jpa.SlowQueryDetector;
 import com.ibm.reactive.jpa.TransactionDefinition;
 import com.ibm.reactive.jpa.lombok.LombokTestUtil;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
 import java.util.stream.Stream;
 import javax.persistence.EntityManager;
 import org.hibernate.FlushMode;
@@ -209,4 +214,36 @@ public class DefaultExecutionTest {
 
   }
 
+  @Test
+  public void testSlowExecutionIsReported() throws SQLException {
+    SlowQueryDetector detector = SlowQueryDetector.builder()
+        .executionThreshold(Duration.ZERO)
+        .build();
+    when(factory.createEntityManager()).thenReturn(entityManager);
+    when(entityManager.unwrap(Session.class)).thenReturn(session);
+    when(session.connection()).thenReturn(connection);
+    DefaultExecution<Integer> execution = new DefaultExecution<>(null, factory, detector);
+
+    assertEquals(Integer.valueOf(1), execution.execute(entityManager -> 1));
+    // the connection is obtained before the function runs so that acquiring it is timed apart
+    verify(session).connection();
+    List<SlowQuery> recent = detector.recent();
+    assertEquals(1, recent.size());
+    assertEquals(SlowQuery.Kind.EXECUTION, recent.get(0).getKind());
+    assertTrue(recent.get(0).getAcquireNanos() >= 0);
+    assertEquals(-1, recent.get(0).getFirstRowNanos());
+    assertEquals(1, detector.getOffenders());
+  }
+
+  @Test
+  public void testExecutionInOuterTransactionIsReported() {
+    SlowQueryDetector detector = SlowQueryDetector.builder()
+        .executionThreshold(Duration.ZERO)
+        .build();
+    DefaultExecution<Integer> execution = new DefaultExecution<>(null, factory, detector);
+
+    assertEquals(Integer.valueOf(1), execution.execute(entityManager, manager -> 1));
+    assertEquals(1, detector.getOffenders());
+    assertEquals(SlowQuery.Kind.EXECUTION, detector.recent().get(0).getKind());
+  }
 }
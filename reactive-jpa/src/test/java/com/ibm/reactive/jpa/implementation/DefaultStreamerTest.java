@@ -10,6 +10,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.ibm.reactive.jpa.IsolationLevel;
@@ -17,9 +19,11 @@ import com.ibm.reactive.jpa.lombok.LombokTestUtil;
 import com.ibm.reactive.jpa.resources.Person;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Queue;
 import java.util.stream.Stream;
 import javax.persistence.PersistenceException;
 import org.hibernate.ScrollMode;
@@ -118,6 +122,23 @@ public class DefaultStreamerTest {
         .verify();
   }
 
+  @Test
+  public void testAdaptiveFetchSizeWithoutResultSet() throws SQLException {
+    setupTransactionMocks(null);
+    DefaultStreamer<Person> defaultStreamer = DefaultStreamer.<Person>builder()
+        .query(QUERY)
+        .type(Person.class)
+        .sessionFactory(factory)
+        .fetchSize(DefaultStreamer.DEFAULT_FETCH_SIZE)
+        .fetchMemoryBudget(AdaptiveFetchSize.DEFAULT_MEMORY_BUDGET)
+        .build();
+    Flux<Person> flux = Flux.create(defaultStreamer::stream);
+    StepVerifier.create(flux)
+        .expectNext(PERSON)
+        .expectComplete()
+        .verify();
+  }
+
   @Test
   public void testSuccessfulWithParametersExecution()
       throws SQLException {
@@ -270,6 +291,33 @@ public class DefaultStreamerTest {
         .verifyError(RuntimeException.class);
   }
 
+  @Test
+  public void testPagedStreamingReleasesTheWorkerBetweenPages() {
+    when(factory.openStatelessSession()).thenReturn(session);
+    when(session.createQuery(QUERY, Person.class)).thenReturn(query);
+    when(query.setFetchSize(1)).thenReturn(query);
+    when(query.setReadOnly(true)).thenReturn(query);
+    when(query.scroll(ScrollMode.FORWARD_ONLY)).thenReturn(results);
+    when(results.next()).thenReturn(true, true, false);
+    when(results.get(0)).thenReturn(PERSON);
+    Queue<Runnable> pages = new ArrayDeque<>();
+    DefaultStreamer<Person> streamer = DefaultStreamer.<Person>builder()
+        .query(QUERY)
+        .type(Person.class)
+        .sessionFactory(factory)
+        .fetchSize(1)
+        .pageExecutor(pages::add)
+        .build();
+    StepVerifier.create(Flux.create(streamer::stream))
+        .expectNext(PERSON)
+        .then(() -> pages.poll().run())
+        .expectNext(PERSON)
+        .then(() -> pages.poll().run())
+        .verifyComplete();
+    verify(results, times(1)).close();
+    verify(session, times(1)).close();
+  }
+
   private void setupTransactionMocks(IsolationLevel level) throws SQLException {
     when(factory.openStatelessSession()).thenReturn(session);
     when(session.createQuery(QUERY, Person.class)).thenReturn(query);
@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.ibm.reactive.jpa.lombok.LombokTestUtil;
+import com.ibm.reactive.jpa.resources.Event;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class DefaultTailTest {
+
+  @Test
+  public void testLombokNullValidations() {
+    LombokTestUtil.testLombokNullValidations(Stream.of(
+        () -> DefaultTail.builder().build(),
+        () -> DefaultTail.builder().query("").build(),
+        () -> DefaultTail.<Event>builder().query("").type(Event.class).build(),
+        () -> DefaultTail.<Event>builder().query("").type(Event.class).cursorColumn("id")
+            .build()
+    ));
+  }
+
+  @Test
+  public void testComposeQueryWithoutCursor() {
+    assertEquals("from EVENT e order by e.id",
+        DefaultTail.composeQuery("from EVENT e", "e.id", false));
+  }
+
+  @Test
+  public void testComposeQueryWithoutConditions() {
+    assertEquals("from EVENT e where e.id > :tailCursor order by e.id",
+        DefaultTail.composeQuery("from EVENT e", "e.id", true));
+  }
+
+  @Test
+  public void testComposeQueryEnclosesConditions() {
+    assertEquals("from EVENT e WHERE (e.type = 'a' or e.type = 'b') and e.id > :tailCursor"
+            + " order by e.id",
+        DefaultTail.composeQuery("from EVENT e WHERE e.type = 'a' or e.type = 'b'", "e.id",
+            true));
+  }
+
+  @Test
+  public void testComposeQueryIgnoresWhereOfSubqueriesAndLiterals() {
+    assertEquals("from EVENT e where (e.data <> 'where' and e.type in (select t.type from TYPE t"
+            + " where t.active = true)) and e.id > :tailCursor order by e.id",
+        DefaultTail.composeQuery("from EVENT e where e.data <> 'where' and e.type in"
+            + " (select t.type from TYPE t where t.active = true)", "e.id", true));
+    assertEquals("from EVENT e join e.tags tag with tag.name <> 'where'"
+            + " where e.id > :tailCursor order by e.id",
+        DefaultTail.composeQuery("from EVENT e join e.tags tag with tag.name <> 'where'", "e.id",
+            true));
+  }
+}
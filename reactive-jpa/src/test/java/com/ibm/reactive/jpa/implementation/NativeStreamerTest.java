@@ -0,0 +1,143 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ibm.reactive.jpa.IsolationLevel;
+import com.ibm.reactive.jpa.lombok.LombokTestUtil;
+import com.ibm.reactive.jpa.resources.Person;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.stream.Stream;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.internal.StatelessSessionImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.test.StepVerifier;
+
+@ExtendWith({MockitoExtension.class})
+public class NativeStreamerTest {
+
+  private static final String SQL = "select id, name from PERSON where name = ?";
+
+  @Mock
+  SessionFactory factory;
+
+  @Mock
+  StatelessSessionImpl session;
+
+  @Mock
+  Connection connection;
+
+  @Mock
+  Transaction transaction;
+
+  @Mock
+  PreparedStatement statement;
+
+  @Mock
+  ResultSet resultSet;
+
+  @Test
+  public void testLombokNullValidations() {
+    LombokTestUtil.testLombokNullValidations(Stream.of(
+        () -> NativeStreamer.builder().build(),
+        () -> NativeStreamer.builder().sql(SQL).build(),
+        () -> NativeStreamer.<Person>builder().sql(SQL).mapper(NativeStreamerTest::map).build(),
+        () -> NativeStreamer.<Person>builder().sql(SQL).mapper(NativeStreamerTest::map)
+            .sessionFactory(factory).build()
+    ));
+  }
+
+  private static Person map(ResultSet resultSet, long rowNumber) throws SQLException {
+    return new Person(resultSet.getLong(1), resultSet.getString(2));
+  }
+
+  private NativeStreamer<Person> streamer(IsolationLevel level) {
+    return NativeStreamer.<Person>builder()
+        .sql(SQL)
+        .mapper(NativeStreamerTest::map)
+        .sessionFactory(factory)
+        .executor(Runnable::run)
+        .parameterList(Collections.singletonList("Javier"))
+        .isolationLevel(level)
+        .build();
+  }
+
+  private void setupMocks() throws SQLException {
+    when(factory.openStatelessSession()).thenReturn(session);
+    when(session.connection()).thenReturn(connection);
+    when(connection.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY)).thenReturn(statement);
+    when(statement.executeQuery()).thenReturn(resultSet);
+  }
+
+  @Test
+  public void testSuccessfulTransactionalExecution() throws SQLException {
+    setupMocks();
+    when(session.getTransaction()).thenReturn(transaction);
+    when(connection.getTransactionIsolation()).thenReturn(IsolationLevel.READ_COMMITTED
+        .getIsolation());
+    when(resultSet.next()).thenReturn(true, false);
+    when(resultSet.getLong(1)).thenReturn(1L);
+    when(resultSet.getString(2)).thenReturn("Javier");
+
+    StepVerifier.create(streamer(IsolationLevel.SERIALIZABLE).flux())
+        .expectNext(new Person(1, "Javier"))
+        .verifyComplete();
+
+    verify(statement, times(1)).setObject(1, "Javier");
+    verify(statement, times(1)).setFetchSize(DefaultStreamer.DEFAULT_FETCH_SIZE);
+    verify(transaction, times(1)).begin();
+    verify(transaction, times(1)).commit();
+    verify(connection, times(1)).setTransactionIsolation(
+        IsolationLevel.READ_COMMITTED.getIsolation());
+    verify(resultSet, times(1)).close();
+    verify(statement, times(1)).close();
+    verify(session, times(1)).close();
+  }
+
+  @Test
+  public void testCancellationClosesTheCursor() throws SQLException {
+    setupMocks();
+    when(resultSet.next()).thenReturn(true);
+    when(resultSet.getLong(1)).thenReturn(1L);
+    when(resultSet.getString(2)).thenReturn("Javier");
+
+    StepVerifier.create(streamer(null).flux(), 1)
+        .expectNext(new Person(1, "Javier"))
+        .thenCancel()
+        .verify();
+
+    verify(resultSet, times(1)).close();
+    verify(statement, times(1)).close();
+    verify(session, times(1)).close();
+  }
+
+  @Test
+  public void testMapperExceptionClosesTheCursor() throws SQLException {
+    setupMocks();
+    when(resultSet.next()).thenReturn(true);
+    when(resultSet.getLong(1)).thenThrow(new SQLException());
+
+    StepVerifier.create(streamer(null).flux())
+        .verifyError(SQLException.class);
+
+    verify(resultSet, times(1)).close();
+    verify(statement, times(1)).close();
+    verify(session, times(1)).close();
+  }
+}
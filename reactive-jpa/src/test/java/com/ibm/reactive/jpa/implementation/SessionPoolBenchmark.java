@@ -0,0 +1,59 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import com.ibm.reactive.jpa.TestUtil;
+import com.ibm.reactive.jpa.TransactionDefinition;
+import com.ibm.reactive.jpa.annotation.Benchmark;
+import com.ibm.reactive.jpa.resources.Person;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Short read-only lookups by identifier, each in a new session and in a reused session.
+ */
+@Benchmark
+public class SessionPoolBenchmark {
+
+  private static final int CALLS = 50_000;
+
+  private final SessionFactory sessionFactory = TestUtil.getDatabase().getSessionFactory();
+  private final TransactionDefinition readOnly = TransactionDefinition.builder()
+      .isReadonly(true)
+      .build();
+
+  @Test
+  public void newSessions() throws SQLException {
+    run("New sessions", new DefaultExecution<>(readOnly, sessionFactory));
+  }
+
+  @Test
+  public void reusedSessions() throws SQLException {
+    run("Reused sessions", new DefaultExecution<>(readOnly, sessionFactory, null,
+        new SessionPool(sessionFactory)));
+  }
+
+  private static void run(String name, DefaultExecution<Person> execution) throws SQLException {
+    long id = TestUtil.getPersons().get(0).getId();
+    // warm up
+    lookups(execution, id);
+    long start = System.nanoTime();
+    lookups(execution, id);
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    System.out.println(name + ": " + CALLS + " calls in " + millis + " ms, "
+        + (CALLS * 1000L / Math.max(1, millis)) + " calls/s");
+  }
+
+  private static void lookups(DefaultExecution<Person> execution, long id)
+      throws SQLException {
+    for (int call = 0; call < CALLS; call++) {
+      execution.execute(entityManager -> entityManager.find(Person.class, id));
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.ibm.reactive.jpa.IsolationLevel;
+import com.ibm.reactive.jpa.TestUtil;
+import com.ibm.reactive.jpa.TransactionDefinition;
+import com.ibm.reactive.jpa.annotation.Integration;
+import com.ibm.reactive.jpa.resources.Person;
+import java.sql.Connection;
+import java.sql.SQLException;
+import javax.persistence.EntityManager;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+
+@Integration
+public class SessionPoolTest {
+
+  private final SessionFactory sessionFactory = TestUtil.getDatabase().getSessionFactory();
+
+  @Test
+  public void testSessionIsResetBetweenCalls() throws SQLException {
+    SessionPool pool = new SessionPool(sessionFactory);
+    int defaultIsolation = new DefaultExecution<Integer>(null, sessionFactory)
+        .execute(entityManager -> isolation(entityManager));
+    long id = TestUtil.getPersons().get(0).getId();
+
+    TransactionDefinition readOnly = TransactionDefinition.builder()
+        .isReadonly(true)
+        .isolation(IsolationLevel.SERIALIZABLE)
+        .build();
+    EntityManager first = new DefaultExecution<EntityManager>(readOnly, sessionFactory, null,
+        pool).execute(entityManager -> {
+          entityManager.find(Person.class, id);
+          entityManager.unwrap(Session.class).setDefaultReadOnly(true);
+          return entityManager;
+        });
+
+    EntityManager second = new DefaultExecution<EntityManager>(null, sessionFactory, null, pool)
+        .execute(entityManager -> {
+          Session session = entityManager.unwrap(Session.class);
+          assertEquals(0, session.getStatistics().getEntityCount());
+          assertEquals(FlushMode.AUTO, session.getHibernateFlushMode());
+          assertFalse(session.isDefaultReadOnly());
+          assertEquals(defaultIsolation, isolation(entityManager));
+          assertFalse(readOnly(entityManager));
+          return entityManager;
+        });
+    assertSame(first, second);
+    assertEquals(1, pool.getCreated());
+    assertEquals(1, pool.getReused());
+  }
+
+  @Test
+  public void testSessionsWhichCannotBeResetAreClosed() throws SQLException {
+    SessionPool pool = new SessionPool(sessionFactory);
+    EntityManager changed = new DefaultExecution<EntityManager>(null, sessionFactory, null, pool)
+        .execute(entityManager -> {
+          entityManager.setProperty("javax.persistence.lock.timeout", 10);
+          return entityManager;
+        });
+    assertFalse(changed.isOpen());
+
+    EntityManager active = pool.acquire();
+    active.getTransaction().begin();
+    pool.release(active);
+    assertFalse(active.isOpen());
+    EntityManager next = pool.acquire();
+    assertNotSame(active, next);
+    next.close();
+    assertEquals(2, pool.getDiscarded());
+  }
+
+  @Test
+  public void testIdleSessionsAreClosedWithThePool() {
+    SessionPool pool = new SessionPool(sessionFactory);
+    EntityManager parked = pool.acquire();
+    pool.release(parked);
+    assertEquals(1, pool.getIdle());
+
+    pool.close();
+    assertFalse(parked.isOpen());
+    assertEquals(0, pool.getIdle());
+    // a session released after the close is not kept
+    EntityManager next = pool.acquire();
+    assertNotSame(parked, next);
+    pool.release(next);
+    assertFalse(next.isOpen());
+    assertEquals(0, pool.getIdle());
+  }
+
+  private static int isolation(EntityManager entityManager) {
+    return entityManager.unwrap(Session.class).doReturningWork(
+        Connection::getTransactionIsolation);
+  }
+
+  private static boolean readOnly(EntityManager entityManager) {
+    return entityManager.unwrap(Session.class).doReturningWork(Connection::isReadOnly);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+public class SortedMergeTest {
+
+  @Test
+  public void testInvalidPrefetch() {
+    assertThrows(IllegalArgumentException.class,
+        () -> SortedMerge.merge(Collections.emptyList(), Comparator.naturalOrder(), 0));
+  }
+
+  @Test
+  public void testMergedInOrder() {
+    Flux<Integer> merged = SortedMerge.merge(Arrays.asList(Flux.just(1, 4, 7),
+        Flux.just(2, 5, 8, 10), Flux.<Integer>empty(), Flux.just(3, 6, 9)),
+        Comparator.naturalOrder(), 2);
+
+    StepVerifier.create(merged, 2)
+        .expectNext(1, 2)
+        .thenRequest(3)
+        .expectNext(3, 4, 5)
+        .thenRequest(Long.MAX_VALUE)
+        .expectNext(6, 7, 8, 9, 10)
+        .verifyComplete();
+  }
+
+  @Test
+  public void testNoSource() {
+    StepVerifier.create(SortedMerge.merge(Collections.<Flux<Integer>>emptyList(),
+        Comparator.naturalOrder(), 1))
+        .verifyComplete();
+  }
+
+  @Test
+  public void testSourcesSeeTheContext() {
+    Flux<Integer> offsets = Mono.subscriberContext()
+        .flatMapMany(context -> Flux.just(1, 3)
+            .map(value -> value + context.<Integer>get("offset")));
+    Flux<Integer> merged = SortedMerge.merge(Arrays.asList(offsets, Flux.just(12)),
+        Comparator.naturalOrder(), 2);
+
+    StepVerifier.create(merged.subscriberContext(Context.of("offset", 10)))
+        .expectNext(11, 12, 13)
+        .verifyComplete();
+  }
+
+  @Test
+  public void testErrorIsPropagated() {
+    Flux<Integer> failing = Flux.concat(Flux.just(1), Flux.error(new IllegalStateException()));
+    StepVerifier.create(SortedMerge.merge(Arrays.asList(Flux.just(2, 3), failing),
+        Comparator.naturalOrder(), 4))
+        .verifyError(IllegalStateException.class);
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ibm.reactive.jpa.RowCodec;
+import com.ibm.reactive.jpa.SpillOptions;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+public class SpillBufferTest {
+
+  private static final RowCodec<Integer> INTEGERS = new RowCodec<Integer>() {
+    @Override
+    public void encode(Integer value, DataOutput output) throws IOException {
+      output.writeInt(value);
+    }
+
+    @Override
+    public Integer decode(DataInput input) throws IOException {
+      return input.readInt();
+    }
+  };
+
+  private static final RowCodec<String> STRINGS = new RowCodec<String>() {
+    @Override
+    public void encode(String value, DataOutput output) throws IOException {
+      output.writeUTF(value);
+    }
+
+    @Override
+    public String decode(DataInput input) throws IOException {
+      return input.readUTF();
+    }
+  };
+
+  private Path directory;
+  private SpillOptions options;
+
+  @BeforeEach
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("spill-test");
+    options = SpillOptions.builder()
+        .directory(directory)
+        .bufferSize(64)
+        .build();
+  }
+
+  @AfterEach
+  public void deleteDirectory() throws IOException {
+    Files.deleteIfExists(directory);
+  }
+
+  @Test
+  public void testSourceIsDrainedBeforeTheSubscriber() {
+    AtomicBoolean sourceCompleted = new AtomicBoolean();
+    Flux<Integer> source = Flux.range(0, 10_000).doOnComplete(() -> sourceCompleted.set(true));
+
+    StepVerifier.create(SpillBuffer.spill(source, INTEGERS, options), 0)
+        .thenRequest(5)
+        .expectNext(0, 1, 2, 3, 4)
+        .then(() -> assertTrue(sourceCompleted.get()))
+        .thenRequest(Long.MAX_VALUE)
+        .expectNextCount(9_995)
+        .verifyComplete();
+    assertEquals(0, files());
+  }
+
+  @Test
+  public void testRowsLargerThanTheBuffer() {
+    char[] characters = new char[1000];
+    Arrays.fill(characters, 'a');
+    String large = new String(characters);
+
+    StepVerifier.create(SpillBuffer.spill(Flux.just("small", large, "last"), STRINGS, options))
+        .expectNext("small", large, "last")
+        .verifyComplete();
+  }
+
+  @Test
+  public void testCancelDeletesTheFile() {
+    StepVerifier.create(SpillBuffer.spill(Flux.range(0, 1000), INTEGERS, options), 0)
+        .thenRequest(1)
+        .expectNext(0)
+        .thenCancel()
+        .verify();
+    assertEquals(0, files());
+  }
+
+  @Test
+  public void testLimit() {
+    SpillOptions limited = SpillOptions.builder()
+        .directory(directory)
+        .limit(80)
+        .build();
+    StepVerifier.create(SpillBuffer.spill(Flux.range(0, 100), INTEGERS, limited))
+        .expectNextCount(10)
+        .verifyError(IllegalStateException.class);
+    assertEquals(0, files());
+  }
+
+  @Test
+  public void testSourceError() {
+    Flux<Integer> source = Flux.concat(Flux.just(1, 2),
+        Flux.error(new IllegalArgumentException()));
+    StepVerifier.create(SpillBuffer.spill(source, INTEGERS, options))
+        .expectNext(1, 2)
+        .verifyError(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void testContextReachesTheSource() {
+    Flux<String> source = Mono.subscriberContext()
+        .flatMapMany(context -> Flux.just(context.<String>get("tenant"), "last"));
+
+    StepVerifier.create(SpillBuffer.spill(source, STRINGS, options)
+        .subscriberContext(Context.of("tenant", "acme")))
+        .expectNext("acme", "last")
+        .verifyComplete();
+  }
+
+  @Test
+  public void testRowsAreNotEmittedOnTheSourceThread() {
+    Scheduler sourceScheduler = Schedulers.newSingle("spill-source");
+    try {
+      Flux<Integer> source = Flux.range(0, 1000).publishOn(sourceScheduler);
+      StepVerifier.create(SpillBuffer.spill(source, INTEGERS, options), 0)
+          .thenRequest(10)
+          .expectNextCount(10)
+          .thenRequest(Long.MAX_VALUE)
+          .thenConsumeWhile(row -> !Thread.currentThread().getName().startsWith("spill-source"))
+          .verifyComplete();
+      assertEquals(0, files());
+    } finally {
+      sourceScheduler.dispose();
+    }
+  }
+
+  @Test
+  public void testAsynchronousSourceError() {
+    Flux<Integer> source = Flux.concat(Flux.range(0, 100),
+        Flux.error(new IllegalArgumentException()))
+        .subscribeOn(Schedulers.parallel());
+    StepVerifier.create(SpillBuffer.spill(source, INTEGERS, options))
+        .expectNextCount(100)
+        .verifyError(IllegalArgumentException.class);
+    assertEquals(0, files());
+  }
+
+  private long files() {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
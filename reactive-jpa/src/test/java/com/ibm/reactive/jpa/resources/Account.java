@@ -0,0 +1,28 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.resources;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Version;
+import lombok.Data;
+
+@Data
+@Entity(name = "ACCOUNT")
+public class Account {
+
+  @Id
+  @GeneratedValue(
+      strategy = GenerationType.SEQUENCE
+  )
+  private long id;
+  private long balance;
+  @Version
+  private long version;
+}
@@ -0,0 +1,37 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.resources;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.NaturalId;
+
+@Data
+@NoArgsConstructor
+@Entity(name = "PRODUCT")
+public class Product {
+
+  @Id
+  @GeneratedValue(
+      strategy = GenerationType.SEQUENCE
+  )
+  private long id;
+  @NaturalId
+  private String code;
+  private String name;
+  private long price;
+
+  public Product(String code, String name, long price) {
+    this.code = code;
+    this.name = name;
+    this.price = price;
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.OneToMany;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Entity(name = "PROJECT")
+@NamedEntityGraph(name = "PROJECT.tasks", attributeNodes = @NamedAttributeNode("tasks"))
+public class Project {
+
+  @Id
+  @GeneratedValue(
+      strategy = GenerationType.SEQUENCE
+  )
+  private long id;
+  private String name;
+  @OneToMany(mappedBy = "project")
+  private List<Task> tasks = new ArrayList<>();
+}
@@ -0,0 +1,38 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.resources;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Version;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.NaturalId;
+
+@Data
+@NoArgsConstructor
+@Entity(name = "STOCK")
+public class Stock {
+
+  @Id
+  @GeneratedValue(
+      strategy = GenerationType.SEQUENCE
+  )
+  private long id;
+  @NaturalId
+  private String sku;
+  private long quantity;
+  @Version
+  private Long version;
+
+  public Stock(String sku, long quantity) {
+    this.sku = sku;
+    this.quantity = quantity;
+  }
+}
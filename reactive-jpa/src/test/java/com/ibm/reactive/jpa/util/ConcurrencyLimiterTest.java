@@ -0,0 +1,66 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+public class ConcurrencyLimiterTest {
+
+  @Test
+  public void testInvalidLimit() {
+    assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimiter(0));
+  }
+
+  @Test
+  public void testPublishersPastTheLimitWait() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+    DirectProcessor<Integer> first = DirectProcessor.create();
+    DirectProcessor<Integer> second = DirectProcessor.create();
+    limiter.limit(first).subscribe();
+    limiter.limit(second).subscribe();
+
+    assertTrue(first.hasDownstreams());
+    assertFalse(second.hasDownstreams());
+    assertEquals(1, limiter.getActive());
+    assertEquals(1, limiter.getWaiting());
+
+    first.onComplete();
+    assertTrue(second.hasDownstreams());
+    assertEquals(1, limiter.getActive());
+    assertEquals(0, limiter.getWaiting());
+
+    second.onComplete();
+    assertEquals(0, limiter.getActive());
+  }
+
+  @Test
+  public void testCancelledWaiterReleasesItsPlace() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+    DirectProcessor<Integer> first = DirectProcessor.create();
+    Disposable running = limiter.limit(first).subscribe();
+    Disposable waiting = limiter.limit(Flux.just(1)).subscribe();
+    assertEquals(1, limiter.getWaiting());
+
+    waiting.dispose();
+    assertEquals(0, limiter.getWaiting());
+    running.dispose();
+    assertEquals(0, limiter.getActive());
+
+    StepVerifier.create(limiter.limit(Flux.just(1, 2)))
+        .expectNext(1, 2)
+        .verifyComplete();
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ibm.reactive.jpa.lombok.LombokTestUtil;
+import com.ibm.reactive.jpa.util.FairExecutor.Lane;
+import com.ibm.reactive.jpa.util.FairExecutor.LaneMetrics;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class FairExecutorTest {
+
+  @Test
+  public void testLombokNullValidations() {
+    try (FairExecutor executor = new FairExecutor(1, "test")) {
+      LombokTestUtil.testLombokNullValidations(Stream.of(
+          () -> new FairExecutor(1, null),
+          () -> new FairExecutor((Executor) null, 1),
+          () -> executor.lane(null, 1, 1),
+          () -> executor.lane("lane", 1, 1).execute(null)
+      ));
+    }
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new FairExecutor(0, "test"));
+    assertThrows(IllegalArgumentException.class, () -> new FairExecutor(Runnable::run, 0));
+    try (FairExecutor executor = new FairExecutor(1, "test")) {
+      assertThrows(IllegalArgumentException.class, () -> executor.lane("lane", 0, 1));
+      assertThrows(IllegalArgumentException.class, () -> executor.lane("lane", 1, 0));
+    }
+  }
+
+  @Test
+  public void testLanesAreServedByWeight() throws InterruptedException {
+    StringBuffer order = new StringBuffer();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch gate = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(16);
+    try (FairExecutor executor = new FairExecutor(1, "test")) {
+      Lane heavy = executor.lane("heavy", 3, 1);
+      Lane light = executor.lane("light", 1, 1);
+      Lane blocker = executor.lane("blocker", 1, 1);
+      blocker.execute(() -> {
+        started.countDown();
+        try {
+          gate.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      // the single worker is busy, the next tasks are all queued before any of them runs
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      for (int index = 0; index < 8; index++) {
+        heavy.execute(() -> {
+          order.append('H');
+          done.countDown();
+        });
+        light.execute(() -> {
+          order.append('L');
+          done.countDown();
+        });
+      }
+      gate.countDown();
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+    assertEquals("HHHLHHHL", order.substring(0, 8));
+  }
+
+  @Test
+  public void testQuotaLimitsRunningTasks() throws InterruptedException {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(20);
+    try (FairExecutor executor = new FairExecutor(4, "test")) {
+      Lane lane = executor.lane("lane", 1, 2);
+      for (int index = 0; index < 20; index++) {
+        lane.execute(() -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          try {
+            TimeUnit.MILLISECONDS.sleep(5);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          running.decrementAndGet();
+          done.countDown();
+        });
+      }
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      lane.shutdown();
+      assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+      LaneMetrics metrics = lane.metrics();
+      assertEquals(20, metrics.getSubmitted());
+      assertEquals(20, metrics.getCompleted());
+      assertEquals(0, metrics.getQueued());
+    }
+    assertEquals(2, maxRunning.get());
+  }
+
+  @Test
+  public void testDelegateRunsAtMostSlotsTasks() throws InterruptedException {
+    ExecutorService delegate = Executors.newFixedThreadPool(4);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(20);
+    try (FairExecutor executor = new FairExecutor(delegate, 2)) {
+      Lane lane = executor.lane("lane", 1, 4);
+      for (int index = 0; index < 20; index++) {
+        lane.execute(() -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          try {
+            TimeUnit.MILLISECONDS.sleep(5);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          running.decrementAndGet();
+          done.countDown();
+        });
+      }
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      assertEquals(0, executor.getWorkers());
+      assertEquals(2, executor.getSlots());
+    } finally {
+      delegate.shutdown();
+    }
+    assertEquals(2, maxRunning.get());
+  }
+
+  @Test
+  public void testResumedTaskKeepsTheSlot() throws InterruptedException {
+    ExecutorService delegate = Executors.newFixedThreadPool(4);
+    StringBuffer order = new StringBuffer();
+    CountDownLatch done = new CountDownLatch(1);
+    try (FairExecutor executor = new FairExecutor(delegate, 4)) {
+      Lane lane = executor.lane("lane", 1, 1);
+      AtomicInteger pages = new AtomicInteger();
+      Runnable page = new Runnable() {
+        @Override
+        public void run() {
+          order.append('P');
+          if (pages.incrementAndGet() == 1) {
+            // queued while the first page runs, it waits for the last page
+            lane.execute(() -> {
+              order.append('T');
+              done.countDown();
+            });
+          }
+          if (pages.get() < 3) {
+            lane.resume(this);
+          }
+        }
+      };
+      lane.execute(page);
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+    } finally {
+      delegate.shutdown();
+    }
+    assertEquals("PPPT", order.toString());
+  }
+
+  @Test
+  public void testShutdownLaneRejectsTasks() {
+    try (FairExecutor executor = new FairExecutor(1, "test")) {
+      Lane lane = executor.lane("lane", 1, 1);
+      lane.shutdown();
+      assertTrue(lane.isShutdown());
+      assertTrue(lane.isTerminated());
+      assertThrows(RejectedExecutionException.class, () -> lane.execute(() -> { }));
+    }
+  }
+}
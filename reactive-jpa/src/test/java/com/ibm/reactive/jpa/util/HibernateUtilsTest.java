@@ -52,7 +52,9 @@ public class HibernateUtilsTest {
         () -> HibernateUtils.getSessionFactory(null),
         () -> HibernateUtils.setFlushMode(null, null),
         () -> HibernateUtils.setFlushMode(session, null),
-        () -> HibernateUtils.resetFlushMode(null, null)
+        () -> HibernateUtils.resetFlushMode(null, null),
+        () -> HibernateUtils.createQuery(null, null),
+        () -> HibernateUtils.createQuery(session, null)
     ));
 
   }
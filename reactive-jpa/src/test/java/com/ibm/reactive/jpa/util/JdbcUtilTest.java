@@ -14,15 +14,20 @@ import static com.ibm.reactive.jpa.IsolationLevel.SERIALIZABLE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.ibm.reactive.jpa.IsolationLevel;
 import com.ibm.reactive.jpa.lombok.LombokTestUtil;
+import com.zaxxer.hikari.HikariConfigMXBean;
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.stream.Stream;
+import javax.sql.DataSource;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -39,6 +44,12 @@ public class JdbcUtilTest {
   @Mock
   Connection jdbcConnection;
 
+  @Mock
+  ResultSet resultSet;
+
+  @Mock
+  ResultSetMetaData metaData;
+
   static Stream<Arguments> isolationLevelsArguments() {
     return Stream.of(
         Arguments.of(DEFAULT, 0, null),
@@ -72,7 +83,8 @@ public class JdbcUtilTest {
         () -> JdbcUtils.setIsolationLevel(null, null),
         () -> JdbcUtils.setIsolationLevel(jdbcConnection, null),
         () -> JdbcUtils.resetTransactionValues(null, null),
-        () -> JdbcUtils.getIsolationLevel(null)
+        () -> JdbcUtils.getIsolationLevel(null),
+        () -> JdbcUtils.estimateRowSize(null)
     ));
 
   }
@@ -114,4 +126,34 @@ public class JdbcUtilTest {
         ArgumentMatchers.anyInt());
     verify(jdbcConnection, times(readOnly ? 1 : 0)).setReadOnly(false);
   }
+
+  @Test
+  public void testEstimateRowSize() throws SQLException {
+    when(resultSet.getMetaData()).thenReturn(metaData);
+    when(metaData.getColumnCount()).thenReturn(3);
+    when(metaData.getColumnDisplaySize(1)).thenReturn(1);
+    when(metaData.getColumnDisplaySize(2)).thenReturn(100);
+    when(metaData.getColumnDisplaySize(3)).thenReturn(Integer.MAX_VALUE);
+    assertEquals(8 + 100 + 4096, JdbcUtils.estimateRowSize(resultSet));
+  }
+
+  @Test
+  public void testCapacityFollowsHikariPool() throws SQLException {
+    DataSource dataSource = mock(DataSource.class);
+    HikariConfigMXBean hikari = mock(HikariConfigMXBean.class);
+    when(dataSource.isWrapperFor(HikariConfigMXBean.class)).thenReturn(true);
+    when(dataSource.unwrap(HikariConfigMXBean.class)).thenReturn(hikari);
+    when(hikari.getMaximumPoolSize()).thenReturn(4, 8);
+
+    PoolCapacity capacity = JdbcUtils.getCapacity(dataSource, 2);
+    assertEquals(4, capacity.getMaxConnections());
+    assertEquals(8, capacity.getMaxConnections());
+  }
+
+  @Test
+  public void testCapacityFallback() throws SQLException {
+    DataSource dataSource = mock(DataSource.class);
+    when(dataSource.isWrapperFor(HikariConfigMXBean.class)).thenReturn(false);
+    assertEquals(2, JdbcUtils.getCapacity(dataSource, 2).getMaxConnections());
+  }
 }
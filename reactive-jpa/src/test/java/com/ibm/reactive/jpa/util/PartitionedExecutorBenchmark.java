@@ -0,0 +1,65 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+import com.ibm.reactive.jpa.annotation.Benchmark;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Chains of dependent calls, one chain per key, dispatched on the shared fixed pool and on the
+ * partitioned executor.
+ */
+@Benchmark
+public class PartitionedExecutorBenchmark {
+
+  private static final int WORKERS = 4;
+  private static final int KEYS = 64;
+  private static final int CALLS = 2_000;
+
+  @Test
+  public void fixedThreadPool() {
+    ExecutorService service = Executors.newFixedThreadPool(WORKERS);
+    try {
+      run("Fixed thread pool", key -> chain(service, key));
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  public void partitionedExecutor() {
+    try (PartitionedExecutor executor = new PartitionedExecutor(WORKERS, "benchmark")) {
+      run("Partitioned executor", key -> chain(executor.forKey(key), key));
+    }
+  }
+
+  private static Mono<Integer> chain(Executor executor, int key) {
+    Mono<Integer> result = Mono.just(key);
+    for (int call = 0; call < CALLS; call++) {
+      result = result.flatMap(value -> ReactiveUtils.call(executor, () -> value + 1));
+    }
+    return result;
+  }
+
+  private static void run(String name, Function<Integer, Mono<Integer>> chain) {
+    // warm up
+    Flux.range(0, KEYS).flatMap(chain).blockLast();
+    long start = System.nanoTime();
+    Flux.range(0, KEYS).flatMap(chain).blockLast();
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    long calls = (long) KEYS * CALLS;
+    System.out.println(name + ": " + calls + " calls in " + millis + " ms, "
+        + (calls * 1000L / Math.max(1, millis)) + " calls/s");
+  }
+}
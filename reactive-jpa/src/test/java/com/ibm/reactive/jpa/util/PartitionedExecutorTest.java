@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ibm.reactive.jpa.lombok.LombokTestUtil;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class PartitionedExecutorTest {
+
+  @Test
+  public void testLombokNullValidations() {
+    try (PartitionedExecutor executor = new PartitionedExecutor(1, "test")) {
+      LombokTestUtil.testLombokNullValidations(Stream.of(
+          () -> new PartitionedExecutor(1, null),
+          () -> executor.partition(null),
+          () -> executor.execute(null, () -> { }),
+          () -> executor.execute("key", null),
+          () -> executor.forKey(null)
+      ));
+    }
+  }
+
+  @Test
+  public void testInvalidPartitions() {
+    assertThrows(IllegalArgumentException.class, () -> new PartitionedExecutor(0, "test"));
+  }
+
+  @Test
+  public void testTasksOfAKeyRunInOrderOnTheSameThread() throws InterruptedException {
+    int keys = 16;
+    int tasks = 500;
+    ConcurrentHashMap<Integer, List<Integer>> orders = new ConcurrentHashMap<>();
+    ConcurrentHashMap<Integer, Set<Thread>> threads = new ConcurrentHashMap<>();
+    CountDownLatch latch = new CountDownLatch(keys * tasks);
+    try (PartitionedExecutor executor = new PartitionedExecutor(4, "test")) {
+      for (int key = 0; key < keys; key++) {
+        orders.put(key, new ArrayList<>());
+        threads.put(key, new HashSet<>());
+      }
+      for (int index = 0; index < tasks; index++) {
+        for (int key = 0; key < keys; key++) {
+          int value = index;
+          int partitionKey = key;
+          executor.execute(partitionKey, () -> {
+            orders.get(partitionKey).add(value);
+            threads.get(partitionKey).add(Thread.currentThread());
+            latch.countDown();
+          });
+        }
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+    for (int key = 0; key < keys; key++) {
+      assertEquals(1, threads.get(key).size());
+      List<Integer> order = orders.get(key);
+      for (int index = 0; index < tasks; index++) {
+        assertEquals(index, order.get(index).intValue());
+      }
+    }
+  }
+
+  @Test
+  public void testForKeyUsesThePartitionOfTheKey() throws InterruptedException {
+    List<Thread> threads = new ArrayList<>();
+    CountDownLatch latch = new CountDownLatch(2);
+    try (PartitionedExecutor executor = new PartitionedExecutor(3, "test")) {
+      Executor forKey = executor.forKey("tenant");
+      forKey.execute(() -> {
+        threads.add(Thread.currentThread());
+        latch.countDown();
+      });
+      executor.execute("tenant", () -> {
+        threads.add(Thread.currentThread());
+        latch.countDown();
+      });
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+    assertEquals(threads.get(0), threads.get(1));
+  }
+
+  @Test
+  public void testTasksOfAKeyRunInOrderOnTheDelegate() throws InterruptedException {
+    int keys = 8;
+    int tasks = 200;
+    ExecutorService delegate = Executors.newFixedThreadPool(2);
+    ConcurrentHashMap<Integer, List<Integer>> orders = new ConcurrentHashMap<>();
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    CountDownLatch latch = new CountDownLatch(keys * tasks);
+    try (PartitionedExecutor executor = new PartitionedExecutor(4, delegate)) {
+      for (int key = 0; key < keys; key++) {
+        orders.put(key, new ArrayList<>());
+      }
+      for (int index = 0; index < tasks; index++) {
+        for (int key = 0; key < keys; key++) {
+          int value = index;
+          int partitionKey = key;
+          executor.execute(partitionKey, () -> {
+            orders.get(partitionKey).add(value);
+            threads.add(Thread.currentThread());
+            latch.countDown();
+          });
+        }
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } finally {
+      delegate.shutdown();
+    }
+    // no thread of its own, only the two threads of the delegate
+    assertTrue(threads.size() <= 2);
+    for (int key = 0; key < keys; key++) {
+      List<Integer> order = orders.get(key);
+      for (int index = 0; index < tasks; index++) {
+        assertEquals(index, order.get(index).intValue());
+      }
+    }
+  }
+
+  @Test
+  public void testClosedExecutorRejectsTasks() {
+    PartitionedExecutor executor = new PartitionedExecutor(1, "test");
+    Executor forKey = executor.forKey(1);
+    executor.close();
+    assertThrows(RejectedExecutionException.class, () -> executor.execute(1, () -> { }));
+    assertThrows(RejectedExecutionException.class, () -> forKey.execute(() -> { }));
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ *  Copyright (c) IBM Corporation 2018. All Rights Reserved.
+ *  Project name: reactive-components
+ *  This project is licensed under the Apache License 2.0, see LICENSE.
+ */
+
+package com.ibm.reactive.jpa.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.ibm.reactive.jpa.lombok.LombokTestUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class SerialExecutorTest {
+
+  @Test
+  public void testLombokNullValidations() {
+    LombokTestUtil.testLombokNullValidations(Stream.of(
+        () -> new SerialExecutor(null),
+        () -> new SerialExecutor(Runnable::run).execute(null)
+    ));
+  }
+
+  @Test
+  public void testTasksRunInOrderAndNeverConcurrently() throws InterruptedException {
+    ExecutorService service = Executors.newFixedThreadPool(4);
+    SerialExecutor executor = new SerialExecutor(service);
+    int tasks = 1000;
+    List<Integer> order = new ArrayList<>(tasks);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger overlaps = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(tasks);
+    for (int index = 0; index < tasks; index++) {
+      int value = index;
+      executor.execute(() -> {
+        if (running.incrementAndGet() > 1) {
+          overlaps.incrementAndGet();
+        }
+        order.add(value);
+        running.decrementAndGet();
+        latch.countDown();
+      });
+    }
+    latch.await(10, TimeUnit.SECONDS);
+    service.shutdown();
+    assertEquals(0, overlaps.get());
+    assertEquals(tasks, order.size());
+    for (int index = 0; index < tasks; index++) {
+      assertEquals(index, order.get(index).intValue());
+    }
+  }
+
+  @Test
+  public void testFailingTaskDoesNotStopTheQueue() {
+    List<Integer> order = new ArrayList<>();
+    SerialExecutor executor = new SerialExecutor(Runnable::run);
+    Thread.UncaughtExceptionHandler handler = Thread.currentThread().getUncaughtExceptionHandler();
+    Thread.currentThread().setUncaughtExceptionHandler((thread, error) -> order.add(-1));
+    try {
+      executor.execute(() -> {
+        throw new IllegalStateException();
+      });
+      executor.execute(() -> order.add(1));
+    } finally {
+      Thread.currentThread().setUncaughtExceptionHandler(handler);
+    }
+    assertEquals(2, order.size());
+  }
+}